@@ -116,7 +116,8 @@ public class SecurityConfig {
                 "Set-Cookie",  // This allows frontend to see the header
                 "Authorization",
                 "Access-Control-Allow-Origin",
-                "Access-Control-Allow-Credentials"
+                "Access-Control-Allow-Credentials",
+                "X-View-Copy"
         ));
 
         configuration.setAllowedMethods(Arrays.asList(
@@ -0,0 +1,25 @@
+package com.github.ws_ncip_pnpki.config;
+
+import com.github.ws_ncip_pnpki.storage.CachingStorageService;
+import com.github.ws_ncip_pnpki.storage.FileSystemStorageService;
+import com.github.ws_ncip_pnpki.storage.S3StorageService;
+import com.github.ws_ncip_pnpki.storage.StorageProperties;
+import com.github.ws_ncip_pnpki.storage.StorageService;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class StorageConfig {
+
+    @Bean
+    public StorageService storageService(StorageProperties properties) {
+        StorageService storage = switch (properties.getBackend().toLowerCase()) {
+            case "local" -> new FileSystemStorageService(properties);
+            // Files needed as local paths always come from the cache tier
+            case "s3" -> new CachingStorageService(new S3StorageService(properties), properties.getCache());
+            default -> throw new IllegalStateException("Unknown storage.backend: " + properties.getBackend());
+        };
+        storage.init();
+        return storage;
+    }
+}
@@ -7,6 +7,7 @@ import com.github.ws_ncip_pnpki.security.CustomUserDetails;
 import com.github.ws_ncip_pnpki.security.CustomUserDetailsService;
 import com.github.ws_ncip_pnpki.service.AuthService;
 import com.github.ws_ncip_pnpki.service.RefreshTokenService;
+import com.github.ws_ncip_pnpki.service.SigningKeyCache;
 import com.github.ws_ncip_pnpki.util.JwtUtil;
 import com.github.ws_ncip_pnpki.wrapper.LoginResult;
 import jakarta.servlet.http.Cookie;
@@ -44,6 +45,7 @@ public class AuthController {
     private final RefreshTokenService refreshTokenService;
     private final JwtUtil jwtUtil;
     private final CustomUserDetailsService userDetailsService;
+    private final SigningKeyCache signingKeyCache;
 
     @PostMapping("/register")
     public ResponseEntity<?> register(@Valid @RequestBody RegisterRequest request) {
@@ -169,6 +171,10 @@ public class AuthController {
         try {
             // Delete the specific refresh token (this is sufficient)
             if (refreshToken != null) {
+                // Wipe any signing keys this user unlocked during the session
+                refreshTokenService.findByToken(refreshToken)
+                        .ifPresent(token -> signingKeyCache.evictUser(token.getUser().getId()));
+
                 System.out.println("Deleting by token: " + refreshToken);
                 refreshTokenService.deleteByToken(refreshToken);
                 System.out.println("Deleted by token successfully");
@@ -4,12 +4,19 @@ import com.github.ws_ncip_pnpki.dto.*;
 import com.github.ws_ncip_pnpki.model.*;
 import com.github.ws_ncip_pnpki.repository.DocumentForwardRepository;
 import com.github.ws_ncip_pnpki.service.DocumentService;
+import com.github.ws_ncip_pnpki.service.FileServingService;
+import com.github.ws_ncip_pnpki.service.PagePreviewService;
+import com.github.ws_ncip_pnpki.service.UserStatisticsService;
+import com.github.ws_ncip_pnpki.service.ViewCopyService;
 import com.github.ws_ncip_pnpki.service.FileStorageService;
 import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.FileSystemResource;
 import org.springframework.core.io.Resource;
 import org.springframework.data.domain.Page;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
@@ -20,10 +27,12 @@ import org.springframework.web.multipart.MultipartFile;
 import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
 import java.io.IOException;
+import java.time.Duration;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 
 @RestController
 @RequestMapping("/api/v1/documents")
@@ -38,6 +47,14 @@ public class DocumentController {
     @Autowired
     private DocumentForwardRepository documentForwardRepository;
     @Autowired
+    private FileServingService fileServingService;
+    @Autowired
+    private ViewCopyService viewCopyService;
+    @Autowired
+    private PagePreviewService pagePreviewService;
+    @Autowired
+    private UserStatisticsService userStatisticsService;
+    @Autowired
     public DocumentController(DocumentService documentService, FileStorageService fileStorageService) {
         this.documentService = documentService;
         this.fileStorageService = fileStorageService;
@@ -52,9 +69,18 @@ public class DocumentController {
             @RequestParam(defaultValue = "0") int offset,
             @RequestParam(defaultValue = "id") String sortBy,
             @RequestParam(defaultValue = "asc") String sortDirection,
-            @RequestParam(required = false) String search
+            @RequestParam(required = false) String search,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "false") boolean skipTotal
     ){
         try {
+            // Keyset paging: an empty cursor asks for the first page
+            if (cursor != null) {
+                CursorPage<ShareResponse> cursorPage = documentService.getOwnedDocumentsByCursor(
+                        userId, limit, cursor, sortBy, sortDirection, search, skipTotal);
+                return ResponseEntity.ok(createCursorResponse(cursorPage, limit));
+            }
+
             Page<ShareResponse> documentsPage;
             long totalCount;
             // In a real application, you should verify if the user has admin privileges
@@ -160,9 +186,17 @@ public class DocumentController {
             @RequestParam(defaultValue = "0") int offset,
             @RequestParam(defaultValue = "id") String sortBy,
             @RequestParam(defaultValue = "asc") String sortDirection,
-            @RequestParam(required = false) String search
+            @RequestParam(required = false) String search,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "false") boolean skipTotal
     ){
         try{
+            if (cursor != null) {
+                CursorPage<PdfUploadResponse> cursorPage = documentService.getSharedDocumentsByCursor(
+                        userId, limit, cursor, sortBy, sortDirection, search, skipTotal);
+                return ResponseEntity.ok(createCursorResponse(cursorPage, limit));
+            }
+
             Page<PdfUploadResponse> documentPage;
             long totalCount;
 
@@ -446,28 +480,16 @@ public class DocumentController {
      * Example URL: /api/documents/download/1/documents/abc123.pdf
      */
     @GetMapping("/download/{userId}/{subFolder}/{fileName:.+}")
-    public ResponseEntity<Resource> downloadFile(
+    public void downloadFile(
             @PathVariable String userId,
             @PathVariable String subFolder,
             @PathVariable String fileName,
-            HttpServletRequest request) {
+            HttpServletRequest request,
+            HttpServletResponse response) throws IOException {
 
         String filePath = userId + "/" + subFolder + "/" + fileName;
 
-        Resource resource = fileStorageService.loadFileAsResource(filePath);
-
-        // Determine file's content type
-        String contentType;
-        try {
-            contentType = request.getServletContext().getMimeType(resource.getFile().getAbsolutePath());
-        } catch (IOException e) {
-            contentType = "application/octet-stream";
-        }
-
-        return ResponseEntity.ok()
-                .contentType(MediaType.parseMediaType(contentType))
-                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + resource.getFilename() + "\"")
-                .body(resource);
+        fileServingService.serveStored(filePath, fileName, false, request, response);
     }
 
     // Get forwards with status filter
@@ -517,22 +539,14 @@ public class DocumentController {
     @GetMapping("/forwards/statistics")
     public ResponseEntity<?> getForwardStatistics(@RequestParam("user_id") Long userId) {
         try {
-            long totalForwards = documentService.countAllForwardsForUser(userId);
-            long pendingForwards = documentService.countPendingForwards(userId);
-            long acceptedForwards = documentForwardRepository.countByForwardedToIdAndStatus(
-                    userId, ForwardStatus.ACCEPTED);
-            long signedDocumentForwards = documentForwardRepository
-                    .findByForwardedToId(userId)
-                    .stream()
-                    .filter(DocumentForward::isSignedDocument)
-                    .count();
+            UserStatistics counters = userStatisticsService.getStatistics(userId);
 
             Map<String, Object> statistics = new HashMap<>();
-            statistics.put("totalForwards", totalForwards);
-            statistics.put("pendingForwards", pendingForwards);
-            statistics.put("acceptedForwards", acceptedForwards);
-            statistics.put("signedDocumentForwards", signedDocumentForwards);
-            statistics.put("rejectedForwards", totalForwards - pendingForwards - acceptedForwards);
+            statistics.put("totalForwards", counters.getTotalForwards());
+            statistics.put("pendingForwards", counters.getPendingForwards());
+            statistics.put("acceptedForwards", counters.getAcceptedForwards());
+            statistics.put("signedDocumentForwards", counters.getSignedDocumentForwards());
+            statistics.put("rejectedForwards", counters.getRejectedForwards());
 
             Map<String, Object> response = new HashMap<>();
             response.put("success", true);
@@ -547,29 +561,85 @@ public class DocumentController {
         }
     }
 
+    // Get all dashboard counters of a user
+    @GetMapping("/statistics")
+    public ResponseEntity<?> getUserStatistics(@RequestParam("user_id") Long userId) {
+        try {
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", true);
+            response.put("statistics", userStatisticsService.toMap(userStatisticsService.getStatistics(userId)));
+
+            return ResponseEntity.ok(response);
+
+        } catch (Exception e) {
+            log.error("Error fetching user statistics: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(createErrorResponse("Failed to fetch statistics"));
+        }
+    }
+
     @GetMapping("/view/{userId}/{subFolder}/{fileName:.+}")
-    public ResponseEntity<Resource> viewFile(
+    public void viewFile(
             @PathVariable String userId,
             @PathVariable String subFolder,
             @PathVariable String fileName,
-            HttpServletRequest request) {
+            HttpServletRequest request,
+            HttpServletResponse response) throws IOException {
 
         String filePath = userId + "/" + subFolder + "/" + fileName;
 
-        Resource resource = fileStorageService.loadFileAsResource(filePath);
-
-        // Determine file's content type
-        String contentType;
-        try {
-            contentType = request.getServletContext().getMimeType(resource.getFile().getAbsolutePath());
-        } catch (IOException e) {
-            contentType = "application/octet-stream";
+        // Show the view copy when there is one; it opens on page 1 without the whole file
+        String viewPath = viewCopyService.currentViewPath(filePath);
+        if (viewPath != null) {
+            // Clients must download the original for signing
+            response.setHeader("X-View-Copy", "true");
         }
 
-        return ResponseEntity.ok()
-                .contentType(MediaType.parseMediaType(contentType))
-                .header(HttpHeaders.CONTENT_DISPOSITION, "inline; filename=\"" + resource.getFilename() + "\"")
-                .body(resource);
+        fileServingService.serveStored(viewPath != null ? viewPath : filePath, fileName, true, request, response);
+    }
+
+    /**
+     * Page count and page sizes in PDF points, for placing signatures without rendering the PDF
+     */
+    @GetMapping("/{documentId}/pages")
+    public CompletableFuture<ResponseEntity<?>> getPages(@PathVariable Long documentId) {
+        Document document = documentService.getDocument(documentId);
+
+        return pagePreviewService.pageMetadata(document.getFilePath())
+                .<ResponseEntity<?>>thenApply(ResponseEntity::ok)
+                .exceptionally(e -> ResponseEntity.badRequest()
+                        .body(createErrorResponse("Failed to read pages: " + rootMessage(e))));
+    }
+
+    /**
+     * Rendered preview of one page, e.g. /api/v1/documents/5/pages/1/preview?dpi=96&format=jpeg
+     */
+    @GetMapping("/{documentId}/pages/{page}/preview")
+    public CompletableFuture<ResponseEntity<?>> previewPage(
+            @PathVariable Long documentId,
+            @PathVariable int page,
+            @RequestParam(value = "dpi", defaultValue = "0") int dpi,
+            @RequestParam(value = "format", defaultValue = "png") String format) {
+
+        Document document = documentService.getDocument(documentId);
+
+        return pagePreviewService.renderPage(document.getFilePath(), page, dpi, format)
+                .<ResponseEntity<?>>thenApply(preview -> ResponseEntity.ok()
+                        .contentType(preview.getFileName().toString().endsWith(".jpg") ? MediaType.IMAGE_JPEG : MediaType.IMAGE_PNG)
+                        // Previews are keyed by content hash, so they never change
+                        .cacheControl(CacheControl.maxAge(Duration.ofDays(7)).cachePrivate())
+                        .eTag(preview.getParent().getFileName() + "-" + preview.getFileName())
+                        .body(new FileSystemResource(preview)))
+                .exceptionally(e -> ResponseEntity.badRequest()
+                        .body(createErrorResponse("Failed to render page: " + rootMessage(e))));
+    }
+
+    private String rootMessage(Throwable e) {
+        Throwable cause = e;
+        while (cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        return cause.getMessage();
     }
 
     /**
@@ -624,6 +694,14 @@ public class DocumentController {
         return pagination;
     }
 
+    private Map<String, Object> createCursorResponse(CursorPage<?> page, int limit) {
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("data", page.content());
+        response.put("pagination", page.toPaginationInfo(limit));
+        return response;
+    }
+
     private Map<String, Object> createErrorResponse(String message) {
         Map<String, Object> response = new HashMap<>();
         response.put("success", false);
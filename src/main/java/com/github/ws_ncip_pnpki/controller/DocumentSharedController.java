@@ -55,9 +55,22 @@ public class DocumentSharedController {
             @RequestParam(defaultValue = "0") int offset,
             @RequestParam(defaultValue = "id") String sortBy,
             @RequestParam(defaultValue = "asc") String sortDirection,
-            @RequestParam(required = false) String search
+            @RequestParam(required = false) String search,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "false") boolean skipTotal
     ){
         try{
+            if (cursor != null) {
+                CursorPage<ShareResponse> cursorPage = documentSharedService.getSharedDocumentsByCursor(
+                        userId, limit, cursor, sortBy, sortDirection, search, skipTotal);
+
+                Map<String, Object> response = new HashMap<>();
+                response.put("success", true);
+                response.put("data", cursorPage.content());
+                response.put("pagination", cursorPage.toPaginationInfo(limit));
+                return ResponseEntity.ok(response);
+            }
+
             Page<ShareResponse> documentPage;
             long totalCount;
 
@@ -1,5 +1,6 @@
 package com.github.ws_ncip_pnpki.controller;
 
+import com.github.ws_ncip_pnpki.dto.CursorPage;
 import com.github.ws_ncip_pnpki.dto.NotificationResponse;
 import com.github.ws_ncip_pnpki.model.Notification;
 import com.github.ws_ncip_pnpki.model.User;
@@ -35,9 +36,22 @@ public class NotificationController {
             @RequestParam(defaultValue = "0") int offset,
             @RequestParam(defaultValue = "id") String sortBy,
             @RequestParam(defaultValue = "asc") String sortDirection,
-            @RequestParam(required = false) String search
+            @RequestParam(required = false) String search,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "false") boolean skipTotal
     ){
         try{
+            if (cursor != null) {
+                CursorPage<Notification> cursorPage = notificationService.allNotificationByCursor(
+                        userId, limit, cursor, sortBy, sortDirection, search, skipTotal);
+
+                Map<String, Object> response = new HashMap<>();
+                response.put("success", true);
+                response.put("data", cursorPage.content().stream().map(this::convertResponse));
+                response.put("pagination", cursorPage.toPaginationInfo(limit));
+                return ResponseEntity.ok(response);
+            }
+
             Page<Notification> notificationPage;
             long totalCount;
 
@@ -10,6 +10,7 @@ import com.github.ws_ncip_pnpki.model.Document;
 import com.github.ws_ncip_pnpki.service.*;
 import com.github.ws_ncip_pnpki.util.PnpkiUtil;
 import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
@@ -49,6 +50,15 @@ public class PdfSigningController {
     @Autowired
     private EmailNotificationService emailNotificationService;
 
+    @Autowired
+    private TimestampService timestampService;
+
+    @Autowired
+    private SignatureVerificationService signatureVerificationService;
+
+    @Autowired
+    private FileServingService fileServingService;
+
     @Autowired
     private ObjectMapper objectMapper; // Add this
 
@@ -233,7 +243,7 @@ public class PdfSigningController {
 
 
     /**
-     * Batch sign multiple PDF documents
+     * Queue multiple PDF documents for signing. Progress is pushed to /queue/batch/{batchId}
      */
     @PostMapping(value = "/batch-sign-documents")
     public ResponseEntity<?> batchSignDocuments(
@@ -262,7 +272,7 @@ public class PdfSigningController {
                     userEmail
             );
 
-            return ResponseEntity.ok(Map.of(
+            return ResponseEntity.accepted().body(Map.of(
                     "success", true,
                     "batch", result
             ));
@@ -341,6 +351,17 @@ public class PdfSigningController {
         }
     }
 
+    /**
+     * Get TSA latency, error and deferred timestamp counters
+     */
+    @GetMapping(value = "/tsa/metrics")
+    public ResponseEntity<?> getTsaMetrics() {
+        return ResponseEntity.ok(Map.of(
+                "success", true,
+                "metrics", timestampService.getMetrics()
+        ));
+    }
+
     /**
      * Verify signatures in a PDF document
      */
@@ -350,11 +371,7 @@ public class PdfSigningController {
             @RequestParam(value = "userEmail", required = false) String userEmail) {
 
         try {
-            // Save uploaded file to temporary location
-            File tempPdfFile = File.createTempFile("verify_pdf_", ".pdf");
-            pdfDocument.transferTo(tempPdfFile);
-
-            Map<String, Object> verificationResult = pdfSigningService.verifySignatures(tempPdfFile);
+            Map<String, Object> verificationResult = signatureVerificationService.verify(pdfDocument.getBytes());
 
             // Log the verification
             auditLogService.logVerification(
@@ -364,8 +381,39 @@ public class PdfSigningController {
                     (Integer) verificationResult.get("signatureCount")
             );
 
-            // Clean up
-            tempPdfFile.delete();
+            return ResponseEntity.ok(Map.of(
+                    "success", true,
+                    "verification", verificationResult
+            ));
+
+        } catch (Exception e) {
+            return ResponseEntity.status(500).body(Map.of(
+                    "success", false,
+                    "error", e.getMessage()
+            ));
+        }
+    }
+
+    /**
+     * Verify signatures of a stored document
+     */
+    @GetMapping(value = "/documents/{id}/verify")
+    public ResponseEntity<?> verifyStoredDocument(
+            @PathVariable Long id,
+            @RequestParam(value = "userEmail", required = false) String userEmail) {
+
+        try {
+            Document document = documentService.getDocument(id);
+            byte[] pdf = fileStorageService.readAllBytes(document.getFilePath());
+
+            Map<String, Object> verificationResult = signatureVerificationService.verifyDocument(document.getId(), pdf);
+
+            auditLogService.logVerification(
+                    document.getFileName(),
+                    userEmail,
+                    (Boolean) verificationResult.get("allValid"),
+                    (Integer) verificationResult.get("signatureCount")
+            );
 
             return ResponseEntity.ok(Map.of(
                     "success", true,
@@ -412,61 +460,27 @@ public class PdfSigningController {
      * Download a signed document
      */
     @GetMapping(value = "/download/{filename}")
-    public ResponseEntity<?> downloadDocument(@PathVariable String filename) {
-        try {
-            File file = new File(outputDir, filename);
-            if (!file.exists()) {
-                return ResponseEntity.status(404).body(Map.of(
-                        "success", false,
-                        "error", "File not found"
-                ));
-            }
-
-            org.springframework.core.io.Resource resource =
-                    new org.springframework.core.io.FileSystemResource(file);
-
-            return ResponseEntity.ok()
-                    .header("Content-Disposition", "attachment; filename=\"" + filename + "\"")
-                    .header("Content-Type", "application/pdf")
-                    .contentLength(file.length())
-                    .body(resource);
-
-        } catch (Exception e) {
-            return ResponseEntity.status(500).body(Map.of(
-                    "success", false,
-                    "error", e.getMessage()
-            ));
+    public void downloadDocument(@PathVariable String filename,
+                                 HttpServletRequest request,
+                                 HttpServletResponse response) throws IOException {
+        java.nio.file.Path directory = new File(outputDir).toPath().toAbsolutePath().normalize();
+        java.nio.file.Path file = directory.resolve(filename).normalize();
+        if (!file.startsWith(directory)) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND, "File not found");
+            return;
         }
+        fileServingService.serve(file, null, filename, false, request, response);
     }
 
     @GetMapping("/documents/download/{id}")
-    public ResponseEntity<Resource> downloadSignatureFile(
+    public void downloadSignatureFile(
             @PathVariable Long id,
-            HttpServletRequest request) throws IOException {
+            HttpServletRequest request,
+            HttpServletResponse response) throws IOException {
 
-        // Get signature to verify existence and get a file path
+        // Get document to verify existence and get a file path
         Document document = documentService.getDocument(id);
 
-        // Load file as Resource
-        Resource resource = fileStorageService.loadFileAsResource(document.getFilePath());
-
-        // Try to determine a content type
-        String contentType = null;
-        try {
-            contentType = request.getServletContext().getMimeType(resource.getFile().getAbsolutePath());
-        } catch (IOException ex) {
-            log.info("Could not determine file type.");
-        }
-
-        // Fallback to the content type stored in a database
-        if (contentType == null) {
-            contentType = "application/pdf";
-        }
-
-        return ResponseEntity.ok()
-                .contentType(MediaType.parseMediaType(contentType))
-                .header(HttpHeaders.CONTENT_DISPOSITION,
-                        "inline; filename=\"" + resource.getFilename() + "\"")
-                .body(resource);
+        fileServingService.serveStored(document.getFilePath(), document.getFileName(), true, request, response);
     }
 }
\ No newline at end of file
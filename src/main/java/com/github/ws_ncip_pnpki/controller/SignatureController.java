@@ -3,6 +3,7 @@ package com.github.ws_ncip_pnpki.controller;
 import com.github.ws_ncip_pnpki.dto.SignatureResponseDTO;
 import com.github.ws_ncip_pnpki.model.SignatureType;
 import com.github.ws_ncip_pnpki.service.FileStorageService;
+import com.github.ws_ncip_pnpki.service.SignatureImageProcessor;
 import com.github.ws_ncip_pnpki.service.SignatureService;
 import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
@@ -31,6 +32,7 @@ public class SignatureController {
 
     private final SignatureService signatureService;
     private final FileStorageService fileStorageService;
+    private final SignatureImageProcessor signatureImageProcessor;
 
     @PostMapping(consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
     public ResponseEntity<SignatureResponseDTO> uploadSignature(
@@ -144,6 +146,7 @@ public class SignatureController {
             // ✅ CRITICAL: Use signature.getFilePath() NOT signature.getFileName()
             // filePath contains: "userId/uuid.png"
             // fileName contains: "justin initial.png"
+            signatureImageProcessor.awaitProcessed(signature.getFilePath());
             Path filePath = fileStorageService.getFilePath(signature.getFilePath());
 
             log.info("Loading signature - ID: {}, FilePath: {}, FileName: {}",
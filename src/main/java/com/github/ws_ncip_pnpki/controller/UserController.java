@@ -1,5 +1,6 @@
 package com.github.ws_ncip_pnpki.controller;
 
+import com.github.ws_ncip_pnpki.dto.CursorPage;
 import com.github.ws_ncip_pnpki.dto.PdfUploadResponse;
 import com.github.ws_ncip_pnpki.dto.UserListResponse;
 import com.github.ws_ncip_pnpki.dto.UserResponse;
@@ -13,6 +14,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.domain.Sort;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
@@ -62,9 +64,22 @@ public class UserController {
             @RequestParam(defaultValue = "0") int offset,
             @RequestParam(defaultValue = "id") String sortBy,
             @RequestParam(defaultValue = "asc") String sortDirection,
-            @RequestParam(value = "search", required = false) String search
+            @RequestParam(value = "search", required = false) String search,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "false") boolean skipTotal
     ){
         try {
+            if (cursor != null) {
+                CursorPage<UserResponse> cursorPage = userService.getAllUsersByCursor(
+                        limit, cursor, sortBy, sortDirection, search, userId, skipTotal);
+
+                Map<String, Object> response = new HashMap<>();
+                response.put("success", true);
+                response.put("data", cursorPage.content());
+                response.put("total", cursorPage.toPaginationInfo(limit));
+                return ResponseEntity.ok(response);
+            }
+
             Page<UserResponse> usersPage = userService.getAllUsers(page, limit, offset, sortBy, sortDirection, search, userId);
             long totalCount = userService.getTotalCount();
 
@@ -86,27 +101,32 @@ public class UserController {
             @RequestParam(value = "query", required = false) String query,
             @RequestParam(value = "excludeCurrent", defaultValue = "true") boolean excludeCurrent,
             @RequestParam(value = "currentUserId", required = false) Long currentUserId,
-            @RequestParam(value = "documentId") Long documentId) {
+            @RequestParam(value = "documentId") Long documentId,
+            @RequestParam(value = "offset", defaultValue = "0") int offset,
+            @RequestParam(value = "limit", defaultValue = "20") int limit) {
 
         try {
-            List<User> users = userService.searchUsers(query, excludeCurrent, currentUserId, documentId);
+            Slice<User> users = userService.searchUsers(query, excludeCurrent, currentUserId, documentId, offset, limit);
 
 
 
+            // Temporary passwords of the whole page in one query instead of one per user
+            Map<Long, String> passwords = temporaryCredentialService.getTemporaryPasswords(
+                    users.stream().map(User::getId).toList());
+
             // get id, username, email from users list
             List<UserSearchResponse> lookupUsers = users.stream()
-                    .map(user -> {
-                                String password = temporaryCredentialService.getTemporaryPassword(user.getId());
-                                return new UserSearchResponse(user.getId(), user.getUsername(), user.getEmail(), password, user.getRoles());
-                    }
-
-                    ).toList();
+                    .map(user -> new UserSearchResponse(user.getId(), user.getUsername(), user.getEmail(),
+                            passwords.get(user.getId()), user.getRoles()))
+                    .toList();
 
 
             Map<String, Object> response = new HashMap<>();
             response.put("success", true);
             response.put("data", lookupUsers);
-            response.put("count", users.size());
+            response.put("count", users.getNumberOfElements());
+            response.put("offset", offset);
+            response.put("hasNext", users.hasNext());
 
             return ResponseEntity.ok(response);
         } catch (Exception e) {
@@ -0,0 +1,29 @@
+package com.github.ws_ncip_pnpki.dto;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * One page of a keyset (cursor) listing. {@code nextCursor} is null on the last page and
+ * {@code totalElements} is null when the caller asked to skip the count.
+ */
+public record CursorPage<T>(List<T> content, String nextCursor, Long totalElements) {
+
+    public boolean hasNext() {
+        return nextCursor != null;
+    }
+
+    public <R> CursorPage<R> withContent(List<R> content) {
+        return new CursorPage<>(content, nextCursor, totalElements);
+    }
+
+    public Map<String, Object> toPaginationInfo(int limit) {
+        Map<String, Object> pagination = new HashMap<>();
+        pagination.put("itemsPerPage", limit);
+        pagination.put("nextCursor", nextCursor);
+        pagination.put("hasNext", hasNext());
+        pagination.put("totalItems", totalElements);
+        return pagination;
+    }
+}
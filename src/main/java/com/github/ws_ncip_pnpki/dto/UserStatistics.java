@@ -0,0 +1,23 @@
+package com.github.ws_ncip_pnpki.dto;
+
+/**
+ * Dashboard counters of one user, read in a single query.
+ */
+public interface UserStatistics {
+
+    long getOwnedDocuments();
+
+    long getCertificates();
+
+    long getTotalForwards();
+
+    long getPendingForwards();
+
+    long getAcceptedForwards();
+
+    long getSignedDocumentForwards();
+
+    default long getRejectedForwards() {
+        return getTotalForwards() - getPendingForwards() - getAcceptedForwards();
+    }
+}
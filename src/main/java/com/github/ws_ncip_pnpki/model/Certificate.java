@@ -1,5 +1,6 @@
 package com.github.ws_ncip_pnpki.model;
 
+import com.github.ws_ncip_pnpki.service.UserStatisticsListener;
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Data;
@@ -7,6 +8,7 @@ import lombok.NoArgsConstructor;
 import java.time.LocalDateTime;
 
 @Entity
+@EntityListeners(UserStatisticsListener.class)
 @Table(name = "certificates", uniqueConstraints = {
         @UniqueConstraint(columnNames = {"user_id", "certificate_hash"})
 })
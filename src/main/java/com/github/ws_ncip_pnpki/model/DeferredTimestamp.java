@@ -0,0 +1,55 @@
+package com.github.ws_ncip_pnpki.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.CreationTimestamp;
+
+import java.time.LocalDateTime;
+
+/**
+ * A signed file still waiting for its document timestamp because the TSA was degraded
+ * when it was signed. Kept in the database so a restart does not drop it.
+ */
+@Entity
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Table(name = "deferred_timestamps")
+public class DeferredTimestamp {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    // Either a local file or a key in storage
+    @Column(name = "file_path", length = 1024)
+    private String filePath;
+
+    @Column(name = "storage_key", length = 1024)
+    private String storageKey;
+
+    @Column(nullable = false)
+    private int attempts;
+
+    // Retry run working on the row; another node may take it over once the claim expires
+    @Column(name = "claimed_by", length = 36)
+    private String claimedBy;
+
+    @Column(name = "claimed_until")
+    private LocalDateTime claimedUntil;
+
+    @CreationTimestamp
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+
+    public DeferredTimestamp(String filePath, String storageKey) {
+        this.filePath = filePath;
+        this.storageKey = storageKey;
+    }
+
+    public String name() {
+        return filePath != null ? filePath : storageKey;
+    }
+}
@@ -1,5 +1,6 @@
 package com.github.ws_ncip_pnpki.model;
 
+import com.github.ws_ncip_pnpki.service.UserStatisticsListener;
 
 import jakarta.persistence.*;
 import lombok.*;
@@ -8,6 +9,7 @@ import java.time.LocalDateTime;
 import java.util.*;
 
 @Entity
+@EntityListeners(UserStatisticsListener.class)
 @Table(name = "documents")
 @Getter
 @Setter
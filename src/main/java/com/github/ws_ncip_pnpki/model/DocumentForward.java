@@ -1,11 +1,13 @@
 package com.github.ws_ncip_pnpki.model;
 
+import com.github.ws_ncip_pnpki.service.UserStatisticsListener;
 import jakarta.persistence.*;
 import lombok.*;
 
 import java.time.LocalDateTime;
 
 @Entity
+@EntityListeners(UserStatisticsListener.class)
 @Table(name = "document_forwards")
 @Getter
 @Setter
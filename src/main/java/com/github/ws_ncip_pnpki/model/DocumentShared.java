@@ -1,12 +1,14 @@
 package com.github.ws_ncip_pnpki.model;
 
 
+import com.github.ws_ncip_pnpki.service.UserDirectoryListener;
 import jakarta.persistence.*;
 import lombok.*;
 
 import java.time.Instant;
 
 @Entity
+@EntityListeners(UserDirectoryListener.class)
 @Data
 @AllArgsConstructor
 @NoArgsConstructor
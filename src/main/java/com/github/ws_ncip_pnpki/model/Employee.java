@@ -1,5 +1,6 @@
 package com.github.ws_ncip_pnpki.model;
 
+import com.github.ws_ncip_pnpki.service.UserDirectoryListener;
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
@@ -7,6 +8,7 @@ import lombok.NoArgsConstructor;
 import lombok.Setter;
 
 @Entity
+@EntityListeners(UserDirectoryListener.class)
 @Table(name="employees")
 @Getter
 @Setter
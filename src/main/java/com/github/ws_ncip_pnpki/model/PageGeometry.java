@@ -0,0 +1,58 @@
+package com.github.ws_ncip_pnpki.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Boxes and rotation of one page of a stored document, in PDF points. Recorded at upload
+ * so signature placements can be checked and converted without opening the PDF.
+ * Signing only adds content, so the geometry stays valid for every signed revision.
+ */
+@Entity
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Table(name = "page_geometry",
+        uniqueConstraints = @UniqueConstraint(columnNames = {"document_id", "page_number"}))
+public class PageGeometry {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "document_id", nullable = false)
+    private Long documentId;
+
+    @Column(name = "page_number", nullable = false)
+    private Integer pageNumber;
+
+    @Column(name = "media_x", nullable = false)
+    private Float mediaX;
+
+    @Column(name = "media_y", nullable = false)
+    private Float mediaY;
+
+    @Column(name = "media_width", nullable = false)
+    private Float mediaWidth;
+
+    @Column(name = "media_height", nullable = false)
+    private Float mediaHeight;
+
+    @Column(name = "crop_x", nullable = false)
+    private Float cropX;
+
+    @Column(name = "crop_y", nullable = false)
+    private Float cropY;
+
+    @Column(name = "crop_width", nullable = false)
+    private Float cropWidth;
+
+    @Column(name = "crop_height", nullable = false)
+    private Float cropHeight;
+
+    // Page /Rotate in degrees, normalized to 0, 90, 180 or 270
+    @Column(name = "rotation", nullable = false)
+    private Integer rotation;
+}
@@ -0,0 +1,55 @@
+package com.github.ws_ncip_pnpki.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Verification outcome of one signed revision of a stored document.
+ * A revision is the byte prefix covered by a signature; its digest is recorded the first
+ * time it is verified so later checks only need to verify newly appended signatures, and
+ * a changed digest reveals that an earlier revision was rewritten.
+ */
+@Entity
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Table(name = "signature_revisions",
+        uniqueConstraints = @UniqueConstraint(columnNames = {"document_id", "revision_number"}))
+public class SignatureRevision {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "document_id", nullable = false)
+    private Long documentId;
+
+    @Column(name = "revision_number", nullable = false)
+    private Integer revisionNumber;
+
+    @Column(name = "signature_name", nullable = false)
+    private String signatureName;
+
+    // Number of bytes covered by the signature, i.e. the end of its revision
+    @Column(name = "revision_length", nullable = false)
+    private Long revisionLength;
+
+    // SHA-256 of the first revisionLength bytes of the file
+    @Column(name = "revision_digest", nullable = false, length = 64)
+    private String revisionDigest;
+
+    @Column(name = "valid", nullable = false)
+    private Boolean valid;
+
+    // Signature details as returned by the verification endpoints
+    @Lob
+    @Column(name = "result_json", columnDefinition = "TEXT")
+    private String resultJson;
+
+    @Column(name = "verified_at")
+    private LocalDateTime verifiedAt;
+}
@@ -0,0 +1,39 @@
+package com.github.ws_ncip_pnpki.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * A stored file identified by the SHA-256 of its content. Documents with identical
+ * content point at the same blob; the reference count tracks how many do, and the
+ * file is removed when the last one lets go.
+ */
+@Entity
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Table(name = "stored_blobs")
+public class StoredBlob {
+
+    // Hex SHA-256 of the content
+    @Id
+    @Column(name = "id", length = 64)
+    private String id;
+
+    // Location relative to the upload directory
+    @Column(name = "path", nullable = false)
+    private String path;
+
+    @Column(name = "size", nullable = false)
+    private Long size;
+
+    @Column(name = "ref_count", nullable = false)
+    private Integer refCount;
+
+    @Column(name = "created_at")
+    private LocalDateTime createdAt;
+}
@@ -1,6 +1,8 @@
 package com.github.ws_ncip_pnpki.model;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.github.ws_ncip_pnpki.security.PrincipalCacheListener;
+import com.github.ws_ncip_pnpki.service.UserDirectoryListener;
 import jakarta.persistence.*;
 import lombok.*;
 import org.hibernate.annotations.CreationTimestamp;
@@ -13,6 +15,7 @@ import java.util.List;
 import java.util.Set;
 
 @Entity
+@EntityListeners({UserDirectoryListener.class, PrincipalCacheListener.class})
 @Table(name = "users")
 @Getter
 @Setter
@@ -97,6 +100,10 @@ public class User {
     @Column(nullable = false, columnDefinition = "boolean default false")
     private boolean finishedSetup;
 
+    // Bumped on password change; access tokens carrying an older value are rejected
+    @Column(name = "credentials_version", nullable = false, columnDefinition = "integer default 0")
+    private int credentialsVersion;
+
 
 
     // Helper methods
@@ -0,0 +1,42 @@
+package com.github.ws_ncip_pnpki.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * A linearized copy of a stored PDF for fast display in the browser viewer. The signed
+ * original is never touched; the copy is only served for inline viewing and is rebuilt
+ * when the original changes size, e.g. after another signature is appended.
+ */
+@Entity
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Table(name = "view_copies")
+public class ViewCopy {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "source_path", nullable = false, unique = true)
+    private String sourcePath;
+
+    // Size of the original the copy was made from
+    @Column(name = "source_size", nullable = false)
+    private Long sourceSize;
+
+    @Column(name = "view_path", nullable = false)
+    private String viewPath;
+
+    // Content hash of the copy, so an uploaded copy is refused for signing
+    @Column(name = "view_sha256", length = 64)
+    private String viewSha256;
+
+    @Column(name = "created_at")
+    private LocalDateTime createdAt;
+}
@@ -0,0 +1,29 @@
+package com.github.ws_ncip_pnpki.repository;
+
+import com.github.ws_ncip_pnpki.model.DeferredTimestamp;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+@Repository
+public interface DeferredTimestampRepository extends JpaRepository<DeferredTimestamp, Long> {
+
+    /**
+     * Claims up to {@code limit} rows that nobody holds, or whose claim expired, for
+     * {@code owner} in a single statement, so nodes retrying at the same time never
+     * pick the same rows. Uses the database clock to keep node clocks out of it.
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "UPDATE deferred_timestamps SET claimed_by = :owner, " +
+            "claimed_until = DATE_ADD(NOW(), INTERVAL :seconds SECOND) " +
+            "WHERE claimed_until IS NULL OR claimed_until < NOW() ORDER BY id LIMIT :limit", nativeQuery = true)
+    int claim(@Param("owner") String owner, @Param("seconds") long seconds, @Param("limit") int limit);
+
+    List<DeferredTimestamp> findByClaimedByOrderByIdAsc(String claimedBy);
+}
@@ -1,11 +1,21 @@
 package com.github.ws_ncip_pnpki.repository;
 
+import com.github.ws_ncip_pnpki.dto.UserStatistics;
 import com.github.ws_ncip_pnpki.model.Certificate;
 import com.github.ws_ncip_pnpki.model.Document;
+import com.github.ws_ncip_pnpki.model.DocumentShared;
 import com.github.ws_ncip_pnpki.model.DocumentStatus;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import jakarta.persistence.criteria.Subquery;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
@@ -13,7 +23,7 @@ import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
-public interface DocumentRepository extends JpaRepository<Document, Long> {
+public interface DocumentRepository extends JpaRepository<Document, Long>, JpaSpecificationExecutor<Document> {
     // Find documents owned by a user
     List<Document> findByOwnerId(Long ownerId);
 
@@ -55,6 +65,65 @@ public interface DocumentRepository extends JpaRepository<Document, Long> {
             @Param("search") String search,
             Pageable pageable);
 
+    // Full-text counterparts of searchOwnedUploadDocuments and searchSharedDocuments, ranked by relevance
+    @Query(nativeQuery = true, value = """
+        SELECT d.*
+        FROM documents d
+        WHERE d.owner_id = :userId
+            AND d.status IN ('UPLOADED','SIGNED','SHARED','SIGNED_AND_SHARED')
+            AND d.deleted = false
+            AND (
+                MATCH(d.file_name) AGAINST (:search IN BOOLEAN MODE)
+                OR EXISTS (
+                    SELECT 1 FROM document_shared ds JOIN users u ON u.id = ds.user_id
+                    WHERE ds.document_id = d.id AND MATCH(u.username, u.email) AGAINST (:search IN BOOLEAN MODE)
+                )
+            )
+        ORDER BY MATCH(d.file_name) AGAINST (:search IN BOOLEAN MODE) DESC, d.id DESC
+       """, countQuery = """
+        SELECT COUNT(*)
+        FROM documents d
+        WHERE d.owner_id = :userId
+            AND d.status IN ('UPLOADED','SIGNED','SHARED','SIGNED_AND_SHARED')
+            AND d.deleted = false
+            AND (
+                MATCH(d.file_name) AGAINST (:search IN BOOLEAN MODE)
+                OR EXISTS (
+                    SELECT 1 FROM document_shared ds JOIN users u ON u.id = ds.user_id
+                    WHERE ds.document_id = d.id AND MATCH(u.username, u.email) AGAINST (:search IN BOOLEAN MODE)
+                )
+            )
+       """)
+    Page<Document> fullTextSearchOwnedUploadDocuments(
+            @Param("userId") Long userId,
+            @Param("search") String search,
+            Pageable pageable);
+
+    @Query(nativeQuery = true, value = """
+        SELECT d.*
+        FROM documents d
+        JOIN document_shared ds ON ds.document_id = d.id
+        JOIN users o ON o.id = d.owner_id
+        WHERE ds.user_id = :userId
+            AND d.deleted = false
+            AND MATCH(o.username, o.email) AGAINST (:search IN BOOLEAN MODE)
+        ORDER BY MATCH(o.username, o.email) AGAINST (:search IN BOOLEAN MODE) DESC, d.id DESC
+    """, countQuery = """
+        SELECT COUNT(*)
+        FROM documents d
+        JOIN document_shared ds ON ds.document_id = d.id
+        JOIN users o ON o.id = d.owner_id
+        WHERE ds.user_id = :userId
+            AND d.deleted = false
+            AND MATCH(o.username, o.email) AGAINST (:search IN BOOLEAN MODE)
+    """)
+    Page<Document> fullTextSearchSharedDocuments(
+            @Param("userId") Long userId,
+            @Param("search") String search,
+            Pageable pageable);
+
+    // Owners differ per row, so load them with the page
+    @EntityGraph(attributePaths = "owner")
     @Query("""
         SELECT d
         FROM Document d
@@ -68,6 +137,7 @@ public interface DocumentRepository extends JpaRepository<Document, Long> {
             Pageable pageable
     );
 
+    @EntityGraph(attributePaths = "owner")
     @Query("""
         SELECT d
         FROM Document d
@@ -115,6 +185,7 @@ public interface DocumentRepository extends JpaRepository<Document, Long> {
     Page<Document> findByOwnerIdAndFileNameContainingOrFileTypeContainingAllIgnoreCase(Long userId, String fileName, String fileType, Pageable pageable);
 
 
+    @EntityGraph(attributePaths = "owner")
     @Query("""
         SELECT d FROM Document d
         LEFT JOIN d.sharedWith sw
@@ -135,6 +206,7 @@ public interface DocumentRepository extends JpaRepository<Document, Long> {
             Pageable pageable);
 
 
+    @EntityGraph(attributePaths = "owner")
     @Query("""
         SELECT d FROM Document d
         LEFT JOIN d.sharedWith sw
@@ -149,6 +221,43 @@ public interface DocumentRepository extends JpaRepository<Document, Long> {
             Pageable pageable);
 
 
+    // Keyset listings use specifications; these match findOwnedAndSharedDocument and allSharedDocuments /
+    // searchSharedDocuments, with EXISTS instead of a join so no row is repeated
+    static Specification<Document> ownedOrSharedWith(Long userId, String search) {
+        return (root, query, cb) -> {
+            Predicate owned = cb.equal(root.get("owner").get("id"), userId);
+            if (search != null && !search.trim().isEmpty()) {
+                String pattern = "%" + search.toLowerCase() + "%";
+                owned = cb.and(owned, cb.or(
+                        cb.like(cb.lower(root.get("fileName")), pattern),
+                        cb.like(cb.lower(root.get("fileType")), pattern)));
+            }
+            return cb.or(owned, cb.exists(sharedWithSubquery(root, query, cb, userId)));
+        };
+    }
+
+    static Specification<Document> sharedWith(Long userId, String search) {
+        return (root, query, cb) -> {
+            Predicate shared = cb.and(
+                    cb.exists(sharedWithSubquery(root, query, cb, userId)),
+                    cb.isFalse(root.get("deleted")));
+            if (search != null && !search.trim().isEmpty()) {
+                shared = cb.and(shared, cb.like(cb.lower(root.get("owner").get("username")),
+                        "%" + search.toLowerCase() + "%"));
+            }
+            return shared;
+        };
+    }
+
+    private static Subquery<Long> sharedWithSubquery(Root<Document> root, CriteriaQuery<?> query,
+                                                     CriteriaBuilder cb, Long userId) {
+        Subquery<Long> subquery = query.subquery(Long.class);
+        Root<DocumentShared> share = subquery.from(DocumentShared.class);
+        return subquery.select(share.get("id").get("documentId"))
+                .where(cb.equal(share.get("document"), root),
+                        cb.equal(share.get("user").get("id"), userId));
+    }
+
     // In DocumentRepository
     @Query("SELECT d FROM Document d WHERE d.owner.id = :userId AND d.status IN ('SIGNED', 'SIGNED_AND_SHARED')")
     Page<Document> findAllSignedDocumentsByOwnerId(@Param("userId") Long userId, Pageable pageable);
@@ -168,6 +277,20 @@ public interface DocumentRepository extends JpaRepository<Document, Long> {
 
     boolean existsByIdAndStatus(Long id, DocumentStatus status);
 
+    // All dashboard counters of a user in one round trip
+    @Query(nativeQuery = true, value = """
+        SELECT
+            (SELECT COUNT(*) FROM documents d WHERE d.owner_id = :userId) AS ownedDocuments,
+            (SELECT COUNT(*) FROM certificates c WHERE c.user_id = :userId) AS certificates,
+            COUNT(f.id) AS totalForwards,
+            COUNT(CASE WHEN f.status = 'PENDING' THEN 1 END) AS pendingForwards,
+            COUNT(CASE WHEN f.status = 'ACCEPTED' THEN 1 END) AS acceptedForwards,
+            COUNT(CASE WHEN f.is_signed_document THEN 1 END) AS signedDocumentForwards
+        FROM document_forwards f
+        WHERE f.forwarded_to = :userId
+    """)
+    UserStatistics findUserStatistics(@Param("userId") Long userId);
+
     // Find documents by owner and multiple statuses
     List<Document> findByOwnerIdAndStatusIn(Long ownerId, List<DocumentStatus> statuses);
 
@@ -8,8 +8,11 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.stream.Collectors;
 
 @Repository
 public interface DocumentSharedRepository extends JpaRepository<DocumentShared, Long> {
@@ -18,6 +21,24 @@ public interface DocumentSharedRepository extends JpaRepository<DocumentShared,
 
     List<DocumentShared> findByIdDocumentId(Long documentId);
 
+    // Shares of a page of documents with their users and roles, for building listings in one query
+    @Query("""
+    select ds
+    from DocumentShared ds
+    join fetch ds.user u
+    left join fetch u.roles
+    where ds.id.documentId in :documentIds
+""")
+    List<DocumentShared> findWithUserByDocumentIdIn(@Param("documentIds") Collection<Long> documentIds);
+
+    default Map<Long, List<DocumentShared>> findWithUserGroupedByDocumentId(Collection<Long> documentIds) {
+        if (documentIds.isEmpty()) {
+            return Map.of();
+        }
+        return findWithUserByDocumentIdIn(documentIds).stream()
+                .collect(Collectors.groupingBy(ds -> ds.getId().getDocumentId()));
+    }
+
     // If step 1 has 3 users, you’ll get all 3 user IDs in one call.
     @Query("""
     select ds.id.userId
@@ -35,5 +56,8 @@ public interface DocumentSharedRepository extends JpaRepository<DocumentShared,
 """)
     List<Long> findNextUserIdsToSign(@Param("documentId") Long documentId);
 
+    @Query("select ds.id.userId from DocumentShared ds where ds.id.documentId = :documentId")
+    List<Long> findUserIdsByDocumentId(@Param("documentId") Long documentId);
+
     void deleteByDocumentIdAndUserId(Long documentId, Long userId);
 }
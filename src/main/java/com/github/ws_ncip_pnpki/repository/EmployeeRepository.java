@@ -16,6 +16,15 @@ public interface EmployeeRepository extends JpaRepository<Employee, Long> {
     @Query("SELECT e FROM Employee e WHERE e.firstName LIKE %:search% OR e.lastName LIKE %:search%")
     List<Employee> searchByName(@Param("search") String search);
 
+    // Full-text counterpart of searchByName, best matches first
+    @Query(nativeQuery = true, value = """
+            SELECT e.* FROM employees e
+            WHERE MATCH(e.first_name, e.last_name) AGAINST (:search IN BOOLEAN MODE)
+            ORDER BY MATCH(e.first_name, e.last_name) AGAINST (:search IN BOOLEAN MODE) DESC
+            LIMIT :limit
+            """)
+    List<Employee> fullTextSearchByName(@Param("search") String search, @Param("limit") int limit);
+
 
     List<Employee> findDistinctByUserIsNull();
 }
@@ -1,15 +1,18 @@
 package com.github.ws_ncip_pnpki.repository;
 
 import com.github.ws_ncip_pnpki.model.Notification;
+import jakarta.persistence.criteria.Predicate;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 @Repository
-public interface NotificationRepository extends JpaRepository<Notification, Long> {
+public interface NotificationRepository extends JpaRepository<Notification, Long>, JpaSpecificationExecutor<Notification> {
 
 
     @Query("""
@@ -33,5 +36,35 @@ public interface NotificationRepository extends JpaRepository<Notification, Long
             @Param("search") String search,
             Pageable pageable);
 
+    // Full-text counterpart of searchNotification, ranked by relevance
+    @Query(nativeQuery = true, value = """
+            SELECT n.* FROM notifications n
+            WHERE n.to_user_id = :userId
+            AND MATCH(n.title, n.message) AGAINST (:search IN BOOLEAN MODE)
+            ORDER BY MATCH(n.title, n.message) AGAINST (:search IN BOOLEAN MODE) DESC, n.id DESC
+            """, countQuery = """
+            SELECT COUNT(*) FROM notifications n
+            WHERE n.to_user_id = :userId
+            AND MATCH(n.title, n.message) AGAINST (:search IN BOOLEAN MODE)
+            """)
+    Page<Notification> fullTextSearchNotification(
+            @Param("userId") Long userId,
+            @Param("search") String search,
+            Pageable pageable);
+
     Long countByToUser_IdAndOpenedFalse(Long toUserId);
+
+    // Keyset counterpart of allNotification and searchNotification
+    static Specification<Notification> toUser(Long userId, String search) {
+        return (root, query, cb) -> {
+            Predicate predicate = cb.equal(root.get("toUser").get("id"), userId);
+            if (search != null && !search.trim().isEmpty()) {
+                String pattern = "%" + search.toLowerCase() + "%";
+                predicate = cb.and(predicate, cb.or(
+                        cb.like(cb.lower(root.get("title")), pattern),
+                        cb.like(cb.lower(root.get("message")), pattern)));
+            }
+            return predicate;
+        };
+    }
 }
@@ -0,0 +1,19 @@
+package com.github.ws_ncip_pnpki.repository;
+
+import com.github.ws_ncip_pnpki.model.PageGeometry;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+@Repository
+public interface PageGeometryRepository extends JpaRepository<PageGeometry, Long> {
+
+    List<PageGeometry> findByDocumentIdOrderByPageNumber(Long documentId);
+
+    @Modifying
+    @Transactional
+    void deleteByDocumentId(Long documentId);
+}
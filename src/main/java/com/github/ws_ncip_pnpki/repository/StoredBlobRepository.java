@@ -0,0 +1,29 @@
+package com.github.ws_ncip_pnpki.repository;
+
+import com.github.ws_ncip_pnpki.model.StoredBlob;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+@Repository
+public interface StoredBlobRepository extends JpaRepository<StoredBlob, String> {
+
+    // Concurrent uploads of the same content must not fail on the primary key
+    @Modifying
+    @Query(value = """
+        INSERT INTO stored_blobs (id, path, size, ref_count, created_at)
+        VALUES (:id, :path, :size, 0, NOW())
+        ON DUPLICATE KEY UPDATE id = id
+        """, nativeQuery = true)
+    void insertIfAbsent(@Param("id") String id, @Param("path") String path, @Param("size") long size);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT b FROM StoredBlob b WHERE b.id = :id")
+    Optional<StoredBlob> findByIdForUpdate(@Param("id") String id);
+}
@@ -6,6 +6,11 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
 @Repository
 public interface TemporaryCredentialRepository extends JpaRepository<TemporaryCredential, Long> {
 
@@ -14,6 +19,19 @@ public interface TemporaryCredentialRepository extends JpaRepository<TemporaryCr
     String findPasswordByEmployeeId(@Param("employeeId") Long employeeId);
 
 
+    // Credentials of a page of search results with their employee, for one query per page
+    @Query("select u from TemporaryCredential u join fetch u.employee where u.employee.id in :employeeIds")
+    List<TemporaryCredential> findWithEmployeeByEmployeeIdIn(@Param("employeeIds") Collection<Long> employeeIds);
+
+    default Map<Long, String> findPasswordsByEmployeeId(Collection<Long> employeeIds) {
+        if (employeeIds.isEmpty()) {
+            return Map.of();
+        }
+        return findWithEmployeeByEmployeeIdIn(employeeIds).stream()
+                .filter(tc -> tc.getPassword() != null)
+                .collect(Collectors.toMap(tc -> tc.getEmployee().getId(), TemporaryCredential::getPassword, (a, b) -> a));
+    }
+
     @Query("select u from TemporaryCredential u where u.employee.id = :employeeId")
     TemporaryCredential findByEmployeeId(@Param("employeeId") Long employeeId);
 
@@ -4,7 +4,9 @@ import com.github.ws_ncip_pnpki.model.Document;
 import com.github.ws_ncip_pnpki.model.User;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
@@ -13,7 +15,7 @@ import java.util.List;
 import java.util.Optional;
 
 @Repository
-public interface UserRepository extends JpaRepository<User, Long> {
+public interface UserRepository extends JpaRepository<User, Long>, JpaSpecificationExecutor<User> {
     Optional<User> findByUsername(String username);
     Optional<User> findByEmail(String email);
     Boolean existsByUsername(String username);
@@ -25,6 +27,19 @@ public interface UserRepository extends JpaRepository<User, Long> {
 
     Page<User> findByEmailOrUsernameContainingAndIdNot(String email, String username, Long Id, Pageable pageable);
 
+    // Keyset counterpart of findAll and findByEmailOrUsernameContainingAndIdNot
+    static Specification<User> matching(String search, Long excludeId) {
+        return (root, query, cb) -> {
+            if (search == null || search.trim().isEmpty()) {
+                return cb.conjunction();
+            }
+            return cb.or(
+                    cb.equal(root.get("email"), search),
+                    cb.and(cb.like(root.get("username"), "%" + search + "%"),
+                            cb.notEqual(root.get("id"), excludeId)));
+        };
+    }
+
 
     @Query("""
        SELECT u FROM User u
@@ -44,6 +59,22 @@ public interface UserRepository extends JpaRepository<User, Long> {
     List<User> searchUsersExcludingCurrent(@Param("searchTerm") String searchTerm,
                                            @Param("excludeUserId") Long excludeUserId);
 
+    // Full-text counterpart of searchUsers and searchUsersExcludingCurrent, best matches first
+    @Query(nativeQuery = true, value = """
+       SELECT u.* FROM users u
+       WHERE MATCH(u.username, u.email) AGAINST (:search IN BOOLEAN MODE)
+         AND (:excludeUserId IS NULL OR u.id <> :excludeUserId)
+         AND NOT EXISTS (
+             SELECT 1 FROM user_roles ur JOIN roles r ON r.id = ur.role_id
+             WHERE ur.user_id = u.id AND r.name = 'ROLE_ADMIN'
+         )
+       ORDER BY MATCH(u.username, u.email) AGAINST (:search IN BOOLEAN MODE) DESC
+       LIMIT :limit
+       """)
+    List<User> fullTextSearchUsers(@Param("search") String search,
+                                   @Param("excludeUserId") Long excludeUserId,
+                                   @Param("limit") int limit);
+
     // Get only users who do NOT yet have a documentSharedList entry with the given documentId.
     @Query("""
         SELECT u
@@ -65,6 +96,13 @@ public interface UserRepository extends JpaRepository<User, Long> {
             @Param("excludeId") Long excludeId,
             @Param("documentId") Long documentId);
 
+    @Query("SELECT u.credentialsVersion FROM User u WHERE u.id = :id")
+    Optional<Integer> findCredentialsVersionById(@Param("id") Long id);
+
+    // Everything the user picker index needs, in one query
+    @Query("SELECT DISTINCT u FROM User u LEFT JOIN FETCH u.employee LEFT JOIN FETCH u.roles")
+    List<User> findAllForDirectory();
+
     // Find all users except multiple IDs
     @Query("SELECT u FROM User u WHERE u.id NOT IN :excludeIds")
     List<User> findAllByIdNotIn(@Param("excludeIds") List<Long> excludeIds);
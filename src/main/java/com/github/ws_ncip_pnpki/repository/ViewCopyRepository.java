@@ -0,0 +1,21 @@
+package com.github.ws_ncip_pnpki.repository;
+
+import com.github.ws_ncip_pnpki.model.ViewCopy;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Optional;
+
+@Repository
+public interface ViewCopyRepository extends JpaRepository<ViewCopy, Long> {
+
+    Optional<ViewCopy> findBySourcePath(String sourcePath);
+
+    boolean existsByViewSha256(String viewSha256);
+
+    @Modifying
+    @Transactional
+    void deleteBySourcePath(String sourcePath);
+}
@@ -0,0 +1,130 @@
+package com.github.ws_ncip_pnpki.security;
+
+import com.github.ws_ncip_pnpki.model.Role;
+import com.github.ws_ncip_pnpki.model.User;
+import com.github.ws_ncip_pnpki.repository.UserRepository;
+import com.github.ws_ncip_pnpki.util.JwtUtil;
+import io.jsonwebtoken.Claims;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Resolves the principal of a verified access token.
+ * Tokens carry the user id, the role names and the user's credentials version, so the
+ * principal is built from the claims. The only database access is a version lookup,
+ * cached per user for a short while, which rejects tokens issued before a password
+ * change. Tokens issued before those claims existed load the user, and the principal
+ * is cached by token id. Saving or deleting a user evicts both caches through
+ * {@link PrincipalCacheListener}.
+ */
+@Component
+public class PrincipalCache {
+
+    @Autowired
+    private CustomUserDetailsService userDetailsService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Value("${jwt.principal-cache.max-entries:10000}")
+    private int maxEntries;
+
+    @Value("${jwt.principal-cache.ttl:PT30S}")
+    private Duration ttl;
+
+    // Upper bound on how long a password change on another instance goes unnoticed
+    @Value("${jwt.credentials-version.ttl:PT30S}")
+    private Duration versionTtl;
+
+    private Map<String, CachedPrincipal> cache;
+
+    private Map<Long, CachedVersion> versions;
+
+    private record CachedPrincipal(CustomUserDetails userDetails, long loadedAt) {
+    }
+
+    // version is null for users that no longer exist
+    private record CachedVersion(Integer version, long loadedAt) {
+    }
+
+    @PostConstruct
+    void init() {
+        cache = Collections.synchronizedMap(new LinkedHashMap<>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedPrincipal> eldest) {
+                return size() > maxEntries;
+            }
+        });
+        versions = Collections.synchronizedMap(new LinkedHashMap<>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, CachedVersion> eldest) {
+                return size() > maxEntries;
+            }
+        });
+    }
+
+    /**
+     * The principal of a verified token, or null when the token has been revoked by a
+     * password change.
+     */
+    public UserDetails resolve(Claims claims, String token) {
+        Long userId = claims.get(JwtUtil.CLAIM_USER_ID, Long.class);
+        Integer version = claims.get(JwtUtil.CLAIM_CREDENTIALS_VERSION, Integer.class);
+        if (userId == null || version == null || !(claims.get(JwtUtil.CLAIM_ROLES) instanceof Collection<?> roleNames)) {
+            // Tokens issued before token ids were added are keyed by their own value
+            return load(claims.getId() != null ? claims.getId() : token, claims.getSubject());
+        }
+        if (!version.equals(currentVersion(userId))) {
+            return null;
+        }
+        Set<Role> roles = new HashSet<>();
+        roleNames.forEach(name -> roles.add(new Role(String.valueOf(name))));
+        User user = User.builder()
+                .id(userId)
+                .username(claims.getSubject())
+                .roles(roles)
+                .credentialsVersion(version)
+                .build();
+        return new CustomUserDetails(user);
+    }
+
+    public void evict(Long userId) {
+        versions.remove(userId);
+        synchronized (cache) {
+            cache.values().removeIf(cached -> userId.equals(cached.userDetails().getUser().getId()));
+        }
+    }
+
+    private UserDetails load(String tokenId, String username) {
+        long now = System.nanoTime();
+        CachedPrincipal cached = cache.get(tokenId);
+        if (cached != null && now - cached.loadedAt() < ttl.toNanos()) {
+            return cached.userDetails();
+        }
+        CustomUserDetails userDetails = (CustomUserDetails) userDetailsService.loadUserByUsername(username);
+        cache.put(tokenId, new CachedPrincipal(userDetails, now));
+        return userDetails;
+    }
+
+    private Integer currentVersion(Long userId) {
+        long now = System.nanoTime();
+        CachedVersion cached = versions.get(userId);
+        if (cached != null && now - cached.loadedAt() < versionTtl.toNanos()) {
+            return cached.version();
+        }
+        Integer version = userRepository.findCredentialsVersionById(userId).orElse(null);
+        versions.put(userId, new CachedVersion(version, now));
+        return version;
+    }
+}
@@ -0,0 +1,40 @@
+package com.github.ws_ncip_pnpki.security;
+
+import com.github.ws_ncip_pnpki.model.User;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Entity listener that drops the cached principals and credentials version of a user
+ * whose password, roles or username changed. Eviction waits for the commit so a request
+ * running meanwhile cannot cache the old state again.
+ */
+public class PrincipalCacheListener {
+
+    @Autowired
+    private ObjectProvider<PrincipalCache> principalCache;
+
+    @PostUpdate
+    @PostRemove
+    void onChange(User user) {
+        PrincipalCache cache = principalCache.getIfAvailable();
+        if (cache == null || user.getId() == null) {
+            return;
+        }
+        Long userId = user.getId();
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            cache.evict(userId);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                cache.evict(userId);
+            }
+        });
+    }
+}
@@ -0,0 +1,105 @@
+package com.github.ws_ncip_pnpki.service;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Live state of a batch signing job. Workers report each document as it finishes, and
+ * the status endpoint and progress events read from here.
+ */
+@Getter
+public class BatchJob {
+
+    public enum Status { QUEUED, RUNNING, COMPLETED }
+
+    private final String batchId;
+
+    private final String userEmail;
+
+    private final int totalDocuments;
+
+    private final LocalDateTime createdAt = LocalDateTime.now();
+
+    private volatile LocalDateTime finishedAt;
+
+    private volatile Status status = Status.QUEUED;
+
+    private final AtomicInteger successCount = new AtomicInteger();
+
+    private final AtomicInteger failureCount = new AtomicInteger();
+
+    // Single completion signal; the success and failure counts are read separately
+    private final AtomicInteger completedCount = new AtomicInteger();
+
+    private final List<Map<String, Object>> results = new ArrayList<>();
+
+    // Not a monitor, so a virtual thread waiting for it does not pin its carrier
+    @Getter(AccessLevel.NONE)
+    private final ReentrantLock resultsLock = new ReentrantLock();
+
+    public BatchJob(String batchId, String userEmail, int totalDocuments) {
+        this.batchId = batchId;
+        this.userEmail = userEmail;
+        this.totalDocuments = totalDocuments;
+    }
+
+    public void markRunning() {
+        if (status == Status.QUEUED) {
+            status = Status.RUNNING;
+        }
+    }
+
+    /**
+     * Records the outcome of one document and returns true when it was the last one.
+     */
+    public boolean complete(Map<String, Object> result) {
+        resultsLock.lock();
+        try {
+            results.add(result);
+        } finally {
+            resultsLock.unlock();
+        }
+        if (Boolean.TRUE.equals(result.get("success"))) {
+            successCount.incrementAndGet();
+        } else {
+            failureCount.incrementAndGet();
+        }
+        if (completedCount.incrementAndGet() == totalDocuments) {
+            finishedAt = LocalDateTime.now();
+            status = Status.COMPLETED;
+            return true;
+        }
+        return false;
+    }
+
+    public int getCompletedCount() {
+        return completedCount.get();
+    }
+
+    public Map<String, Object> toStatus() {
+        Map<String, Object> status = new HashMap<>();
+        status.put("batchId", batchId);
+        status.put("status", this.status.name());
+        status.put("totalDocuments", totalDocuments);
+        status.put("completedCount", getCompletedCount());
+        status.put("successCount", successCount.get());
+        status.put("failureCount", failureCount.get());
+        status.put("createdAt", createdAt);
+        status.put("finishedAt", finishedAt);
+        resultsLock.lock();
+        try {
+            status.put("results", new ArrayList<>(results));
+        } finally {
+            resultsLock.unlock();
+        }
+        return status;
+    }
+}
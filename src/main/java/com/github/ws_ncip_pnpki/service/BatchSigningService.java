@@ -1,12 +1,29 @@
 package com.github.ws_ncip_pnpki.service;
 
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
 import java.util.*;
 import java.util.concurrent.*;
 
+/**
+ * Runs batch signing as background jobs. Submission spools the uploads to temp files and
+ * returns the batch id right away; documents are then signed from a bounded work queue
+ * and each outcome is pushed to {@code /queue/batch/{batchId}} over STOMP.
+ */
 @Service
 public class BatchSigningService {
 
@@ -19,10 +36,59 @@ public class BatchSigningService {
     @Autowired
     private EmailNotificationService emailNotificationService;
 
-    private final ExecutorService executorService = Executors.newFixedThreadPool(5);
+    @Autowired
+    private SimpMessagingTemplate messagingTemplate;
+
+    // "platform" for a fixed pool of workers, "virtual" for one virtual thread per document
+    @Value("${pdf.signing.batch.executor:platform}")
+    private String executorMode;
+
+    @Value("${pdf.signing.batch.workers:5}")
+    private int workers;
+
+    @Value("${pdf.signing.batch.queue-capacity:500}")
+    private int queueCapacity;
+
+    @Value("${pdf.signing.batch.job-retention:PT1H}")
+    private Duration jobRetention;
+
+    // Bytes of documents being signed at once; empty for a quarter of the heap
+    @Value("${pdf.signing.batch.memory-budget:}")
+    private DataSize memoryBudget;
+
+    private ExecutorService executorService;
+
+    // Documents accepted but not finished yet, across all batches
+    private Semaphore pendingDocuments;
+
+    // KiB of the memory budget, taken by each document while it is being signed
+    private Semaphore memoryPermits;
+
+    private int memoryPermitCount;
+
+    private final Map<String, BatchJob> jobs = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    void init() {
+        // Signing mostly waits on files, the TSA and JDBC; virtual threads let those waits
+        // overlap without more platform threads, while PdfSigningService caps the crypto stage
+        executorService = "virtual".equalsIgnoreCase(executorMode)
+                ? Executors.newVirtualThreadPerTaskExecutor()
+                : Executors.newFixedThreadPool(workers);
+        pendingDocuments = new Semaphore(queueCapacity);
+
+        long budget = memoryBudget != null ? memoryBudget.toBytes() : Runtime.getRuntime().maxMemory() / 4;
+        memoryPermitCount = (int) Math.min(Integer.MAX_VALUE, Math.max(1, budget / 1024));
+        memoryPermits = new Semaphore(memoryPermitCount, true);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executorService.shutdown();
+    }
 
     /**
-     * Sign multiple PDFs in parallel
+     * Queue multiple PDFs for signing and return the batch id immediately
      */
     public Map<String, Object> signMultiplePdfs(
             List<MultipartFile> pdfDocuments,
@@ -38,125 +104,190 @@ public class BatchSigningService {
             String password,
             String userEmail) throws Exception {
 
+        if (!pendingDocuments.tryAcquire(pdfDocuments.size())) {
+            throw new IllegalStateException("Batch signing queue is full, please try again later");
+        }
+
+        // Unlock the key once for the whole batch
+        List<PdfSigningService.SignaturePlacement> placements = List.of(
+                new PdfSigningService.SignaturePlacement(pageNumber, x, y, width, height)
+        );
+        SigningSession session;
+        try {
+            session = pdfSigningService.openSession(
+                    new ByteArrayInputStream(certificateFile.getBytes()), password, signatureImage.getBytes(),
+                    placements, canvasWidth, canvasHeight, "");
+        } catch (Exception e) {
+            pendingDocuments.release(pdfDocuments.size());
+            throw e;
+        }
+
         String batchId = UUID.randomUUID().toString();
-        List<Future<Map<String, Object>>> futures = new ArrayList<>();
+        BatchJob job = new BatchJob(batchId, userEmail, pdfDocuments.size());
+        jobs.put(batchId, job);
 
-        System.out.println("🔄 Starting batch signing for " + pdfDocuments.size() + " documents");
+        System.out.println("🔄 Queued batch signing for " + pdfDocuments.size() + " documents");
         System.out.println("📦 Batch ID: " + batchId);
 
-        // Submit all signing tasks
+        // Multipart temp files are gone once the request returns, so spool them now; only
+        // the documents being signed are held in memory
         for (int i = 0; i < pdfDocuments.size(); i++) {
-            final MultipartFile pdf = pdfDocuments.get(i);
+            final String originalFilename = pdfDocuments.get(i).getOriginalFilename();
             final int index = i;
 
-            Future<Map<String, Object>> future = executorService.submit(() -> {
+            Path spooled = null;
+            try {
+                spooled = Files.createTempFile("batch-", ".pdf");
+                pdfDocuments.get(i).transferTo(spooled);
+                final Path pdf = spooled;
+                executorService.execute(() -> {
+                    try {
+                        signDocument(job, session, pdf, originalFilename, index);
+                    } finally {
+                        deleteSpooled(pdf);
+                        pendingDocuments.release();
+                    }
+                });
+            } catch (Exception e) {
+                if (spooled != null) {
+                    deleteSpooled(spooled);
+                }
+                pendingDocuments.release();
                 Map<String, Object> result = new HashMap<>();
-                result.put("originalFilename", pdf.getOriginalFilename());
+                result.put("originalFilename", originalFilename);
                 result.put("index", index);
+                result.put("success", false);
+                result.put("error", e.getMessage());
+                recordResult(job, result);
+            }
+        }
 
-                try {
-                    String signedFileName = pdfSigningService.signPdf(
-                            pdf,
-                            signatureImage,
-                            certificateFile,
-                            pageNumber,
-                            x, y, width, height,
-                            canvasWidth, canvasHeight,
-                            password,""
-                    );
-
-                    result.put("success", true);
-                    result.put("signedFilename", signedFileName);
-
-                    // Log the signing
-                    auditLogService.logSigning(
-                            batchId,
-                            pdf.getOriginalFilename(),
-                            signedFileName,
-                            userEmail,
-                            "SUCCESS"
-                    );
-
-                    System.out.println("✓ Signed: " + pdf.getOriginalFilename());
-
-                } catch (Exception e) {
-                    result.put("success", false);
-                    result.put("error", e.getMessage());
-
-                    auditLogService.logSigning(
-                            batchId,
-                            pdf.getOriginalFilename(),
-                            null,
-                            userEmail,
-                            "FAILED: " + e.getMessage()
-                    );
-
-                    System.err.println("✗ Failed: " + pdf.getOriginalFilename() + " - " + e.getMessage());
-                }
-
-                return result;
-            });
+        Map<String, Object> batchResult = new HashMap<>();
+        batchResult.put("batchId", batchId);
+        batchResult.put("totalDocuments", pdfDocuments.size());
+        batchResult.put("status", job.getStatus().name());
+        batchResult.put("progressDestination", "/queue/batch/" + batchId);
+        return batchResult;
+    }
 
-            futures.add(future);
+    /**
+     * Get batch signing status
+     */
+    public Map<String, Object> getBatchStatus(String batchId) {
+        BatchJob job = jobs.get(batchId);
+        if (job != null) {
+            Map<String, Object> status = job.toStatus();
+            status.put("found", true);
+            return status;
         }
+        // Jobs are only kept for a while after they finish; older batches come from the audit log
+        return auditLogService.getBatchStatus(batchId);
+    }
 
-        // Collect results
-        List<Map<String, Object>> results = new ArrayList<>();
-        int successCount = 0;
-        int failureCount = 0;
+    @Scheduled(fixedDelayString = "${pdf.signing.batch.cleanup-interval-ms:300000}")
+    public void evictFinishedJobs() {
+        LocalDateTime cutoff = LocalDateTime.now().minus(jobRetention);
+        jobs.values().removeIf(job -> job.getFinishedAt() != null && job.getFinishedAt().isBefore(cutoff));
+    }
 
-        for (Future<Map<String, Object>> future : futures) {
-            try {
-                Map<String, Object> result = future.get(5, TimeUnit.MINUTES);
-                results.add(result);
+    private void signDocument(BatchJob job, SigningSession session,
+                              Path pdf, String originalFilename, int index) {
+        job.markRunning();
 
-                if ((Boolean) result.get("success")) {
-                    successCount++;
-                } else {
-                    failureCount++;
-                }
-            } catch (TimeoutException e) {
-                Map<String, Object> timeoutResult = new HashMap<>();
-                timeoutResult.put("success", false);
-                timeoutResult.put("error", "Timeout after 5 minutes");
-                results.add(timeoutResult);
-                failureCount++;
-            } catch (Exception e) {
-                Map<String, Object> errorResult = new HashMap<>();
-                errorResult.put("success", false);
-                errorResult.put("error", e.getMessage());
-                results.add(errorResult);
-                failureCount++;
+        Map<String, Object> result = new HashMap<>();
+        result.put("originalFilename", originalFilename);
+        result.put("index", index);
+
+        try {
+            // Virtual threads start every queued document at once; the memory budget
+            // decides how many are read into memory and signed together
+            int permits = memoryPermits(pdf);
+            memoryPermits.acquire(permits);
+            String signedFileName;
+            try {
+                // The parsed signature image is shared by every document of the batch
+                signedFileName = pdfSigningService.signWithSession(Files.readAllBytes(pdf), session);
+            } finally {
+                memoryPermits.release(permits);
             }
+
+            result.put("success", true);
+            result.put("signedFilename", signedFileName);
+
+            // Log the signing
+            auditLogService.logSigning(
+                    job.getBatchId(),
+                    originalFilename,
+                    signedFileName,
+                    job.getUserEmail(),
+                    "SUCCESS"
+            );
+
+            System.out.println("✓ Signed: " + originalFilename);
+
+        } catch (Exception e) {
+            result.put("success", false);
+            result.put("error", e.getMessage());
+
+            auditLogService.logSigning(
+                    job.getBatchId(),
+                    originalFilename,
+                    null,
+                    job.getUserEmail(),
+                    "FAILED: " + e.getMessage()
+            );
+
+            System.err.println("✗ Failed: " + originalFilename + " - " + e.getMessage());
         }
 
+        recordResult(job, result);
+    }
+
+    /**
+     * Permits a document holds while signed: its bytes plus about as much again for the
+     * parsed document and the signed output, capped so a huge file can still run alone.
+     */
+    private int memoryPermits(Path pdf) throws IOException {
+        long kib = Files.size(pdf) * 2 / 1024 + 1;
+        return (int) Math.min(kib, memoryPermitCount);
+    }
+
+    private void deleteSpooled(Path pdf) {
+        try {
+            Files.deleteIfExists(pdf);
+        } catch (IOException e) {
+            System.err.println("✗ Could not delete spooled upload " + pdf + ": " + e.getMessage());
+        }
+    }
+
+    private void recordResult(BatchJob job, Map<String, Object> result) {
+        boolean finished = job.complete(result);
+
+        Map<String, Object> progress = new HashMap<>(result);
+        progress.put("batchId", job.getBatchId());
+        progress.put("status", job.getStatus().name());
+        progress.put("completedCount", job.getCompletedCount());
+        progress.put("totalDocuments", job.getTotalDocuments());
+        messagingTemplate.convertAndSend("/queue/batch/" + job.getBatchId(), progress);
+
+        if (!finished) {
+            return;
+        }
+
+        int successCount = job.getSuccessCount().get();
+        int failureCount = job.getFailureCount().get();
+
         // Send email notification
-        if (userEmail != null && !userEmail.isEmpty()) {
+        if (job.getUserEmail() != null && !job.getUserEmail().isEmpty()) {
             emailNotificationService.sendBatchSigningNotification(
-                    userEmail,
-                    batchId,
-                    pdfDocuments.size(),
+                    job.getUserEmail(),
+                    job.getBatchId(),
+                    job.getTotalDocuments(),
                     successCount,
                     failureCount
             );
         }
 
-        Map<String, Object> batchResult = new HashMap<>();
-        batchResult.put("batchId", batchId);
-        batchResult.put("totalDocuments", pdfDocuments.size());
-        batchResult.put("successCount", successCount);
-        batchResult.put("failureCount", failureCount);
-        batchResult.put("results", results);
-
         System.out.println("✓ Batch signing complete: " + successCount + " succeeded, " + failureCount + " failed");
-
-        return batchResult;
-    }
-
-    /**
-     * Get batch signing status
-     */
-    public Map<String, Object> getBatchStatus(String batchId) {
-        return auditLogService.getBatchStatus(batchId);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,111 @@
+package com.github.ws_ncip_pnpki.service;
+
+import com.github.ws_ncip_pnpki.model.StoredBlob;
+import com.github.ws_ncip_pnpki.repository.StoredBlobRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+
+/**
+ * Content-addressed store for uploaded documents. Files are stored under
+ * {@code blobs/<first two hex digits>/<sha256>.<ext>} and are shared by every document
+ * with the same content; memos and templates sent to a whole office are stored once.
+ * The blob row is locked while its reference count changes, so an upload and a delete
+ * of the same content cannot race on the file.
+ */
+@Service
+@Slf4j
+public class BlobStoreService {
+
+    public static final String BLOB_DIR = "blobs";
+
+    @Autowired
+    private FileStorageService fileStorageService;
+
+    @Autowired
+    private StoredBlobRepository storedBlobRepository;
+
+    @Autowired
+    private ViewCopyService viewCopyService;
+
+    /**
+     * Stores an upload, or adds a reference to the existing blob with the same content,
+     * and returns the blob path to keep in {@code Document.filePath}.
+     */
+    @Transactional
+    public FileStorageService.StoredFile store(MultipartFile file, Long userId,
+                                               FileStorageService.UploadType expectedType) throws IOException {
+        // Stage under the user's folder first; the digest is only known once the upload is read
+        FileStorageService.StoredFile staged = fileStorageService.storeFileStreaming(file, userId, "documents", expectedType);
+
+        try {
+            String id = staged.sha256();
+            String stagedName = staged.path().substring(staged.path().lastIndexOf('/') + 1);
+            String extension = stagedName.contains(".") ? stagedName.substring(stagedName.lastIndexOf(".")) : "";
+            String blobPath = BLOB_DIR + "/" + id.substring(0, 2) + "/" + id + extension;
+
+            storedBlobRepository.insertIfAbsent(id, blobPath, staged.size());
+            StoredBlob blob = storedBlobRepository.findByIdForUpdate(id)
+                    .orElseThrow(() -> new IllegalStateException("Blob row missing: " + id));
+
+            if (fileStorageService.fileExists(blob.getPath())) {
+                fileStorageService.deleteFile(staged.path());
+                log.info("Upload deduplicated against blob {}", id);
+            } else {
+                fileStorageService.moveFile(staged.path(), blob.getPath());
+            }
+
+            blob.setRefCount(blob.getRefCount() + 1);
+            storedBlobRepository.save(blob);
+
+            return new FileStorageService.StoredFile(blob.getPath(), id, blob.getSize());
+        } catch (IOException | RuntimeException e) {
+            if (fileStorageService.fileExists(staged.path())) {
+                fileStorageService.deleteFile(staged.path());
+            }
+            throw e;
+        }
+    }
+
+    public boolean isBlob(String filePath) {
+        return filePath != null && filePath.startsWith(BLOB_DIR + "/");
+    }
+
+    /**
+     * Drops one reference to the blob at {@code filePath} and deletes the file with the
+     * last one. Paths outside the blob store are deleted directly.
+     */
+    @Transactional
+    public void release(String filePath) throws IOException {
+        if (!isBlob(filePath)) {
+            fileStorageService.deleteFile(filePath);
+            viewCopyService.discard(filePath);
+            return;
+        }
+
+        String fileName = filePath.substring(filePath.lastIndexOf('/') + 1);
+        String id = fileName.contains(".") ? fileName.substring(0, fileName.indexOf('.')) : fileName;
+
+        StoredBlob blob = storedBlobRepository.findByIdForUpdate(id).orElse(null);
+        if (blob == null) {
+            log.warn("Released unknown blob {}", filePath);
+            return;
+        }
+
+        int remaining = blob.getRefCount() - 1;
+        if (remaining > 0) {
+            blob.setRefCount(remaining);
+            storedBlobRepository.save(blob);
+            return;
+        }
+
+        storedBlobRepository.delete(blob);
+        fileStorageService.deleteFile(blob.getPath());
+        viewCopyService.discard(blob.getPath());
+        log.info("Blob {} has no references left, deleted", id);
+    }
+}
@@ -28,7 +28,6 @@ import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
 import java.security.Key;
 import java.security.KeyStore;
-import java.security.MessageDigest;
 import java.security.cert.X509Certificate;
 import java.time.Instant;
 import java.time.LocalDateTime;
@@ -50,8 +49,12 @@ public class CertificateService {
     @Autowired
     private UserRepository userRepository;
 
-    @Value("${file.upload.dir}")
-    private String uploadDir;
+    @Autowired
+    private SigningKeyCache signingKeyCache;
+
+    @Autowired
+    private UserStatisticsService userStatisticsService;
+
 
 
     @Transactional
@@ -67,28 +70,27 @@ public class CertificateService {
             throw new IllegalArgumentException("Only P12/PFX files are allowed");
         }
 
-        // Calculate hash to check for duplicates
-        byte[] fileBytes = file.getBytes();
-        String certificateHash = calculateHash(fileBytes);
-
-        // Check if a certificate already exists for this user
-        if (certificateRepository.existsByUserIdAndCertificateHash(userId, certificateHash)) {
-            throw new IllegalArgumentException("Certificate already exists for this user");
-        }
-
-        // Extract certificate details
-        CertificateDetails details = extractCertificateDetails(fileBytes, password);
+        // Store once; the hash is computed while the upload streams to disk
+        FileStorageService.StoredFile stored = fileStorageService.storeFileStreaming(
+                file, userId, "certificates", FileStorageService.UploadType.PKCS12);
+        String certificateHash = stored.sha256();
+        String filePath = stored.path();
+        String storedFileName = Paths.get(filePath).getFileName().toString();
+
+        CertificateDetails details;
+        try {
+            // Check if a certificate already exists for this user
+            if (certificateRepository.existsByUserIdAndCertificateHash(userId, certificateHash)) {
+                throw new IllegalArgumentException("Certificate already exists for this user");
+            }
 
-        // Create a directory if not exists
-        Path uploadPath = Paths.get(uploadDir, String.valueOf(userId), "certificates");
-        if (!Files.exists(uploadPath)) {
-            Files.createDirectories(uploadPath);
+            // Extract certificate details
+            details = extractCertificateDetails(fileStorageService.readAllBytes(filePath), password);
+        } catch (Exception e) {
+            fileStorageService.deleteFile(filePath);
+            throw e;
         }
 
-        // Generate a unique file name
-        String storedFileName = UUID.randomUUID() + ".p12";
-        String filePath = fileStorageService.storeFile(file, userId, "certificates");
-
         // Create a certificate entity
         Certificate certificate = new Certificate();
         certificate.setUserId(userId);
@@ -96,7 +98,7 @@ public class CertificateService {
         certificate.setStoredFileName(storedFileName);
         certificate.setCertificateHash(certificateHash);
         certificate.setFilePath(filePath);
-        certificate.setFileSize(file.getSize());
+        certificate.setFileSize(stored.size());
         certificate.setIssuer(details.getIssuer());
         certificate.setSubject(details.getSubject());
         certificate.setExpiresAt(details.getExpiresAt());
@@ -117,28 +119,27 @@ public class CertificateService {
             throw new IllegalArgumentException("Only P12/PFX files are allowed");
         }
 
-        // Calculate hash to check for duplicates
-        byte[] fileBytes = file.getBytes();
-        String certificateHash = calculateHash(fileBytes);
-
-        // Check if a certificate already exists for this user
-        if (certificateRepository.existsByUserIdAndCertificateHash(userId, certificateHash)) {
-            throw new IllegalArgumentException("Certificate already exists for this user");
-        }
-
-        // Extract certificate details
-        CertificateDetails details = extractCertificateDetails(fileBytes, password);
+        // Store once; the hash is computed while the upload streams to disk
+        FileStorageService.StoredFile stored = fileStorageService.storeFileStreaming(
+                file, userId, "certificates", FileStorageService.UploadType.PKCS12);
+        String certificateHash = stored.sha256();
+        String filePath = stored.path();
+        String storedFileName = Paths.get(filePath).getFileName().toString();
+
+        CertificateDetails details;
+        try {
+            // Check if a certificate already exists for this user
+            if (certificateRepository.existsByUserIdAndCertificateHash(userId, certificateHash)) {
+                throw new IllegalArgumentException("Certificate already exists for this user");
+            }
 
-        // Create a directory if not exists
-        Path uploadPath = Paths.get(uploadDir, String.valueOf(userId), "certificates");
-        if (!Files.exists(uploadPath)) {
-            Files.createDirectories(uploadPath);
+            // Extract certificate details
+            details = extractCertificateDetails(fileStorageService.readAllBytes(filePath), password);
+        } catch (Exception e) {
+            fileStorageService.deleteFile(filePath);
+            throw e;
         }
 
-        // Generate a unique file name
-        String storedFileName = UUID.randomUUID() + ".p12";
-        String filePath = fileStorageService.storeFile(file, userId, "certificates");
-
         // Create a certificate entity
         Certificate certificate = new Certificate();
         certificate.setUserId(userId);
@@ -146,7 +147,7 @@ public class CertificateService {
         certificate.setStoredFileName(storedFileName);
         certificate.setCertificateHash(certificateHash);
         certificate.setFilePath(filePath);
-        certificate.setFileSize(file.getSize());
+        certificate.setFileSize(stored.size());
         certificate.setIssuer(details.getIssuer());
         certificate.setSubject(details.getSubject());
         certificate.setExpiresAt(details.getExpiresAt());
@@ -203,20 +204,14 @@ public class CertificateService {
         Certificate certificate = certificateRepository.findByIdAndUserId(certificateId, userId)
                 .orElseThrow(() -> new IllegalArgumentException("Certificate not found"));
 
-        // Delete a physical file
-        Path filePath = Paths.get(certificate.getFilePath());
-        if (Files.exists(filePath)) {
-            Files.delete(filePath);
-        }
+        // Delete the stored file
+        fileStorageService.deleteFile(certificate.getFilePath());
 
         // Delete from database
         certificateRepository.deleteByIdAndUserId(certificateId, userId);
-    }
 
-    private String calculateHash(byte[] data) throws Exception {
-        MessageDigest digest = MessageDigest.getInstance("SHA-256");
-        byte[] hash = digest.digest(data);
-        return HexFormat.of().formatHex(hash);
+        // Forget the unlocked key so it cannot be used for signing anymore
+        signingKeyCache.evict(certificate.getCertificateHash());
     }
 
 
@@ -317,6 +312,6 @@ public class CertificateService {
      * Get count of user's certificates
      */
     public long getUserCertificateCount(Long userId) {
-        return certificateRepository.findByUserId(userId).size();
+        return userStatisticsService.getStatistics(userId).getCertificates();
     }
 }
@@ -5,10 +5,14 @@ import com.github.ws_ncip_pnpki.model.*;
 import com.github.ws_ncip_pnpki.repository.DocumentForwardRepository;
 import com.github.ws_ncip_pnpki.repository.DocumentRepository;
 import com.github.ws_ncip_pnpki.repository.DocumentSharedRepository;
+import com.github.ws_ncip_pnpki.repository.PageGeometryRepository;
+import com.github.ws_ncip_pnpki.repository.SignatureRevisionRepository;
 import com.github.ws_ncip_pnpki.repository.UserRepository;
+import com.github.ws_ncip_pnpki.util.KeysetCursor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
@@ -22,6 +26,7 @@ import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 
 @Service
 @Slf4j
@@ -30,6 +35,27 @@ public class DocumentService {
     @Autowired
     private SimpMessagingTemplate messagingTemplate;
 
+    @Autowired
+    private SignatureRevisionRepository signatureRevisionRepository;
+
+    @Autowired
+    private PageGeometryRepository pageGeometryRepository;
+
+    @Autowired
+    private BlobStoreService blobStoreService;
+
+    @Autowired
+    private ViewCopyService viewCopyService;
+
+    @Autowired
+    private PageGeometryService pageGeometryService;
+
+    @Autowired
+    private UserStatisticsService userStatisticsService;
+
+    @Autowired
+    private FullTextSearchService fullTextSearchService;
+
     private final DocumentRepository documentRepository;
     private final UserRepository userRepository;
     private final DocumentForwardRepository documentForwardRepository;
@@ -55,13 +81,15 @@ public class DocumentService {
         User user = userRepository.findById(userId)
                 .orElseThrow(() -> new RuntimeException("User not found with id: " + userId));
 
-        String filePath = fileStorageService.storeFile(file, userId, "documents");
+        // Identical uploads share one stored blob
+        FileStorageService.StoredFile stored = blobStoreService.store(
+                file, userId, FileStorageService.UploadType.PDF);
 
         Document document = Document.builder()
                 .fileName(file.getOriginalFilename())
-                .filePath(filePath)
+                .filePath(stored.path())
                 .fileType(file.getContentType())
-                .fileSize(file.getSize())
+                .fileSize(stored.size())
                 .owner(user)
                 .availableForSigning(true)
                 .build();
@@ -69,6 +97,8 @@ public class DocumentService {
         user.addOwnedDocument(document);
 
         Document savedDocument = documentRepository.save(document);
+        viewCopyService.schedule(stored.path());
+        pageGeometryService.record(savedDocument.getId(), stored.path());
         log.info("Document uploaded successfully: {}", savedDocument.getFileName());
         return savedDocument;
     }
@@ -417,6 +447,8 @@ public class DocumentService {
 
         // Remove related forwards to this user
         documentForwardRepository.deleteByDocumentIdAndForwardedToId(documentId, unshareWithUserId);
+        // Bulk deletes skip entity listeners
+        userStatisticsService.evict(unshareWithUserId);
 
         // Update status if no more shared users
         if (document.getSharedWith().isEmpty()) {
@@ -471,9 +503,9 @@ public class DocumentService {
             throw new RuntimeException("You do not have permission to delete this document.");
         }
 
-        // Delete a file from storage
+        // Drop this document's reference to the stored file
         try {
-            fileStorageService.deleteFile(document.getFilePath());
+            blobStoreService.release(document.getFilePath());
         } catch (Exception ex) {
             log.error("Failed to delete file from storage: {}", ex.getMessage());
             throw new RuntimeException("Failed to delete the file from storage.");
@@ -483,6 +515,12 @@ public class DocumentService {
         List<DocumentForward> forwards = documentForwardRepository.findByDocumentId(documentId);
         documentForwardRepository.deleteAll(forwards);
 
+        // Delete recorded signature revisions
+        signatureRevisionRepository.deleteByDocumentId(documentId);
+
+        // Delete the page geometry index
+        pageGeometryRepository.deleteByDocumentId(documentId);
+
         // Remove associations with shared users
         document.getSharedWith().clear();
 
@@ -519,7 +557,10 @@ public class DocumentService {
 
         // Execute a query with search
         Page<Document> documentPage;
-        if (search != null && !search.trim().isEmpty()) {
+        if (fullTextSearchService.useFor(search)) {
+            documentPage = documentRepository.fullTextSearchOwnedUploadDocuments(
+                    userId, fullTextSearchService.toQuery(search), fullTextSearchService.byRelevance(pageable));
+        } else if (search != null && !search.trim().isEmpty()) {
             documentPage = documentRepository.searchOwnedUploadDocuments(userId, search, pageable);
         } else {
             //documentPage = documentRepository.findAllByOwnerIdAndStatus( userId, DocumentStatus.UPLOADED, pageable);
@@ -533,7 +574,7 @@ public class DocumentService {
             );
         }
 
-        return documentPage.map(document -> convertToShareResponse(document, userId));
+        return toShareResponses(documentPage, userId);
     }
 
     public Page<PdfUploadResponse> getSharedDocuments(Long userId, int page, int limit, int offset, String sortBy, String sortDirection, String search){
@@ -551,19 +592,43 @@ public class DocumentService {
 
         // Execute a query with search
         Page<Document> documentPage;
-        if(search != null && !search.trim().isEmpty()){
+        if(fullTextSearchService.useFor(search)){
+            documentPage = documentRepository.fullTextSearchSharedDocuments(
+                    userId, fullTextSearchService.toQuery(search), fullTextSearchService.byRelevance(pageable));
+        } else if(search != null && !search.trim().isEmpty()){
             documentPage = documentRepository.searchSharedDocuments(userId, search, pageable);
         } else {
             documentPage = documentRepository.allSharedDocuments(userId, pageable);
         }
 
-        return documentPage.map(document -> convertToResponse(document, userId));
+        return toResponses(documentPage, userId);
+    }
+
+    /**
+     * Cursor-based variant of {@link #getSharedDocuments(Long, int, int, int, String, String, String)}.
+     */
+    public CursorPage<PdfUploadResponse> getSharedDocumentsByCursor(Long userId, int limit, String cursor, String sortBy, String sortDirection, String search, boolean skipTotal){
+        CursorPage<Document> documentPage = KeysetCursor.scroll(documentRepository,
+                DocumentRepository.sharedWith(userId, search), Document.class,
+                sortBy, sortDirection, limit, cursor, skipTotal);
+        return documentPage.withContent(toResponses(documentPage.content(), userId));
     }
 
     public List<Document> getOwnedDocuments(Long userId) {
         return documentRepository.findByOwnerId(userId);
     }
 
+    /**
+     * Cursor-based variant of {@link #getOwnedDocuments(Long, int, int, int, String, String, String)}.
+     * Pages are read after the last row of the previous page instead of with an offset.
+     */
+    public CursorPage<ShareResponse> getOwnedDocumentsByCursor(Long userId, int limit, String cursor, String sortBy, String sortDirection, String search, boolean skipTotal){
+        CursorPage<Document> documentPage = KeysetCursor.scroll(documentRepository,
+                DocumentRepository.ownedOrSharedWith(userId, search), Document.class,
+                sortBy, sortDirection, limit, cursor, skipTotal);
+        return documentPage.withContent(toShareResponses(documentPage.content(), userId));
+    }
+
     public Page<ShareResponse> getOwnedDocuments(Long userId, int page, int limit, int offset, String sortBy, String sortDirection, String search){
 
         Sort sort = Sort.by(Sort.Direction.fromString(sortDirection), sortBy);
@@ -589,7 +654,7 @@ public class DocumentService {
             documentPage = documentRepository.findOwnedAndSharedDocument(userId, pageable);
         }
 
-        return documentPage.map(document -> convertToShareResponse(document, userId));
+        return toShareResponses(documentPage, userId);
     }
 
     public Page<PdfUploadResponse> getOwnedSignedDocuments(Long userId, int page, int limit, int offset, String sortBy, String sortDirection, String search){
@@ -615,7 +680,7 @@ public class DocumentService {
             documentPage = documentRepository.findAllByOwnerIdAndStatus( userId,DocumentStatus.SIGNED , pageable);
         }
 
-        return documentPage.map(document -> convertToResponse(document, userId));
+        return toResponses(documentPage, userId);
     }
 
     public List<Document> getSharedDocuments(Long userId) {
@@ -635,7 +700,7 @@ public class DocumentService {
     }
 
     public long countOwnedDocuments(Long userId){
-        return documentRepository.findByOwnerId(userId).size();
+        return userStatisticsService.getStatistics(userId).getOwnedDocuments();
     }
 
 
@@ -654,18 +719,48 @@ public class DocumentService {
         return documentRepository.findById(documentId).orElseThrow(() -> new IllegalArgumentException("Document not found"));
     }
 
-    private ShareResponse convertToShareResponse(Document document, Long userId) {
+    private Page<ShareResponse> toShareResponses(Page<Document> documentPage, Long userId) {
+        return new PageImpl<>(toShareResponses(documentPage.getContent(), userId),
+                documentPage.getPageable(), documentPage.getTotalElements());
+    }
 
-        List<DocumentShared> ds = documentSharedRepository.findByIdDocumentId(document.getId());
+    private Page<PdfUploadResponse> toResponses(Page<Document> documentPage, Long userId) {
+        return new PageImpl<>(toResponses(documentPage.getContent(), userId),
+                documentPage.getPageable(), documentPage.getTotalElements());
+    }
 
-        DocumentShared shared =
-                documentSharedRepository
-                        .findByIdUserIdAndIdDocumentId(userId, document.getId())
-                        .orElse(null);
+    // Shares and their users are loaded for the whole page at once rather than per row
+    private List<ShareResponse> toShareResponses(List<Document> documents, Long userId) {
+        Map<Long, List<DocumentShared>> sharesByDocument = documentSharedRepository.findWithUserGroupedByDocumentId(
+                documents.stream().map(Document::getId).toList());
+        return documents.stream()
+                .map(document -> convertToShareResponse(
+                        document, userId, sharesByDocument.getOrDefault(document.getId(), List.of())))
+                .toList();
+    }
+
+    private List<PdfUploadResponse> toResponses(List<Document> documents, Long userId) {
+        Map<Long, List<DocumentShared>> sharesByDocument = documentSharedRepository.findWithUserGroupedByDocumentId(
+                documents.stream().map(Document::getId).toList());
+        return documents.stream()
+                .map(document -> convertToResponse(
+                        document, userId, sharesByDocument.getOrDefault(document.getId(), List.of())))
+                .toList();
+    }
+
+    private static DocumentShared findShare(List<DocumentShared> shares, Long userId) {
+        return shares.stream()
+                .filter(share -> share.getId().getUserId().equals(userId))
+                .findFirst()
+                .orElse(null);
+    }
+
+    private ShareResponse convertToShareResponse(Document document, Long userId, List<DocumentShared> ds) {
+
+        DocumentShared shared = findShare(ds, userId);
 
         List<ShareResponse.User> sharedToUsers =
-                documentSharedRepository.findByIdDocumentId(document.getId())
-                        .stream()
+                ds.stream()
                         .map(DocumentShared::getUser)
                         .map(user -> new ShareResponse.User(
                                 user.getId(),
@@ -677,16 +772,12 @@ public class DocumentService {
     }
 
 
-    private PdfUploadResponse convertToResponse(Document document, Long userId) {
+    private PdfUploadResponse convertToResponse(Document document, Long userId, List<DocumentShared> shares) {
 
-        DocumentShared shared =
-                documentSharedRepository
-                        .findByIdUserIdAndIdDocumentId(userId, document.getId())
-                        .orElse(null);
+        DocumentShared shared = findShare(shares, userId);
 
         List<UserSearchResponse> sharedToUsers =
-                documentSharedRepository.findByIdDocumentId(document.getId())
-                        .stream()
+                shares.stream()
                         .map(DocumentShared::getUser)
                         .map(user -> new UserSearchResponse(
                                 user.getId(),
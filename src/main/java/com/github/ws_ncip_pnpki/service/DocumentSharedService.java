@@ -6,6 +6,7 @@ import com.github.ws_ncip_pnpki.repository.DocumentRepository;
 import com.github.ws_ncip_pnpki.repository.DocumentSharedRepository;
 import com.github.ws_ncip_pnpki.repository.NotificationRepository;
 import com.github.ws_ncip_pnpki.repository.UserRepository;
+import com.github.ws_ncip_pnpki.util.KeysetCursor;
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
@@ -16,6 +17,7 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 @Service
@@ -29,6 +31,9 @@ public class DocumentSharedService {
 
     private final NotificationRepository notificationRepository;
 
+    @Autowired
+    private FullTextSearchService fullTextSearchService;
+
     @Autowired
     public DocumentSharedService(DocumentSharedRepository documentSharedRepository, DocumentRepository documentRepository, UserRepository userRepository, NotificationRepository notificationRepository) {
         this.documentSharedRepository = documentSharedRepository;
@@ -191,7 +196,10 @@ public class DocumentSharedService {
 
         // Execute a query with search
         Page<Document> documentPage;
-        if(search != null && !search.trim().isEmpty()){
+        if(fullTextSearchService.useFor(search)){
+            documentPage = documentRepository.fullTextSearchSharedDocuments(
+                    userId, fullTextSearchService.toQuery(search), fullTextSearchService.byRelevance(pageable));
+        } else if(search != null && !search.trim().isEmpty()){
             documentPage = documentRepository.searchSharedDocuments(userId, search, pageable);
         } else {
             documentPage = documentRepository.allSharedDocuments(userId, pageable);
@@ -199,21 +207,41 @@ public class DocumentSharedService {
 
 
 
-        return documentPage.map(document -> convertToSharedResponse(document, userId));
+        // Shares and their users are loaded for the whole page at once rather than per row
+        Map<Long, List<DocumentShared>> sharesByDocument = documentSharedRepository.findWithUserGroupedByDocumentId(
+                documentPage.getContent().stream().map(Document::getId).toList());
+
+        return documentPage.map(document -> convertToSharedResponse(
+                document, userId, sharesByDocument.getOrDefault(document.getId(), List.of())));
     }
 
-    private ShareResponse convertToSharedResponse(Document document, Long userId) {
+    /**
+     * Cursor-based variant of {@link #getSharedDocuments}: each page is read after the last
+     * row of the previous one, and the total is only counted when asked for.
+     */
+    public CursorPage<ShareResponse> getSharedDocumentsByCursor(Long userId, int limit, String cursor, String sortBy, String sortDirection, String search, boolean skipTotal){
+        CursorPage<Document> documentPage = KeysetCursor.scroll(documentRepository,
+                DocumentRepository.sharedWith(userId, search), Document.class,
+                sortBy, sortDirection, limit, cursor, skipTotal);
+
+        Map<Long, List<DocumentShared>> sharesByDocument = documentSharedRepository.findWithUserGroupedByDocumentId(
+                documentPage.content().stream().map(Document::getId).toList());
+
+        return documentPage.withContent(documentPage.content().stream()
+                .map(document -> convertToSharedResponse(
+                        document, userId, sharesByDocument.getOrDefault(document.getId(), List.of())))
+                .toList());
+    }
 
-        List<DocumentShared> ds = documentSharedRepository.findByIdDocumentId(document.getId());
+    private ShareResponse convertToSharedResponse(Document document, Long userId, List<DocumentShared> ds) {
 
-        DocumentShared shared =
-                documentSharedRepository
-                        .findByIdUserIdAndIdDocumentId(userId, document.getId())
-                        .orElse(null);
+        DocumentShared shared = ds.stream()
+                .filter(share -> share.getId().getUserId().equals(userId))
+                .findFirst()
+                .orElse(null);
 
         List<ShareResponse.User> sharedToUsers =
-                documentSharedRepository.findByIdDocumentId(document.getId())
-                        .stream()
+                ds.stream()
                         .map(DocumentShared::getUser)
                         .map(user -> new ShareResponse.User(
                                 user.getId(),
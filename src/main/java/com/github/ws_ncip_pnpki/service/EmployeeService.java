@@ -14,9 +14,15 @@ public class EmployeeService {
 
     private final EmployeeRepository employeeRepository;
 
+    private final FullTextSearchService fullTextSearchService;
+
     @Transactional
     public List<Employee> searchEmployees(String search){
         try{
+            if (fullTextSearchService.useFor(search)) {
+                return employeeRepository.fullTextSearchByName(
+                        fullTextSearchService.toQuery(search), fullTextSearchService.getMaxResults());
+            }
             return employeeRepository.searchByName(search);
         }catch (Exception ex){
             throw new RuntimeException(ex.getMessage());
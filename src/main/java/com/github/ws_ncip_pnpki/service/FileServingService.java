@@ -0,0 +1,231 @@
+package com.github.ws_ncip_pnpki.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Serves stored files to browsers. Supports single byte ranges so PDF.js can load pages
+ * on demand, answers conditional GETs with 304 using a strong ETag built from the
+ * content hash, and hands the file to Tomcat's sendfile when available, falling back
+ * to {@link FileChannel#transferTo}.
+ */
+@Service
+@Slf4j
+public class FileServingService {
+
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    @Autowired
+    private FileStorageService fileStorageService;
+
+    @Value("${file.serving.etag-cache.max-entries:2000}")
+    private int maxEntries;
+
+    // Content hashes of files outside the blob store, keyed by path, size and mtime
+    private Map<String, String> contentHashes;
+
+    @PostConstruct
+    void init() {
+        contentHashes = Collections.synchronizedMap(new LinkedHashMap<>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+                return size() > maxEntries;
+            }
+        });
+    }
+
+    /**
+     * Serves a file from storage. {@code inline} shows it in the browser instead of downloading it.
+     */
+    public void serveStored(String key, String fileName, boolean inline,
+                            HttpServletRequest request, HttpServletResponse response) throws IOException {
+        if (!fileStorageService.fileExists(key)) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND, "File not found");
+            return;
+        }
+        Path file = fileStorageService.getFilePath(key);
+        serve(file, blobHash(key), fileName, inline, request, response);
+    }
+
+    /**
+     * Serves a local file. {@code knownHash} is the SHA-256 of the content when the caller
+     * already has it; otherwise it is computed once and remembered.
+     */
+    public void serve(Path file, String knownHash, String fileName, boolean inline,
+                      HttpServletRequest request, HttpServletResponse response) throws IOException {
+        if (!Files.isRegularFile(file)) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND, "File not found");
+            return;
+        }
+
+        long length = Files.size(file);
+        long lastModified = Files.getLastModifiedTime(file).toMillis();
+        String etag = "\"" + (knownHash != null ? knownHash : contentHash(file, length, lastModified)) + "\"";
+
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        // Always revalidate; an unchanged file costs a 304 instead of a full download
+        response.setHeader(HttpHeaders.CACHE_CONTROL, "private, no-cache");
+
+        if (new ServletWebRequest(request, response).checkNotModified(etag, lastModified)) {
+            return;
+        }
+
+        String name = fileName != null ? fileName : file.getFileName().toString();
+        MediaType contentType = MediaTypeFactory.getMediaType(name).orElse(MediaType.APPLICATION_OCTET_STREAM);
+        response.setContentType(contentType.toString());
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION,
+                (inline ? ContentDisposition.inline() : ContentDisposition.attachment())
+                        .filename(name, StandardCharsets.UTF_8).build().toString());
+
+        long start = 0;
+        long end = length - 1;
+
+        String rangeHeader = request.getHeader(HttpHeaders.RANGE);
+        if (rangeHeader != null && rangeApplies(request, etag, lastModified)) {
+            List<HttpRange> ranges;
+            try {
+                ranges = HttpRange.parseRanges(rangeHeader);
+            } catch (IllegalArgumentException e) {
+                ranges = List.of();
+            }
+            // Viewers ask for one range at a time; several ranges get the whole file
+            if (ranges.size() == 1) {
+                HttpRange range = ranges.get(0);
+                try {
+                    start = range.getRangeStart(length);
+                    end = range.getRangeEnd(length);
+                } catch (IllegalArgumentException e) {
+                    response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+                    response.sendError(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                    return;
+                }
+                response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + length);
+            }
+        }
+
+        long count = end - start + 1;
+        response.setContentLengthLong(count);
+
+        if ("HEAD".equalsIgnoreCase(request.getMethod()) || count <= 0) {
+            return;
+        }
+
+        if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+            // Tomcat writes the file straight from the page cache after the request returns
+            request.setAttribute(SENDFILE_FILENAME, file.toAbsolutePath().toString());
+            request.setAttribute(SENDFILE_START, start);
+            request.setAttribute(SENDFILE_END, end + 1);
+            return;
+        }
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+            long position = start;
+            long remaining = count;
+            while (remaining > 0) {
+                long sent = channel.transferTo(position, remaining, out);
+                if (sent <= 0) {
+                    break;
+                }
+                position += sent;
+                remaining -= sent;
+            }
+        }
+    }
+
+    /**
+     * SHA-256 of a stored file. Blob keys carry it in their name; other files are hashed once.
+     */
+    public String contentHash(String key) throws IOException {
+        String hash = blobHash(key);
+        if (hash != null) {
+            return hash;
+        }
+        Path file = fileStorageService.getFilePath(key);
+        return contentHash(file, Files.size(file), Files.getLastModifiedTime(file).toMillis());
+    }
+
+    /**
+     * If-Range: only honour the range while the client's copy is still current.
+     */
+    private boolean rangeApplies(HttpServletRequest request, String etag, long lastModified) {
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (ifRange == null) {
+            return true;
+        }
+        if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+            return ifRange.equals(etag);
+        }
+        long since = request.getDateHeader(HttpHeaders.IF_RANGE);
+        return since != -1 && lastModified / 1000 <= since / 1000;
+    }
+
+    /**
+     * Blob file names are their SHA-256, so no hashing is needed.
+     */
+    private String blobHash(String key) {
+        if (!key.startsWith(BlobStoreService.BLOB_DIR + "/")) {
+            return null;
+        }
+        String fileName = key.substring(key.lastIndexOf('/') + 1);
+        int dot = fileName.indexOf('.');
+        return dot > 0 ? fileName.substring(0, dot) : fileName;
+    }
+
+    private String contentHash(Path file, long length, long lastModified) throws IOException {
+        String cacheKey = file.toAbsolutePath() + ":" + length + ":" + lastModified;
+        String hash = contentHashes.get(cacheKey);
+        if (hash != null) {
+            return hash;
+        }
+
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+        try (InputStream in = Files.newInputStream(file)) {
+            byte[] buffer = new byte[64 * 1024];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        hash = HexFormat.of().formatHex(digest.digest());
+        contentHashes.put(cacheKey, hash);
+        return hash;
+    }
+}
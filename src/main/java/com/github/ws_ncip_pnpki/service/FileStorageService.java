@@ -1,124 +1,241 @@
 package com.github.ws_ncip_pnpki.service;
 
+import com.github.ws_ncip_pnpki.storage.StorageException;
 import com.github.ws_ncip_pnpki.storage.StorageService;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.io.Resource;
-import org.springframework.core.io.UrlResource;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
-import javax.imageio.ImageIO;
-import java.awt.*;
-import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
 import java.io.File;
+import java.io.FilterInputStream;
 import java.io.IOException;
-import java.net.MalformedURLException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.Paths;
-import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HexFormat;
 import java.util.UUID;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
 
 @Service
 @Slf4j
 public class FileStorageService {
 
 
-    @Value("${file.upload.dir}")
-    private String uploadDir;
+    private static final int HEADER_BYTES = 1024;
+
+    private static final byte[] PDF_MAGIC = "%PDF-".getBytes(StandardCharsets.US_ASCII);
+
+    private static final byte[] PNG_MAGIC = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+
+    @Autowired
+    private StorageService storageService;
+
+    // Writes to the same key are serialized so a conditional replace on a local disk cannot interleave with
+    // another write; object stores check the revision in the write itself, which also covers other nodes
+    private final ReentrantLock[] writeLocks = Stream.generate(ReentrantLock::new).limit(64).toArray(ReentrantLock[]::new);
 
 
     public String storeFile(MultipartFile file, Long userId, String subFolder) throws IOException {
-        Path uploadPath = Paths.get(uploadDir, String.valueOf(userId), subFolder);
+        return storeFileStreaming(file, userId, subFolder, UploadType.ANY).path();
+    }
 
-        if (!Files.exists(uploadPath)) {
-            Files.createDirectories(uploadPath);
-        }
+    /**
+     * Expected content of an upload, checked against its leading bytes.
+     */
+    public enum UploadType { ANY, PDF, PNG, PKCS12 }
 
+    /**
+     * A stored upload: storage key, SHA-256 of the content and size in bytes.
+     */
+    public record StoredFile(String path, String sha256, long size) {
+    }
+
+    /**
+     * Streams an upload into storage in a single pass. The digest, size and content type
+     * check are computed while copying, and the file only appears under its final name
+     * once it is complete.
+     */
+    public StoredFile storeFileStreaming(MultipartFile file, Long userId, String subFolder, UploadType expectedType) throws IOException {
         String originalFilename = file.getOriginalFilename();
         String fileExtension = originalFilename != null && originalFilename.contains(".")
                 ? originalFilename.substring(originalFilename.lastIndexOf("."))
                 : ".png";
 
         String fileName = UUID.randomUUID() + fileExtension;
-        Path filePath = uploadPath.resolve(fileName);
+        String key = userId + "/" + subFolder + "/" + fileName;
 
-        Files.copy(file.getInputStream(), filePath, StandardCopyOption.REPLACE_EXISTING);
+        InspectingInputStream in = new InspectingInputStream(file.getInputStream(), expectedType);
+        storageService.write(key, in, file.getSize());
+        try {
+            // Short files may reach the end without the backend reading past it
+            in.finish();
+        } catch (IllegalArgumentException e) {
+            storageService.delete(key);
+            throw e;
+        }
 
-        log.info("File stored successfully: {}", filePath);
-        return userId + "/" + subFolder + "/" + fileName;
+        log.info("File stored successfully: {}", key);
+        return new StoredFile(key, HexFormat.of().formatHex(in.digest.digest()), in.size);
     }
 
-    public String storeFileV2(MultipartFile file, Long userId, String subFolder) throws IOException {
+    private void checkType(UploadType expectedType, byte[] header, int length) {
+        boolean valid = switch (expectedType) {
+            case ANY -> true;
+            // Readers accept junk before the header, so look for it anywhere in the first KB
+            case PDF -> indexOf(header, length, PDF_MAGIC) >= 0;
+            case PNG -> length >= PNG_MAGIC.length && Arrays.equals(header, 0, PNG_MAGIC.length, PNG_MAGIC, 0, PNG_MAGIC.length);
+            // A PKCS#12 file is a DER SEQUENCE
+            case PKCS12 -> length >= 2 && header[0] == 0x30;
+        };
+        if (!valid) {
+            throw new IllegalArgumentException("File content is not a valid " + expectedType);
+        }
+    }
 
-        Path uploadPath = Paths.get(uploadDir, String.valueOf(userId), subFolder);
+    private static int indexOf(byte[] data, int length, byte[] pattern) {
+        outer:
+        for (int i = 0; i <= length - pattern.length; i++) {
+            for (int j = 0; j < pattern.length; j++) {
+                if (data[i + j] != pattern[j]) {
+                    continue outer;
+                }
+            }
+            return i;
+        }
+        return -1;
+    }
 
-        if (!Files.exists(uploadPath)) {
-            Files.createDirectories(uploadPath);
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
         }
+    }
 
+    /**
+     * Stores a signature image as uploaded. Transparency is applied afterwards by
+     * {@link SignatureImageProcessor} so the upload does not wait for it.
+     */
+    public String storeFileV2(MultipartFile file, Long userId, String subFolder) throws IOException {
         String originalFilename = file.getOriginalFilename();
-        String fileExtension = originalFilename != null && originalFilename.contains(".")
-                ? originalFilename.substring(originalFilename.lastIndexOf(".") + 1).toLowerCase()
-                : "png";
+        boolean png = originalFilename == null || !originalFilename.contains(".")
+                || originalFilename.toLowerCase().endsWith(".png");
 
-        String newFileName = UUID.randomUUID() + "." + fileExtension;
-        Path filePath = uploadPath.resolve(newFileName);
+        String key = storeFileStreaming(file, userId, subFolder, png ? UploadType.PNG : UploadType.ANY).path();
+        log.info("Image file stored successfully: {}", key);
 
-        // Handle PNG files - preserve original size and transparency
-        if ("png".equals(fileExtension)) {
-            BufferedImage original = ImageIO.read(file.getInputStream());
+        return key;
+    }
 
-            // Ensure transparency is preserved/added
-            BufferedImage transparentImage = ensureTransparency(original);
 
-            // Save PNG with transparency
-            ImageIO.write(transparentImage, "png", filePath.toFile());
-        } else {
-            // Save other file types normally
-            Files.copy(file.getInputStream(), filePath, StandardCopyOption.REPLACE_EXISTING);
-        }
+    public void deleteFile(String filePath) throws IOException {
+        storageService.delete(filePath);
+        log.info("File deleted successfully: {}", filePath);
+    }
 
-        log.info("Image file stored successfully: {}", filePath);
+    /**
+     * A local file with the stored content; remote storage downloads it into the cache first.
+     */
+    public Path getFilePath(String filePath) {
+        return storageService.load(filePath);
+    }
 
-        return userId + "/" + subFolder + "/" + newFileName;
+    public File getFile(String filePath) {
+        return storageService.load(filePath).toFile();
     }
 
+    public boolean fileExists(String filePath) {
+        return storageService.exists(filePath);
+    }
 
-    public void deleteFile(String filePath) throws IOException {
-        Path path = Paths.get(uploadDir, filePath);
+    public long fileSize(String filePath) {
+        return storageService.size(filePath);
+    }
 
-        if (Files.exists(path)) {
-            Files.delete(path);
-            log.info("File deleted successfully: {}", path);
+    public InputStream openStream(String filePath) {
+        return storageService.read(filePath);
+    }
+
+    public byte[] readAllBytes(String filePath) throws IOException {
+        try (InputStream in = storageService.read(filePath)) {
+            return in.readAllBytes();
         }
     }
 
-    public Path getFilePath(String filePath) {
-        return Paths.get(uploadDir, filePath);
+    /**
+     * Stores a local file, e.g. a freshly signed PDF, under {@code filePath}.
+     */
+    public void writeFile(String filePath, Path source) throws IOException {
+        ReentrantLock lock = writeLock(filePath);
+        lock.lock();
+        try (InputStream in = Files.newInputStream(source)) {
+            storageService.write(filePath, in, Files.size(source));
+        } finally {
+            lock.unlock();
+        }
     }
 
-    public File getFile(String filePath) {
-        Path path = Paths.get(uploadDir, filePath);
-        return path.toFile();
+    public void writeBytes(String filePath, byte[] data) {
+        ReentrantLock lock = writeLock(filePath);
+        lock.lock();
+        try {
+            storageService.write(filePath, new ByteArrayInputStream(data), data.length);
+        } finally {
+            lock.unlock();
+        }
     }
 
-    public boolean fileExists(String filePath) {
-        return Files.exists(Paths.get(uploadDir, filePath));
+    /**
+     * Replaces {@code filePath} with {@code replacement} only while its content still has
+     * the SHA-256 {@code expectedSha256}. Returns false when the file was written over or
+     * deleted in the meantime.
+     */
+    public boolean replaceIfUnchanged(String filePath, String expectedSha256, Path replacement) throws IOException {
+        ReentrantLock lock = writeLock(filePath);
+        lock.lock();
+        try {
+            return storageService.replaceIfUnchanged(filePath, expectedSha256,
+                    Files.newInputStream(replacement), Files.size(replacement));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public static String sha256Hex(byte[] data) {
+        return HexFormat.of().formatHex(sha256().digest(data));
+    }
+
+    public static String sha256Hex(Path file) throws IOException {
+        MessageDigest digest = sha256();
+        try (InputStream in = new DigestInputStream(Files.newInputStream(file), digest)) {
+            in.transferTo(OutputStream.nullOutputStream());
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private ReentrantLock writeLock(String filePath) {
+        return writeLocks[Math.floorMod(filePath.hashCode(), writeLocks.length)];
+    }
+
+    public void moveFile(String sourcePath, String targetPath) {
+        storageService.move(sourcePath, targetPath);
     }
 
     public Resource loadFileAsResource(String filePath) {
         try {
-            Path fullPath = Paths.get(uploadDir).resolve(filePath).normalize();
-            Resource resource = new UrlResource(fullPath.toUri());
-            if (resource.exists()) {
-                return resource;
-            } else {
-                throw new RuntimeException("File not found: " + filePath);
-            }
-        } catch (MalformedURLException ex) {
+            return storageService.loadAsResource(filePath);
+        } catch (StorageException ex) {
             throw new RuntimeException("File not found: " + filePath, ex);
         }
     }
@@ -126,64 +243,80 @@ public class FileStorageService {
 
 
     /**
-     * Ensures the image has a transparent background.
-     * If the image already has transparency, it's preserved.
-     * If not, converts white/near-white pixels to transparent.
+     * Computes the digest and size of an upload and checks its type while it streams into storage.
      */
-    private BufferedImage ensureTransparency(BufferedImage source) {
-        int width = source.getWidth();
-        int height = source.getHeight();
+    private class InspectingInputStream extends FilterInputStream {
 
-        // Create image with alpha channel
-        BufferedImage transparent = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
-        Graphics2D g2d = transparent.createGraphics();
+        private final UploadType expectedType;
 
-        // High-quality rendering
-        g2d.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
-        g2d.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
-        g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        private final MessageDigest digest = sha256();
 
-        // Draw original image
-        g2d.drawImage(source, 0, 0, null);
-        g2d.dispose();
+        private final byte[] header = new byte[HEADER_BYTES];
 
-        // Convert white/light pixels to transparent (optional - uncomment if needed)
-        transparent = convertWhiteToTransparent(transparent, 240); // threshold: 240
+        private int headerLength;
 
-        return transparent;
-    }
+        private boolean typeChecked;
 
-    /**
-     * Converts white or near-white pixels to transparent.
-     *
-     * @param image The source image
-     * @param threshold RGB threshold (0-255). Pixels with R, G, B all >= threshold become transparent
-     * @return Image with white pixels converted to transparent
-     */
-    private BufferedImage convertWhiteToTransparent(BufferedImage image, int threshold) {
-        int width = image.getWidth();
-        int height = image.getHeight();
-
-        BufferedImage result = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
-
-        for (int y = 0; y < height; y++) {
-            for (int x = 0; x < width; x++) {
-                int pixel = image.getRGB(x, y);
-
-                int alpha = (pixel >> 24) & 0xff;
-                int red = (pixel >> 16) & 0xff;
-                int green = (pixel >> 8) & 0xff;
-                int blue = pixel & 0xff;
-
-                // If pixel is white/near-white, make it transparent
-                if (red >= threshold && green >= threshold && blue >= threshold) {
-                    result.setRGB(x, y, 0x00FFFFFF); // Fully transparent white
-                } else {
-                    result.setRGB(x, y, pixel); // Keep original pixel
+        private long size;
+
+        InspectingInputStream(InputStream in, UploadType expectedType) {
+            super(in);
+            this.expectedType = expectedType;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] one = new byte[1];
+            return read(one, 0, 1) == -1 ? -1 : one[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int read = super.read(b, off, len);
+            if (read == -1) {
+                finish();
+                return -1;
+            }
+            if (headerLength < header.length) {
+                int n = Math.min(read, header.length - headerLength);
+                System.arraycopy(b, off, header, headerLength, n);
+                headerLength += n;
+            }
+            // Reject the wrong file type before copying the rest of it
+            if (!typeChecked && headerLength == header.length) {
+                checkType(expectedType, header, headerLength);
+                typeChecked = true;
+            }
+            digest.update(b, off, read);
+            size += read;
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            // Every byte has to pass through the digest
+            byte[] buffer = new byte[(int) Math.min(n, 8192)];
+            long skipped = 0;
+            while (skipped < n) {
+                int read = read(buffer, 0, (int) Math.min(buffer.length, n - skipped));
+                if (read < 0) {
+                    break;
                 }
+                skipped += read;
             }
+            return skipped;
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
         }
 
-        return result;
+        void finish() {
+            if (!typeChecked) {
+                checkType(expectedType, header, headerLength);
+                typeChecked = true;
+            }
+        }
     }
 }
@@ -0,0 +1,158 @@
+package com.github.ws_ncip_pnpki.service;
+
+import com.github.ws_ncip_pnpki.dto.OffsetBasedPageRequest;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * MySQL full-text indexes for the search boxes. The indexes use the ngram parser, so
+ * text is indexed as character pairs. Searches run in boolean mode with the term quoted
+ * as a phrase, which requires all of its pairs in sequence and so keeps the substring
+ * semantics of LIKE, and MATCH ... AGAINST ranks the results by relevance. Hibernate
+ * cannot declare FULLTEXT indexes, so they are created here once the schema is up.
+ * <p>
+ * The ngram parser leaves out every pair that contains a stopword, and InnoDB's default
+ * list has "a" and "i", so most of a name like "maria" would never be indexed and the
+ * phrase would not match. The server must run with {@code innodb_ft_enable_stopword=OFF}
+ * or an empty {@code innodb_ft_server_stopword_table}. Stopwords are bound to an index
+ * when it is built, so indexes created before that must be dropped to be rebuilt.
+ * Until the indexes exist, without that setting, or when the database cannot create
+ * them, searches keep using LIKE.
+ */
+@Service
+@Slf4j
+public class FullTextSearchService {
+
+    private record FullTextIndex(String table, String name, String columns) {
+    }
+
+    // Columns must match the MATCH(...) lists of the repository queries exactly
+    private static final List<FullTextIndex> INDEXES = List.of(
+            new FullTextIndex("documents", "ft_documents_file_name", "file_name"),
+            new FullTextIndex("users", "ft_users_username_email", "username, email"),
+            new FullTextIndex("notifications", "ft_notifications_title_message", "title, message"),
+            new FullTextIndex("employees", "ft_employees_name", "first_name, last_name"));
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Value("${search.full-text.enabled:true}")
+    private boolean enabled;
+
+    // Shorter terms produce no ngram tokens (MySQL's ngram_token_size defaults to 2)
+    @Value("${search.full-text.min-length:2}")
+    private int minLength;
+
+    @Value("${search.full-text.max-results:50}")
+    private int maxResults;
+
+    private volatile boolean available;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void createIndexes() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            if (!stopwordsDisabled()) {
+                log.warn("Full-text search needs innodb_ft_enable_stopword=OFF or an empty "
+                        + "innodb_ft_server_stopword_table, searching with LIKE");
+                return;
+            }
+            for (FullTextIndex index : INDEXES) {
+                Integer existing = jdbcTemplate.queryForObject("""
+                        SELECT COUNT(*) FROM information_schema.statistics
+                        WHERE table_schema = DATABASE() AND table_name = ? AND index_name = ?
+                        """, Integer.class, index.table(), index.name());
+                if (existing == null || existing == 0) {
+                    log.info("Creating full-text index {} on {}({})", index.name(), index.table(), index.columns());
+                    jdbcTemplate.execute("ALTER TABLE " + index.table() + " ADD FULLTEXT INDEX " + index.name()
+                            + " (" + index.columns() + ") WITH PARSER ngram");
+                }
+            }
+            available = true;
+        } catch (DataAccessException e) {
+            log.warn("Full-text search unavailable, searching with LIKE: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Whether indexes built now get no stopwords, either because stopwords are off or
+     * because the stopword table in effect is empty.
+     */
+    private boolean stopwordsDisabled() {
+        Map<String, Object> settings = jdbcTemplate.queryForMap("""
+                SELECT @@innodb_ft_enable_stopword AS enabled,
+                       @@innodb_ft_user_stopword_table AS user_table,
+                       @@innodb_ft_server_stopword_table AS server_table
+                """);
+        if (!isOn(settings.get("enabled"))) {
+            return true;
+        }
+        // A user table takes precedence over the server table; neither means the default list
+        Object table = settings.get("user_table") != null ? settings.get("user_table") : settings.get("server_table");
+        if (table == null || table.toString().isBlank()) {
+            return false;
+        }
+        // Stopword tables are named "database/table"
+        String[] name = table.toString().split("/", 2);
+        if (name.length != 2) {
+            return false;
+        }
+        Integer stopwords = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM `" + name[0] + "`.`" + name[1] + "`", Integer.class);
+        return stopwords != null && stopwords == 0;
+    }
+
+    private static boolean isOn(Object value) {
+        if (value instanceof Number number) {
+            return number.intValue() != 0;
+        }
+        if (value instanceof Boolean flag) {
+            return flag;
+        }
+        return value != null && ("ON".equalsIgnoreCase(value.toString()) || "1".equals(value.toString()));
+    }
+
+    /**
+     * Whether {@code search} should go through the full-text indexes.
+     */
+    public boolean useFor(String search) {
+        return available && search != null && search.replace("\"", "").trim().length() >= minLength;
+    }
+
+    /**
+     * Search text for MATCH ... AGAINST in boolean mode: the term as one quoted phrase.
+     * Boolean mode has no escape for a double quote, so quotes are dropped; inside the
+     * phrase the other operators are plain text.
+     */
+    public String toQuery(String search) {
+        return "\"" + search.trim().replace("\"", "") + "\"";
+    }
+
+    /**
+     * Full-text queries order by relevance, so the requested sort is dropped; the page
+     * window is kept.
+     */
+    public Pageable byRelevance(Pageable pageable) {
+        return new OffsetBasedPageRequest((int) pageable.getOffset(), pageable.getPageSize(), Sort.unsorted());
+    }
+
+    /**
+     * Cap for searches that return lists rather than pages.
+     */
+    public int getMaxResults() {
+        return maxResults;
+    }
+}
@@ -1,11 +1,13 @@
 package com.github.ws_ncip_pnpki.service;
 
+import com.github.ws_ncip_pnpki.dto.CursorPage;
 import com.github.ws_ncip_pnpki.dto.OffsetBasedPageRequest;
 import com.github.ws_ncip_pnpki.dto.PdfUploadResponse;
 import com.github.ws_ncip_pnpki.dto.UserSearchResponse;
 import com.github.ws_ncip_pnpki.model.Document;
 import com.github.ws_ncip_pnpki.model.Notification;
 import com.github.ws_ncip_pnpki.repository.NotificationRepository;
+import com.github.ws_ncip_pnpki.util.KeysetCursor;
 import jakarta.persistence.EntityNotFoundException;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
@@ -23,6 +25,9 @@ public class NotificationService {
 
     private final SimpMessagingTemplate messagingTemplate;
 
+    @Autowired
+    private FullTextSearchService fullTextSearchService;
+
     @Autowired
     public NotificationService(NotificationRepository notificationRepository, SimpMessagingTemplate messagingTemplate) {
         this.notificationRepository = notificationRepository;
@@ -52,7 +57,10 @@ public class NotificationService {
         }
 
         Page<Notification> notificationPage;
-        if(search != null && !search.trim().isEmpty()){
+        if(fullTextSearchService.useFor(search)){
+            notificationPage = notificationRepository.fullTextSearchNotification(
+                    userId, fullTextSearchService.toQuery(search), fullTextSearchService.byRelevance(pageable));
+        }else if(search != null && !search.trim().isEmpty()){
             notificationPage = notificationRepository.searchNotification(userId, search, pageable);
         }else{
             notificationPage = notificationRepository.allNotification(userId, pageable);
@@ -61,6 +69,22 @@ public class NotificationService {
         return notificationPage;
     }
 
+    /**
+     * Cursor-based variant of {@link #allNotification}.
+     */
+    @Transactional
+    public CursorPage<Notification> allNotificationByCursor(
+            Long userId,
+            int limit,
+            String cursor,
+            String sortBy,
+            String sortDirection,
+            String search,
+            boolean skipTotal){
+        return KeysetCursor.scroll(notificationRepository, NotificationRepository.toUser(userId, search),
+                Notification.class, sortBy, sortDirection, limit, cursor, skipTotal);
+    }
+
     public Long getUnreadNotifCount(Long toUserId){
         Long count = notificationRepository.countByToUser_IdAndOpenedFalse(toUserId);
         messagingTemplate.convertAndSend("/topic/notif-updates", count);
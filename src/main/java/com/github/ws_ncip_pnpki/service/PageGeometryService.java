@@ -0,0 +1,118 @@
+package com.github.ws_ncip_pnpki.service;
+
+import com.github.ws_ncip_pnpki.model.PageGeometry;
+import com.github.ws_ncip_pnpki.repository.PageGeometryRepository;
+import com.itextpdf.kernel.geom.Rectangle;
+import com.itextpdf.kernel.pdf.PdfDocument;
+import com.itextpdf.kernel.pdf.PdfPage;
+import com.itextpdf.kernel.pdf.PdfReader;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Page geometry index. Page count, boxes and rotation are read once when a document is
+ * uploaded, so signing requests can reject bad placements and convert canvas
+ * coordinates to PDF points before any PDF is parsed.
+ */
+@Service
+@Slf4j
+public class PageGeometryService {
+
+    @Autowired
+    private PageGeometryRepository pageGeometryRepository;
+
+    @Autowired
+    private FileStorageService fileStorageService;
+
+    /**
+     * Reads and stores the geometry of a newly stored document. Failures are logged; the
+     * geometry is read again on first use.
+     */
+    public void record(Long documentId, String filePath) {
+        try {
+            save(documentId, readGeometry(documentId, filePath));
+        } catch (Exception e) {
+            log.warn("Could not index pages of document {}: {}", documentId, e.getMessage());
+        }
+    }
+
+    /**
+     * Stored geometry of a document, indexing it first for documents uploaded before the index existed.
+     */
+    public List<PageGeometry> getGeometry(Long documentId, String filePath) throws IOException {
+        List<PageGeometry> pages = pageGeometryRepository.findByDocumentIdOrderByPageNumber(documentId);
+        if (!pages.isEmpty()) {
+            return pages;
+        }
+        pages = readGeometry(documentId, filePath);
+        save(documentId, pages);
+        return pages;
+    }
+
+    /**
+     * Checks placements against the stored geometry and converts them from canvas
+     * coordinates to PDF points.
+     *
+     * @throws IllegalArgumentException when a placement is on a page that does not exist or is empty
+     */
+    public List<PdfSigningService.PlacementBox> toPdfBoxes(Long documentId, String filePath,
+                                                           List<PdfSigningService.SignaturePlacement> placements,
+                                                           float canvasWidth, float canvasHeight) throws IOException {
+        if (placements == null || placements.isEmpty()) {
+            throw new IllegalArgumentException("At least one signature placement is required");
+        }
+        if (canvasWidth <= 0 || canvasHeight <= 0) {
+            throw new IllegalArgumentException("Canvas size must be positive");
+        }
+
+        List<PageGeometry> pages = getGeometry(documentId, filePath);
+        List<PdfSigningService.PlacementBox> boxes = new ArrayList<>(placements.size());
+        for (PdfSigningService.SignaturePlacement placement : placements) {
+            if (placement.pageNumber < 1 || placement.pageNumber > pages.size()) {
+                throw new IllegalArgumentException("Invalid page number: " + placement.pageNumber
+                        + ". PDF has " + pages.size() + " pages.");
+            }
+            if (placement.width <= 0 || placement.height <= 0) {
+                throw new IllegalArgumentException("Signature placement on page " + placement.pageNumber + " is empty");
+            }
+            PageGeometry page = pages.get(placement.pageNumber - 1);
+            boxes.add(PdfSigningService.toPdfBox(placement, page.getMediaWidth(), page.getMediaHeight(),
+                    canvasWidth, canvasHeight));
+        }
+        return boxes;
+    }
+
+    private List<PageGeometry> readGeometry(Long documentId, String filePath) throws IOException {
+        List<PageGeometry> pages = new ArrayList<>();
+        // Only the xref and page tree are read; page content is never parsed
+        try (InputStream in = fileStorageService.openStream(filePath);
+             PdfDocument pdf = new PdfDocument(new PdfReader(in).setUnethicalReading(true))) {
+            for (int i = 1; i <= pdf.getNumberOfPages(); i++) {
+                PdfPage page = pdf.getPage(i);
+                Rectangle media = page.getMediaBox();
+                Rectangle crop = page.getCropBox();
+                pages.add(new PageGeometry(null, documentId, i,
+                        media.getX(), media.getY(), media.getWidth(), media.getHeight(),
+                        crop.getX(), crop.getY(), crop.getWidth(), crop.getHeight(),
+                        ((page.getRotation() % 360) + 360) % 360));
+            }
+        }
+        return pages;
+    }
+
+    private void save(Long documentId, List<PageGeometry> pages) {
+        try {
+            pageGeometryRepository.saveAll(pages);
+        } catch (DataIntegrityViolationException e) {
+            // Indexed concurrently by another request
+            log.debug("Pages of document {} already indexed", documentId);
+        }
+    }
+}
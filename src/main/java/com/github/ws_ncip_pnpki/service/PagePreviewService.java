@@ -0,0 +1,222 @@
+package com.github.ws_ncip_pnpki.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.pdfbox.io.MemoryUsageSetting;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.rendering.ImageType;
+import org.apache.pdfbox.rendering.PDFRenderer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Stream;
+
+/**
+ * Renders page previews and page-size metadata on the server, so the placement screen
+ * does not have to render every page in the browser. Rendering runs on its own pool and
+ * results are cached on disk by document content hash, page and DPI; identical documents
+ * share their previews and a changed document gets new ones.
+ */
+@Service
+@Slf4j
+public class PagePreviewService {
+
+    private static final int MIN_DPI = 18;
+
+    @Autowired
+    private FileStorageService fileStorageService;
+
+    @Autowired
+    private FileServingService fileServingService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${pdf.preview.cache-dir:preview-cache}")
+    private String cacheDir;
+
+    @Value("${pdf.preview.default-dpi:72}")
+    private int defaultDpi;
+
+    @Value("${pdf.preview.max-dpi:150}")
+    private int maxDpi;
+
+    @Value("${pdf.preview.workers:2}")
+    private int workers;
+
+    // Previews not used for this long are removed
+    @Value("${pdf.preview.cache-ttl:P7D}")
+    private Duration cacheTtl;
+
+    private Path cacheRoot;
+
+    private ExecutorService executor;
+
+    // Renders in progress, so concurrent requests for the same preview share one
+    private final Map<String, CompletableFuture<Path>> inFlight = new ConcurrentHashMap<>();
+
+    public record PageInfo(int number, float width, float height, int rotation) {
+    }
+
+    /**
+     * Page sizes in PDF points as displayed, i.e. with rotation applied.
+     */
+    public record PageMetadata(String documentHash, int pageCount, List<PageInfo> pages) {
+    }
+
+    @PostConstruct
+    void init() throws IOException {
+        cacheRoot = Paths.get(cacheDir).toAbsolutePath().normalize();
+        Files.createDirectories(cacheRoot);
+        executor = Executors.newFixedThreadPool(Math.max(1, workers));
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdown();
+    }
+
+    /**
+     * Renders page {@code pageNumber} (1-based) of a stored PDF, or returns the cached image.
+     * {@code format} is "png" or "jpeg"; dpi 0 uses the default.
+     */
+    public CompletableFuture<Path> renderPage(String key, int pageNumber, int dpi, String format) {
+        int resolvedDpi = dpi <= 0 ? defaultDpi : Math.max(MIN_DPI, Math.min(dpi, maxDpi));
+        String extension = "jpeg".equalsIgnoreCase(format) || "jpg".equalsIgnoreCase(format) ? "jpg" : "png";
+        String id = key + ":" + pageNumber + ":" + resolvedDpi + ":" + extension;
+
+        CompletableFuture<Path> future = inFlight.computeIfAbsent(id, k -> CompletableFuture.supplyAsync(() -> {
+            try {
+                return render(key, pageNumber, resolvedDpi, extension);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, executor));
+        future.whenComplete((path, error) -> inFlight.remove(id, future));
+        return future;
+    }
+
+    public CompletableFuture<PageMetadata> pageMetadata(String key) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return metadata(key);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, executor);
+    }
+
+    @Scheduled(fixedDelayString = "${pdf.preview.cleanup-interval-ms:3600000}")
+    public void evictStalePreviews() {
+        FileTime cutoff = FileTime.from(Instant.now().minus(cacheTtl));
+        try (Stream<Path> files = Files.walk(cacheRoot)) {
+            files.filter(Files::isRegularFile).forEach(file -> {
+                try {
+                    if (Files.getLastModifiedTime(file).compareTo(cutoff) < 0) {
+                        Files.delete(file);
+                    }
+                } catch (IOException e) {
+                    log.debug("Could not evict preview {}: {}", file, e.getMessage());
+                }
+            });
+        } catch (IOException e) {
+            log.warn("Preview cache cleanup failed: {}", e.getMessage());
+        }
+    }
+
+    private Path render(String key, int pageNumber, int dpi, String extension) throws IOException {
+        Path documentDir = cacheRoot.resolve(fileServingService.contentHash(key));
+        Path target = documentDir.resolve(pageNumber + "-" + dpi + "." + extension);
+        if (Files.exists(target)) {
+            touch(target);
+            return target;
+        }
+
+        Files.createDirectories(documentDir);
+        long start = System.currentTimeMillis();
+        try (PDDocument document = PDDocument.load(fileStorageService.getFile(key), MemoryUsageSetting.setupTempFileOnly())) {
+            if (pageNumber < 1 || pageNumber > document.getNumberOfPages()) {
+                throw new IllegalArgumentException("Page " + pageNumber + " does not exist, document has "
+                        + document.getNumberOfPages() + " pages");
+            }
+            BufferedImage image = new PDFRenderer(document).renderImageWithDPI(pageNumber - 1, dpi, ImageType.RGB);
+
+            Path partial = Files.createTempFile(documentDir, ".render-", ".part");
+            try {
+                ImageIO.write(image, "jpg".equals(extension) ? "jpeg" : "png", partial.toFile());
+                Files.move(partial, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(partial);
+            }
+        }
+        log.debug("Rendered page {} of {} at {} dpi in {} ms", pageNumber, key, dpi, System.currentTimeMillis() - start);
+        return target;
+    }
+
+    private PageMetadata metadata(String key) throws IOException {
+        String hash = fileServingService.contentHash(key);
+        Path documentDir = cacheRoot.resolve(hash);
+        Path target = documentDir.resolve("pages.json");
+        if (Files.exists(target)) {
+            touch(target);
+            return objectMapper.readValue(target.toFile(), PageMetadata.class);
+        }
+
+        List<PageInfo> pages = new ArrayList<>();
+        try (PDDocument document = PDDocument.load(fileStorageService.getFile(key), MemoryUsageSetting.setupTempFileOnly())) {
+            int number = 1;
+            for (PDPage page : document.getPages()) {
+                PDRectangle box = page.getCropBox();
+                int rotation = ((page.getRotation() % 360) + 360) % 360;
+                boolean quarterTurn = rotation == 90 || rotation == 270;
+                pages.add(new PageInfo(number++,
+                        quarterTurn ? box.getHeight() : box.getWidth(),
+                        quarterTurn ? box.getWidth() : box.getHeight(),
+                        rotation));
+            }
+        }
+        PageMetadata metadata = new PageMetadata(hash, pages.size(), pages);
+
+        Files.createDirectories(documentDir);
+        Path partial = Files.createTempFile(documentDir, ".pages-", ".part");
+        try {
+            objectMapper.writeValue(partial.toFile(), metadata);
+            Files.move(partial, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(partial);
+        }
+        return metadata;
+    }
+
+    private void touch(Path file) {
+        try {
+            Files.setLastModifiedTime(file, FileTime.from(Instant.now()));
+        } catch (IOException e) {
+            log.debug("Could not touch preview {}: {}", file, e.getMessage());
+        }
+    }
+}
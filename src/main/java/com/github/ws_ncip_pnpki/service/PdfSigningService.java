@@ -9,30 +9,39 @@ import com.github.ws_ncip_pnpki.repository.UserRepository;
 import com.itextpdf.io.image.ImageDataFactory;
 import com.itextpdf.io.image.ImageData;
 import com.itextpdf.kernel.geom.Rectangle;
+import com.itextpdf.kernel.exceptions.PdfException;
 import com.itextpdf.kernel.pdf.PdfReader;
 import com.itextpdf.kernel.pdf.PdfWriter;
 import com.itextpdf.kernel.pdf.PdfDocument;
 import com.itextpdf.kernel.pdf.StampingProperties;
 import com.itextpdf.kernel.pdf.canvas.PdfCanvas;
+import com.itextpdf.kernel.pdf.extgstate.PdfExtGState;
+import com.itextpdf.kernel.pdf.xobject.PdfFormXObject;
+import com.itextpdf.kernel.pdf.xobject.PdfImageXObject;
 import com.itextpdf.layout.Canvas;
 import com.itextpdf.layout.element.Div;
 import com.itextpdf.layout.element.Image;
 import com.itextpdf.signatures.*;
-import org.apache.pdfbox.pdmodel.PDDocument;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
 import org.bouncycastle.jce.provider.BouncyCastleProvider;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
+import java.security.GeneralSecurityException;
 import java.security.KeyStore;
 import java.security.PrivateKey;
 import java.security.Security;
@@ -42,31 +51,34 @@ import java.time.Instant;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Semaphore;
 
 @Service
+@Slf4j
 public class PdfSigningService {
-    @Value("${pdf.signing.output-dir:./signed-documents}")
-    private String outputDir;
-
-    @Value("${file.upload.dir}")
-    private String uploadDir;
 
-    @Value("${pdf.signing.tsa.url:}")
-    private String tsaUrl;
-
-    @Value("${pdf.signing.tsa.username:}")
-    private String tsaUsername;
-
-    @Value("${pdf.signing.tsa.password:}")
-    private String tsaPassword;
+    static {
+        if (Security.getProvider(BouncyCastleProvider.PROVIDER_NAME) == null) {
+            Security.addProvider(new BouncyCastleProvider());
+        }
+    }
 
-    @Value("${pdf.signing.tsa.enabled:false}")
-    private boolean tsaEnabled;
+    @Value("${pdf.signing.output-dir:./signed-documents}")
+    private String outputDir;
 
     @Value("${pdf.signing.company-logo:}")
     private String companyLogoPath;
 
-    private PDDocument currentDoc;
+    // Stateless; one instance serves every signature
+    private static final IExternalDigest DIGEST = new BouncyCastleDigest();
+
+    @Value("${pdf.signing.crypto-concurrency:0}")
+    private int cryptoConcurrency;
+
+    // Caps the CPU-bound stages (key derivation, stamping, RSA) separately from the
+    // number of signing threads, which mostly wait on files, the TSA and the database
+    private Semaphore cryptoPermits;
 
     @Autowired
     private UserRepository userRepository;
@@ -77,6 +89,30 @@ public class PdfSigningService {
     @Autowired
     private CertificateService certificateService;
 
+    @Autowired
+    private SigningKeyCache signingKeyCache;
+
+    @Autowired
+    private TimestampService timestampService;
+
+    @Autowired
+    private SignatureVerificationService signatureVerificationService;
+
+    @Autowired
+    private BlobStoreService blobStoreService;
+
+    @Autowired
+    private FileStorageService fileStorageService;
+
+    @Autowired
+    private ViewCopyService viewCopyService;
+
+    @Autowired
+    private SignatureAppearanceCache appearanceCache;
+
+    @Autowired
+    private PageGeometryService pageGeometryService;
+
     @Autowired
     private SignatureService signatureService;
 
@@ -133,6 +169,21 @@ public class PdfSigningService {
         public void setRotation(float rotation) { this.rotation = rotation; }
     }
 
+    @PostConstruct
+    void initCryptoPermits() {
+        int permits = cryptoConcurrency > 0 ? cryptoConcurrency : Runtime.getRuntime().availableProcessors();
+        cryptoPermits = new Semaphore(permits, true);
+    }
+
+    private <T> T withCryptoPermit(Callable<T> stage) throws Exception {
+        cryptoPermits.acquire();
+        try {
+            return stage.call();
+        } finally {
+            cryptoPermits.release();
+        }
+    }
+
     /**
      * MAIN FIX: Modified signPdfMultiPage to handle already-signed PDFs
      */
@@ -147,107 +198,93 @@ public class PdfSigningService {
             String password,
             String location) throws Exception {
 
-        if (Security.getProvider(BouncyCastleProvider.PROVIDER_NAME) == null) {
-            Security.addProvider(new BouncyCastleProvider());
-        }
-
         // Log rotation information
-        System.out.println("\n=== Processing " + placements.size() + " signature placements ===");
+        log.debug("Processing {} signature placements", placements.size());
         for (int i = 0; i < placements.size(); i++) {
             SignaturePlacement placement = placements.get(i);
-            System.out.println("Placement " + i + ": page=" + placement.pageNumber +
-                    ", rotation=" + placement.rotation + "°");
+            log.debug("Placement {}: page={}, rotation={}", i, placement.pageNumber, placement.rotation);
         }
 
-        // Rest of the existing code remains the same...
-        File outputDirectory = new File(outputDir);
-        if (!outputDirectory.exists()) {
-            outputDirectory.mkdirs();
-        }
-
-        KeyStore keyStore = KeyStore.getInstance("PKCS12");
+        SigningSession session;
         try (InputStream certInputStream = certificateFile.getInputStream()) {
-            keyStore.load(certInputStream, password.toCharArray());
+            session = openSession(certInputStream, password, signatureImage.getBytes(),
+                    placements, canvasWidth, canvasHeight, location);
         }
 
-        String alias = keyStore.aliases().nextElement();
-        PrivateKey privateKey = (PrivateKey) keyStore.getKey(alias, password.toCharArray());
-        Certificate[] chain = keyStore.getCertificateChain(alias);
+        String outputFileName = signWithSession(pdfDocument.getBytes(), session);
 
-        validateCertificate(chain);
-
-        // Extract certificate owner information
-        String certificateOwner = "Unknown";
-        if (chain.length > 0 && chain[0] instanceof X509Certificate x509Cert) {
-            certificateOwner = x509Cert.getSubjectX500Principal().getName();
-        }
+        auditLogService.logSingleSigning(
+                ipClient,pdfDocument.getOriginalFilename(), outputFileName,session.getCertificateOwner(),"SUCCESS"
+        );
 
-        File tempPdfFile = File.createTempFile("temp_pdf_", ".pdf");
-        File tempSignatureFile = File.createTempFile("temp_sig_", getFileExtension(signatureImage.getOriginalFilename()));
-        File tempStampedPdf = File.createTempFile("temp_stamped_", ".pdf");
+        return outputFileName;
+    }
 
-        pdfDocument.transferTo(tempPdfFile);
-        signatureImage.transferTo(tempSignatureFile);
 
-        loadPdf(tempPdfFile);
+    /**
+     * Unlocks the key store once and prepares a session for stamping initials with the
+     * given placements. Batch jobs reuse it for every document of the batch.
+     */
+    public SigningSession openSession(
+            InputStream certificate,
+            String password,
+            byte[] signatureImage,
+            List<SignaturePlacement> placements,
+            float canvasWidth,
+            float canvasHeight,
+            String location) throws Exception {
 
-        if (!tempSignatureFile.exists() || tempSignatureFile.length() == 0) {
+        if (signatureImage == null || signatureImage.length == 0) {
             throw new Exception("Signature image file is empty or not created");
         }
 
-        String outputFileName = "signed_" + UUID.randomUUID() + ".pdf";
-        File outputFile = new File(outputDir, outputFileName);
+        SigningKeyCache.UnlockedKey unlocked = unlockKeyStore(certificate, password);
 
-        try {
-            int digitalSignaturePage = placements.get(0).pageNumber;
-
-            System.out.println("\n=== STEP 1: Adding Visual Signatures ===");
-            System.out.println("   Digital signature will be on page: " + digitalSignaturePage);
-
-            // FIX 1: Use APPEND mode when adding visual signatures to preserve existing signatures
-            addVisualSignaturesToPagesPreserving(
-                    tempPdfFile,
-                    tempStampedPdf,
-                    placements,
-                    digitalSignaturePage,
-                    canvasWidth,
-                    canvasHeight,
-                    tempSignatureFile,
-                    chain,
-                    location,
-                    "Signed Authorization",
-                    true
-            );
+        return sessionFor(unlocked)
+                .signatureImage(appearanceCache.signatureImage(signatureImage))
+                .placements(List.copyOf(placements))
+                .canvasWidth(canvasWidth)
+                .canvasHeight(canvasHeight)
+                .location(location)
+                .initial(true)
+                .build();
+    }
 
-            System.out.println("\n=== STEP 2: Applying Digital Signature ===");
-            signPdfWithDigitalSignatureEnhanced(
-                    tempStampedPdf,
-                    outputFile,
-                    privateKey,
-                    chain,
-                    placements,
-                    canvasWidth,
-                    canvasHeight,
-                    location,
-                    tempSignatureFile
-            );
+    /**
+     * Signs one document into the output directory and returns the signed file name.
+     */
+    public String signWithSession(byte[] pdfDocument, SigningSession session) throws Exception {
+        rejectViewCopy(pdfDocument);
 
-            System.out.println("\n✅ Multi-page signing completed successfully!");
+        File outputDirectory = new File(outputDir);
+        if (!outputDirectory.exists()) {
+            outputDirectory.mkdirs();
+        }
 
-            auditLogService.logSingleSigning(
-                    ipClient,pdfDocument.getOriginalFilename(), outputFileName,certificateOwner,"SUCCESS"
-            );
+        String outputFileName = "signed_" + UUID.randomUUID() + ".pdf";
+        File outputFile = new File(outputDir, outputFileName);
 
-            return outputFileName;
+        // Written to a sibling ".part" file and moved into place, so readers never see half a file
+        Path outputPath = outputFile.toPath();
+        Path partialPath = outputPath.resolveSibling(outputFileName + ".part");
+        boolean timestampDeferred;
+        log.debug("Stamping and signing {} in a single pass", outputFileName);
+        try (OutputStream out = Files.newOutputStream(partialPath)) {
+            timestampDeferred = stampAndSign(pdfDocument, out, session);
+        } catch (Exception e) {
+            Files.deleteIfExists(partialPath);
+            throw e;
+        }
+        Files.move(partialPath, outputPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
 
-        } finally {
-            if (tempPdfFile.exists()) tempPdfFile.delete();
-            if (tempSignatureFile.exists()) tempSignatureFile.delete();
-            if (tempStampedPdf.exists()) tempStampedPdf.delete();
-            if (currentDoc != null) currentDoc.close();
+        if (timestampDeferred) {
+            timestampService.deferTimestamp(outputPath);
         }
-    }
 
+        log.info("Signed {}", outputFileName);
+
+        return outputFileName;
+    }
 
     /**
      * Latest and on used function for signing PDF
@@ -283,242 +320,252 @@ public class PdfSigningService {
             Long documentId
     )throws Exception {
 
-        if (Security.getProvider(BouncyCastleProvider.PROVIDER_NAME) == null) {
-            Security.addProvider(new BouncyCastleProvider());
-        }
-
         File outputDirectory = new File(outputDir);
         if (!outputDirectory.exists()) {
             outputDirectory.mkdirs();
         }
 
+        // A view copy was rewritten by qpdf, so the signatures already in it are broken
+        byte[] source = pdfDocument.getBytes();
+        rejectViewCopy(source);
 
-        Path path = certificateService.getCertPath(certificateHash);
-        System.out.println("Certificate path: " + path);
-        if (path == null) {
-            return null;
-        }
-        File certificateFile = certificateService.getCertFile(String.valueOf(path));
-        if (!certificateFile.exists()) {
-            return null;
-        }
-
-
+        // Check the placements against the indexed page geometry before the key or the PDF is touched
+        Document doc =  documentService.findById(documentId);
+        List<PlacementBox> placementBoxes = pageGeometryService.toPdfBoxes(
+                documentId, doc.getFilePath(), placements, canvasWidth, canvasHeight);
+
+        // Reuse the unlocked key while the clerk keeps signing with the same certificate
+        SigningKeyCache.UnlockedKey unlocked = signingKeyCache.get(certificateHash, password);
+        if (unlocked != null) {
+            validateCertificate(unlocked.chain());
+        } else {
+            Path path = certificateService.getCertPath(certificateHash);
+            if (path == null) {
+                return null;
+            }
+            if (!fileStorageService.fileExists(String.valueOf(path))) {
+                return null;
+            }
 
-        KeyStore keyStore = KeyStore.getInstance("PKCS12");
-        try (InputStream certInputStream = new FileInputStream(certificateFile)) {
-            keyStore.load(certInputStream, password.toCharArray());
+            try (InputStream certInputStream = fileStorageService.openStream(String.valueOf(path))) {
+                unlocked = unlockKeyStore(certInputStream, password);
+            }
+            signingKeyCache.put(certificateHash, userId, password, unlocked);
         }
 
-        String alias = keyStore.aliases().nextElement();
-        PrivateKey privateKey = (PrivateKey) keyStore.getKey(alias, password.toCharArray());
-        Certificate[] chain = keyStore.getCertificateChain(alias);
-
-        validateCertificate(chain);
-
-        System.out.println("passed to validateCertificate");
-
-        // Extract certificate owner information
-        String certificateOwner = "Unknown";
-        if (chain.length > 0 && chain[0] instanceof X509Certificate x509Cert) {
+        byte[] signatureBytes = signatureService.readSignatureImage(signatureId);
+        if (signatureBytes.length == 0) {
+            throw new Exception("Signature image file is empty or not created");
+        }
 
-            // Get the subject DN (Distinguished Name)
+        SigningSession session = sessionFor(unlocked)
+                .signatureImage(appearanceCache.signatureImage(signatureId, signatureBytes))
+                .placements(List.copyOf(placements))
+                .placementBoxes(placementBoxes)
+                .canvasWidth(canvasWidth)
+                .canvasHeight(canvasHeight)
+                .location(location)
+                .initial(isInitial)
+                .build();
 
-            // Option 1: Use the full DN
-            certificateOwner = x509Cert.getSubjectX500Principal().getName();
+        // get document data
 
-            // Option 2: Extract just the CN (Common Name) - cleaner for logs
-            // certificateOwner = extractCN(subjectDN);
-        }
+        String outputFileName;
+        User user;
 
-        Path signaturePath = signatureService.getSignaturePath(signatureId);
-        //File signatureImage = signatureService.getSignatureFile(signatureId);
+        // Set output file name (keep original name with signed_ prefix)
+        // Blobs are shared with other documents, so their signed copy needs a name of its own
+        String sourceFilePath = doc.getFilePath();
+        boolean signingBlob = blobStoreService.isBlob(sourceFilePath);
+        outputFileName = signingBlob
+                ? UUID.randomUUID() + ".pdf"
+                : Paths.get(sourceFilePath).getFileName().toString();
 
-        File tempPdfFile = File.createTempFile("temp_pdf_", ".pdf");
-        File tempSignatureFile = File.createTempFile("temp_sig_",".png");
-        File tempStampedPdf = File.createTempFile("temp_stamped_", ".pdf");
+        // Signed copies are kept in the owner's signed folder
+        String outputKey = doc.getOwner().getId() + "/signed/" + outputFileName;
 
-        pdfDocument.transferTo(tempPdfFile);
-        Files.copy(signaturePath, tempSignatureFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        user = doc.getOwner();
 
-        loadPdf(tempPdfFile);
+        // Sign in memory next to the source; the same bytes go to storage and to verification
+        ByteArrayOutputStream signedOut = new ByteArrayOutputStream(source.length + 64 * 1024);
+        log.debug("Stamping and signing document {} in a single pass", documentId);
+        boolean timestampDeferred = stampAndSign(source, signedOut, session);
+        byte[] signedBytes = signedOut.toByteArray();
+        fileStorageService.writeBytes(outputKey, signedBytes);
 
-        if (!tempSignatureFile.exists() || tempSignatureFile.length() == 0) {
-            throw new Exception("Signature image file is empty or not created");
+        if (timestampDeferred) {
+            timestampService.deferTimestamp(outputKey);
         }
 
-        // get document data
-
-        Path uploadPath;
-        String outputFileName;
-        User user;
-        Document doc =  documentService.findById(documentId);
-        Path outputFilePath;
+        log.info("Signed document {} into {}", documentId, outputKey);
+
+        DocumentStatus newDocumentStatus;
+
+        if (Objects.requireNonNull(doc.getStatus()) == DocumentStatus.UPLOADED) {
+            newDocumentStatus = DocumentStatus.SIGNED;
+        } else if(Objects.requireNonNull(doc.getStatus()) == DocumentStatus.SIGNED && Objects.equals(doc.getOwner().getId(), userId)){
+            newDocumentStatus = DocumentStatus.SIGNED;
+        } else {
+            // update document shared
+            DocumentShared ds = documentSharedService.findByUserIdAndDocumentId(userId, documentId);
+            ds.setDoneSigning(true);
+            ds.setSignedAt(Instant.now());
+            documentSharedService.saveUpdate(ds);
+            newDocumentStatus = DocumentStatus.SIGNED_AND_SHARED;
+        }
 
 
-        // Get the original document's path
-        String originalDocPath = doc.getFilePath();
+        // Update document record
+        doc.setStatus(newDocumentStatus);
+        doc.setFileName(originalFileName);
+        doc.setFilePath(outputKey);
+        doc.setFileSize((long) signedBytes.length);
 
-        // Check if path is relative or absolute
-        if (!originalDocPath.startsWith(uploadDir)) {
-            // It's a relative path, prepend uploadDir
-            originalDocPath = Paths.get(uploadDir, originalDocPath).toString();
-        }
 
-        Path originalPath = Paths.get(originalDocPath);
+        documentService.updateDocument(doc);
 
-        // Get parent directory of the original document
-        uploadPath =Paths.get(uploadDir, doc.getOwner().getId().toString(), "signed");
+        // Large signed files get a copy that the browser viewer can open page by page
+        viewCopyService.schedule(outputKey);
 
-        Files.createDirectories(uploadPath);
+        // The document now lives in its signed copy
+        if (signingBlob) {
+            try {
+                blobStoreService.release(sourceFilePath);
+            } catch (Exception e) {
+                log.warn("Could not release source blob {}: {}", sourceFilePath, e.getMessage());
+            }
+        }
 
-        // Set output file name (keep original name with signed_ prefix)
-        outputFileName = originalPath.getFileName().toString();
+        // Earlier revisions are already on record, so only the new signature's byte range is checked
+        try {
+            signatureVerificationService.verifyDocument(doc.getId(), signedBytes);
+        } catch (Exception e) {
+            log.warn("Could not record signature revision of document {}: {}", doc.getId(), e.getMessage());
+        }
 
-        // Set output path to be in the signed subdirectory
-        outputFilePath = uploadPath.resolve(outputFileName);
 
-        user = doc.getOwner();
+        auditLogService.logSingleSigning(
+                ipClient,pdfDocument.getOriginalFilename(), outputFileName,session.getCertificateOwner(),"SUCCESS"
+        );
 
 
-        File outputFile = outputFilePath.toFile();
 
+        return outputFileName;
 
-        try {
-            int digitalSignaturePage = placements.get(0).pageNumber;
-
-            System.out.println("\n=== STEP 1: Adding Visual Signatures ===");
-            System.out.println("   Digital signature will be on page: " + digitalSignaturePage);
-
-            // FIX 1: Use APPEND mode when adding visual signatures to preserve existing signatures
-            addVisualSignaturesToPagesPreserving(
-                    tempPdfFile,
-                    tempStampedPdf,
-                    placements,
-                    digitalSignaturePage,
-                    canvasWidth,
-                    canvasHeight,
-                    tempSignatureFile,
-                    chain,
-                    location,
-                    "Signed Authorization",
-                    isInitial
-            );
+    }
 
-            System.out.println("\n=== STEP 2: Applying Digital Signature ===");
-            signPdfWithDigitalSignatureEnhanced(
-                    tempStampedPdf,
-                    outputFile,
-                    privateKey,
-                    chain,
-                    placements,
-                    canvasWidth,
-                    canvasHeight,
-                    location,
-                    tempSignatureFile
-            );
+    private void rejectViewCopy(byte[] pdf) {
+        if (viewCopyService.isViewCopy(pdf)) {
+            throw new IllegalArgumentException("This is a view copy without valid signatures; sign the original document");
+        }
+    }
 
-            System.out.println("\n✅ Multi-page signing completed successfully!");
-
-            DocumentStatus newDocumentStatus;
-
-            if (Objects.requireNonNull(doc.getStatus()) == DocumentStatus.UPLOADED) {
-                newDocumentStatus = DocumentStatus.SIGNED;
-            } else if(Objects.requireNonNull(doc.getStatus()) == DocumentStatus.SIGNED && Objects.equals(doc.getOwner().getId(), userId)){
-                newDocumentStatus = DocumentStatus.SIGNED;
-            } else {
-                // update document shared
-                DocumentShared ds = documentSharedService.findByUserIdAndDocumentId(userId, documentId);
-                ds.setDoneSigning(true);
-                ds.setSignedAt(Instant.now());
-                documentSharedService.saveUpdate(ds);
-                newDocumentStatus = DocumentStatus.SIGNED_AND_SHARED;
-            }
+    /**
+     * Stamps the visual signatures and applies the digital signature in one incremental
+     * update over the in-memory source, writing the signed document to {@code out}.
+     * While the TSA is degraded the signature goes out without a timestamp token and true is
+     * returned; the caller queues the stored file for a deferred document timestamp.
+     */
+    private boolean stampAndSign(byte[] source, OutputStream out, SigningSession session) throws Exception {
 
+        ITSAClient tsaClient = timestampService.getClient();
+        boolean deferTimestamp = tsaClient != null && timestampService.shouldDefer();
+        if (deferTimestamp) {
+            log.debug("TSA degraded, timestamp will be applied later");
+            tsaClient = null;
+        }
 
-            // Update document record
-            doc.setStatus(newDocumentStatus);
-            doc.setFileName(originalFileName);
-            doc.setFilePath(doc.getOwner().getId()+"/signed/"+outputFileName);
-            doc.setFileSize(outputFile.length());
+        PdfSigner signer = openSigner(source, out);
 
+        log.debug("Digital signature will be on page {}", session.getDigitalSignaturePage());
 
-            documentService.updateDocument(doc);
+        withCryptoPermit(() -> {
+            addVisualSignaturesToPagesPreserving(signer.getDocument(), session);
+            return null;
+        });
 
+        signPdfWithDigitalSignatureEnhanced(signer, session, tsaClient);
 
-            auditLogService.logSingleSigning(
-                    ipClient,pdfDocument.getOriginalFilename(), outputFileName,certificateOwner,"SUCCESS"
-            );
+        return deferTimestamp;
+    }
 
+    /**
+     * Unlocks a PKCS#12 key store and returns the key, the validated chain and the
+     * certificate owner.
+     */
+    private SigningKeyCache.UnlockedKey unlockKeyStore(InputStream p12, String password) throws Exception {
+        // Password-based key derivation dominates the cost of loading a PKCS#12 file
+        KeyStore keyStore = withCryptoPermit(() -> {
+            KeyStore ks = KeyStore.getInstance("PKCS12");
+            ks.load(p12, password.toCharArray());
+            return ks;
+        });
 
+        String alias = keyStore.aliases().nextElement();
+        PrivateKey privateKey = withCryptoPermit(() -> (PrivateKey) keyStore.getKey(alias, password.toCharArray()));
+        Certificate[] chain = keyStore.getCertificateChain(alias);
 
-            return outputFileName;
+        validateCertificate(chain);
 
-        } finally {
-            if (tempPdfFile.exists()) tempPdfFile.delete();
-            if (tempSignatureFile.exists()) tempSignatureFile.delete();
-            if (tempStampedPdf.exists()) tempStampedPdf.delete();
-            if (currentDoc != null) currentDoc.close();
+        // Extract certificate owner information
+        String certificateOwner = "Unknown";
+        if (chain.length > 0 && chain[0] instanceof X509Certificate x509Cert) {
+            certificateOwner = x509Cert.getSubjectX500Principal().getName();
         }
 
+        return new SigningKeyCache.UnlockedKey(privateKey, chain, certificateOwner);
     }
 
+    private static SigningSession.SigningSessionBuilder sessionFor(SigningKeyCache.UnlockedKey key) {
+        return SigningSession.builder()
+                .privateKey(key.privateKey())
+                .chain(key.chain())
+                .certificateOwner(key.certificateOwner());
+    }
 
+    /**
+     * Opens the source in append mode so existing signatures stay valid. Files with a
+     * damaged cross-reference table cannot be appended to, so they are rewritten once
+     * in memory before signing.
+     */
+    private PdfSigner openSigner(byte[] source, OutputStream out) throws IOException {
+        StampingProperties stampingProperties = new StampingProperties().useAppendMode();
+        try {
+            return new PdfSigner(new PdfReader(new ByteArrayInputStream(source)), out, stampingProperties);
+        } catch (PdfException e) {
+            log.debug("Source needs repair before append: {}", e.getMessage());
+            ByteArrayOutputStream repaired = new ByteArrayOutputStream(source.length);
+            new PdfDocument(new PdfReader(new ByteArrayInputStream(source)), new PdfWriter(repaired)).close();
+            return new PdfSigner(new PdfReader(new ByteArrayInputStream(repaired.toByteArray())), out, stampingProperties);
+        }
+    }
 
-    private void addVisualSignaturesToPagesPreserving(
-            File srcPdf,
-            File destPdf,
-            List<SignaturePlacement> placements,
-            int digitalSignaturePage,
-            float canvasWidth,
-            float canvasHeight,
-            File signatureImageFile,
-            Certificate[] chain,
-            String location,
-            String reason,
-            boolean isInitial) throws Exception {
-
-        System.out.println("🖼️  Adding visual signatures (preserving existing signatures)");
-        System.out.println("   Digital signature page: " + digitalSignaturePage);
-        System.out.println("   Is initial: " + isInitial);
 
-        // Check if PDF has existing signatures
-        boolean hasExistingSignatures = hasSignatures(srcPdf);
-        System.out.println("   Has existing signatures: " + hasExistingSignatures);
 
-        // Use StampingProperties with append mode if PDF has signatures
-        PdfReader reader = new PdfReader(srcPdf);
-        PdfWriter writer = new PdfWriter(destPdf);
+    private void addVisualSignaturesToPagesPreserving(PdfDocument pdfDoc, SigningSession session) throws Exception {
 
-        StampingProperties stampingProperties = new StampingProperties();
-        if (hasExistingSignatures) {
-            stampingProperties.useAppendMode();
-            System.out.println("   ✅ Using append mode to preserve existing signatures");
-        }
+        List<SignaturePlacement> placements = session.getPlacements();
+        int digitalSignaturePage = session.getDigitalSignaturePage();
+        float canvasWidth = session.getCanvasWidth();
+        float canvasHeight = session.getCanvasHeight();
+        SignatureAppearanceCache.SharedImage signatureImage = session.getSignatureImage();
+        ImageData signatureImageData = signatureImage.data();
+        Certificate[] chain = session.getChain();
+        boolean isInitial = session.isInitial();
 
-        PdfDocument pdfDoc = new PdfDocument(reader, writer, stampingProperties);
+        log.debug("Adding visual signatures, digital signature page {}, initial {}, image {}x{} pixels",
+                digitalSignaturePage, isInitial, signatureImageData.getWidth(), signatureImageData.getHeight());
 
         try {
-            if (!signatureImageFile.exists()) {
-                throw new Exception("Signature file not found");
-            }
-
-            ImageData signatureImageData = ImageDataFactory.create(signatureImageFile.getAbsolutePath());
-            System.out.println("   Signature image loaded: " + signatureImageData.getWidth() + "x" +
-                    signatureImageData.getHeight() + " pixels");
 
             // Load company logo/seal if configured (only for full signatures)
-            ImageData sealImageData = null;
-            if (!isInitial && companyLogoPath != null && !companyLogoPath.isEmpty()) {
-                File logoFile = new File(companyLogoPath);
-                if (logoFile.exists()) {
-                    sealImageData = ImageDataFactory.create(logoFile.getAbsolutePath());
-                    System.out.println("   Official seal loaded: " + sealImageData.getWidth() + "x" +
-                            sealImageData.getHeight() + " pixels");
-                } else {
-                    System.err.println("   ⚠️  Official seal not found at: " + companyLogoPath);
-                }
-            }
+            SignatureAppearanceCache.SharedImage seal = isInitial ? null : appearanceCache.seal();
+            ImageData sealImageData = seal == null ? null : seal.data();
+
+            // Embed each image once; every placement references the same XObject
+            PdfImageXObject signatureXObject = signatureImage.toXObject();
+            PdfImageXObject sealXObject = seal == null ? null : seal.toXObject();
+            PdfExtGState sealOpacity = new PdfExtGState().setFillOpacity(0.3f);
 
             // Extract signer name from certificate (only for full signatures)
             String signerName = "UNKNOWN SIGNER";
@@ -534,7 +581,7 @@ public class PdfSigningService {
                         }
                     }
                 } catch (Exception e) {
-                    System.err.println("Could not extract signer name: " + e.getMessage());
+                    log.warn("Could not extract signer name: {}", e.getMessage());
                 }
             }
 
@@ -551,248 +598,211 @@ public class PdfSigningService {
                 );
             }
 
+            // The date is the same on every page of this signing
+            String dateText = isInitial ? null :
+                    "Date: " + new java.text.SimpleDateFormat("yyyy-MM-dd HH:mm:ss").format(new java.util.Date());
+
+            // One appearance per distinct box size, referenced from every page that uses it
+            Map<String, PlacementAppearance> appearances = new HashMap<>();
+
+            List<PlacementBox> placementBoxes = session.getPlacementBoxes();
+
             int added = 0;
-            for (SignaturePlacement placement : placements) {
+            for (int index = 0; index < placements.size(); index++) {
+                SignaturePlacement placement = placements.get(index);
                 float rotation = placement.getRotation();
-                System.out.println("\n📝 Adding visual signature to Page " + placement.pageNumber +
-                        " (Rotation: " + rotation + "°)");
+                log.debug("Adding visual signature to page {} (rotation {})", placement.pageNumber, rotation);
 
                 // Validate page number
                 if (placement.pageNumber < 1 || placement.pageNumber > pdfDoc.getNumberOfPages()) {
-                    System.err.println("   ❌ Invalid page number: " + placement.pageNumber +
-                            ". PDF has " + pdfDoc.getNumberOfPages() + " pages.");
+                    log.warn("Invalid page number {}, PDF has {} pages", placement.pageNumber, pdfDoc.getNumberOfPages());
                     continue;
                 }
 
                 // Get the page (1-indexed in iText)
                 com.itextpdf.kernel.pdf.PdfPage page = pdfDoc.getPage(placement.pageNumber);
-                Rectangle pageSize = page.getMediaBox();
 
-                System.out.println("   Page size: " + pageSize.getWidth() + "x" + pageSize.getHeight());
-
-                // Calculate PDF coordinates - this is ONLY for the signature image
-                float scaleX = pageSize.getWidth() / canvasWidth;
-                float scaleY = pageSize.getHeight() / canvasHeight;
-
-                // Image coordinates (EXACT size from frontend - no modification)
-                float imageWidth = placement.width * scaleX;
-                float imageHeight = placement.height * scaleY;
-                float imageX = placement.x * scaleX;
-                float imageY = pageSize.getHeight() - (placement.y * scaleY) - imageHeight;
-
-                System.out.println("   Signature image from frontend:");
-                System.out.println("     Canvas: x=" + placement.x + ", y=" + placement.y +
-                        ", w=" + placement.width + ", h=" + placement.height);
-                System.out.println("     PDF: x=" + imageX + ", y=" + imageY +
-                        ", w=" + imageWidth + ", h=" + imageHeight);
-
-                // Ensure coordinates are within page bounds
-                imageX = Math.max(0, Math.min(imageX, pageSize.getWidth() - imageWidth));
-                imageY = Math.max(0, Math.min(imageY, pageSize.getHeight() - imageHeight));
-                imageWidth = Math.min(imageWidth, pageSize.getWidth() - imageX);
-                imageHeight = Math.min(imageHeight, pageSize.getHeight() - imageY);
-
-                System.out.println("   Final image position: (" + imageX + ", " + imageY + ")");
-                System.out.println("   Final image size: " + imageWidth + "x" + imageHeight);
+                // Boxes converted from the page geometry index, or from the page itself
+                PlacementBox box;
+                if (placementBoxes != null) {
+                    box = placementBoxes.get(index);
+                } else {
+                    Rectangle pageSize = page.getMediaBox();
+                    box = toPdfBox(placement, pageSize.getWidth(), pageSize.getHeight(), canvasWidth, canvasHeight);
+                }
+                float imageX = box.x();
+                float imageY = box.y();
+                float imageWidth = box.width();
+                float imageHeight = box.height();
+
+                log.debug("Image at ({}, {}), size {}x{}", imageX, imageY, imageWidth, imageHeight);
+
+                float width = imageWidth;
+                float height = imageHeight;
+                String appearanceKey = String.format(Locale.ROOT, "%.2fx%.2f", width, height);
+                final com.itextpdf.kernel.font.PdfFont captionRegularFont = regularFont;
+                final com.itextpdf.kernel.font.PdfFont captionBoldFont = boldFont;
+                final String captionName = signerName;
+                PlacementAppearance appearance = appearances.computeIfAbsent(appearanceKey, key ->
+                        createPlacementAppearance(pdfDoc, width, height, signatureXObject, sealXObject,
+                                sealImageData, sealOpacity, captionName, dateText, captionRegularFont, captionBoldFont));
 
                 // Create PdfCanvas
                 PdfCanvas pdfCanvas = new PdfCanvas(page);
 
-                // FIRST: Draw seal/logo BEHIND the signature image (only for full signatures)
-                if (!isInitial && sealImageData != null) {
-                    System.out.println("   🏢 Drawing seal behind signature image");
-
-                    pdfCanvas.saveState();
-
-                    // Apply rotation if needed (same as signature)
-                    if (rotation != 0) {
-                        float centerX = imageX + imageWidth / 2;
-                        float centerY = imageY + imageHeight / 2;
-                        double rad = Math.toRadians(-rotation);
-                        float cos = (float)Math.cos(rad);
-                        float sin = (float)Math.sin(rad);
-                        float a = cos;
-                        float b = sin;
-                        float c = -sin;
-                        float d = cos;
-                        float e = centerX - centerX * cos + centerY * sin;
-                        float f = centerY - centerX * sin - centerY * cos;
-                        pdfCanvas.concatMatrix(a, b, c, d, e, f);
-                    }
-
-                    // Calculate seal size - make it slightly larger than signature to wrap behind
-                    float pointsPerPixel = 72f / 96f;
-                    float logoOriginalWidth = sealImageData.getWidth() * pointsPerPixel;
-                    float logoOriginalHeight = sealImageData.getHeight() * pointsPerPixel;
-
-                    // Scale seal to be 1.2x the signature size (wraps nicely behind)
-                    float sealScale = Math.min(
-                            (imageWidth * 1.2f) / logoOriginalWidth,
-                            (imageHeight * 1.2f) / logoOriginalHeight
-                    );
-
-                    float sealWidth = logoOriginalWidth * sealScale;
-                    float sealHeight = logoOriginalHeight * sealScale;
-
-                    // Center the seal behind the signature image
-                    float sealX = imageX + (imageWidth - sealWidth) / 2;
-                    float sealY = imageY + (imageHeight - sealHeight) / 2;
-
-                    // Draw with 30% opacity to show it's behind
-                    pdfCanvas.setExtGState(
-                            new com.itextpdf.kernel.pdf.extgstate.PdfExtGState().setFillOpacity(0.3f)
-                    );
-
-                    pdfCanvas.addImageFittedIntoRectangle(
-                            sealImageData,
-                            new Rectangle(sealX, sealY, sealWidth, sealHeight),
-                            false
-                    );
-
-                    System.out.println("      Position: (" + sealX + ", " + sealY + ")");
-                    System.out.println("      Size: " + sealWidth + "x" + sealHeight);
-                    System.out.println("      Opacity: 30% (behind signature)");
-
-                    pdfCanvas.restoreState();
-                }
-
-                // SECOND: Draw the signature image on top
+                // Seal and signature image share the rotation around the image center
                 pdfCanvas.saveState();
-
-                // Apply rotation if needed
                 if (rotation != 0) {
-                    // Calculate center point for rotation
                     float centerX = imageX + imageWidth / 2;
                     float centerY = imageY + imageHeight / 2;
-
-                    System.out.println("   Rotating around center: (" + centerX + ", " + centerY + ")");
-
-                    // Convert degrees to radians
                     double rad = Math.toRadians(-rotation);
                     float cos = (float)Math.cos(rad);
                     float sin = (float)Math.sin(rad);
-
-                    // Create transformation matrix for rotation around center point
                     float a = cos;
                     float b = sin;
                     float c = -sin;
                     float d = cos;
                     float e = centerX - centerX * cos + centerY * sin;
                     float f = centerY - centerX * sin - centerY * cos;
-
-                    // Apply the transformation matrix
                     pdfCanvas.concatMatrix(a, b, c, d, e, f);
                 }
+                // Form coordinates are relative to the image corner; addXObjectAt would move
+                // the bbox corner there instead, and the seal and caption bboxes start below zero
+                pdfCanvas.addXObjectWithTransformationMatrix(appearance.mark(), 1, 0, 0, 1, imageX, imageY);
+                pdfCanvas.restoreState();
 
-                // Draw the signature image - EXACT size from frontend
-                try {
-                    pdfCanvas.addImageFittedIntoRectangle(
-                            signatureImageData,
-                            new Rectangle(imageX, imageY, imageWidth, imageHeight),
-                            false
-                    );
-                    System.out.println("   ✅ Signature image drawn successfully");
-                } catch (Exception e) {
-                    System.err.println("   ❌ Failed to draw signature image: " + e.getMessage());
-                    e.printStackTrace();
+                // Signer name and date stay upright BELOW the signature image
+                if (appearance.caption() != null) {
+                    pdfCanvas.addXObjectWithTransformationMatrix(appearance.caption(), 1, 0, 0, 1, imageX, imageY);
                 }
 
-                // Restore graphics state
-                pdfCanvas.restoreState();
-
-                // Add text ONLY if isInitial is false
-                // These are in their OWN container BELOW the signature image
-                if (!isInitial) {
-                    System.out.println("   📝 Adding signer information in separate container");
+                added++;
+            }
 
-                    // Text container starts BELOW the image
-                    // Use the same width as the image for consistency
-                    float textContainerX = imageX;
-                    float textContainerWidth = imageWidth;
-                    float textY = imageY - 8; // Start 8 points below the image
+            log.debug("Appearances built: {} for {} placements", appearances.size(), added);
 
-                    // Signer name (bold, centered in text container)
-                    float nameWidth = boldFont.getWidth(signerName, 9);
-                    float nameX = textContainerX + (textContainerWidth - nameWidth) / 2;
+        } catch (Exception e) {
+            log.error("Error adding visual signatures: {}", e.getMessage(), e);
+            throw e;
+        }
+    }
 
-                    pdfCanvas.saveState();
-                    pdfCanvas.beginText();
-                    pdfCanvas.setFontAndSize(boldFont, 9);
-                    pdfCanvas.moveText(nameX, textY);
-                    pdfCanvas.showText(signerName);
-                    pdfCanvas.endText();
-                    pdfCanvas.restoreState();
-                    textY -= 14;
-
-                    // Reason (centered)
-                    /*if (reason != null && !reason.isEmpty()) {
-                        String reasonText = "Reason: " + reason;
-                        float reasonWidth = regularFont.getWidth(reasonText, 8);
-                        float reasonX = textContainerX + (textContainerWidth - reasonWidth) / 2;
-
-                        pdfCanvas.saveState();
-                        pdfCanvas.beginText();
-                        pdfCanvas.setFontAndSize(regularFont, 8);
-                        pdfCanvas.moveText(reasonX, textY);
-                        pdfCanvas.showText(reasonText);
-                        pdfCanvas.endText();
-                        pdfCanvas.restoreState();
-                        textY -= 10;
-                    }
 
-                    // Location (centered)
-                    if (location != null && !location.isEmpty()) {
-                        String locationText = "Location: " + location;
-                        float locationWidth = regularFont.getWidth(locationText, 8);
-                        float locationX = textContainerX + (textContainerWidth - locationWidth) / 2;
-
-                        pdfCanvas.saveState();
-                        pdfCanvas.beginText();
-                        pdfCanvas.setFontAndSize(regularFont, 8);
-                        pdfCanvas.moveText(locationX, textY);
-                        pdfCanvas.showText(locationText);
-                        pdfCanvas.endText();
-                        pdfCanvas.restoreState();
-                        textY -= 10;
-                    }*/
-
-                    // Date (centered)
-                    java.text.SimpleDateFormat sdf = new java.text.SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
-                    String dateStr = sdf.format(new java.util.Date());
-                    String dateText = "Date: " + dateStr;
-                    float dateWidth = regularFont.getWidth(dateText, 8);
-                    float dateX = textContainerX + (textContainerWidth - dateWidth) / 2;
 
-                    pdfCanvas.saveState();
-                    pdfCanvas.beginText();
-                    pdfCanvas.setFontAndSize(regularFont, 8);
-                    pdfCanvas.moveText(dateX, textY);
-                    pdfCanvas.showText(dateText);
-                    pdfCanvas.endText();
-                    pdfCanvas.restoreState();
+    /**
+     * Position of a signature image on its page in PDF points, origin at the lower-left corner.
+     */
+    public record PlacementBox(float x, float y, float width, float height) {
+    }
 
-                    System.out.println("   ✅ Text container width matches image: " + textContainerWidth);
-                } else {
-                    System.out.println("   ℹ️  Skipping signer info (initial signature)");
-                }
+    /**
+     * Converts a placement from canvas coordinates (origin top-left) to PDF points on a
+     * page of the given size, keeping the image within the page.
+     */
+    static PlacementBox toPdfBox(SignaturePlacement placement, float pageWidth, float pageHeight,
+                                 float canvasWidth, float canvasHeight) {
+        // Calculate PDF coordinates - this is ONLY for the signature image
+        float scaleX = pageWidth / canvasWidth;
+        float scaleY = pageHeight / canvasHeight;
+
+        // Image coordinates (EXACT size from frontend - no modification)
+        float imageWidth = placement.width * scaleX;
+        float imageHeight = placement.height * scaleY;
+        float imageX = placement.x * scaleX;
+        float imageY = pageHeight - (placement.y * scaleY) - imageHeight;
+
+        // Ensure coordinates are within page bounds
+        imageX = Math.max(0, Math.min(imageX, pageWidth - imageWidth));
+        imageY = Math.max(0, Math.min(imageY, pageHeight - imageHeight));
+        imageWidth = Math.min(imageWidth, pageWidth - imageX);
+        imageHeight = Math.min(imageHeight, pageHeight - imageY);
+
+        return new PlacementBox(imageX, imageY, imageWidth, imageHeight);
+    }
 
-                added++;
-                System.out.println("   ✅ Signature added to page " + placement.pageNumber);
-            }
+    /**
+     * Appearance of one placement size, built once per document as Form XObjects.
+     * The mark (seal and signature image) is rotated with the placement; the caption
+     * (signer name and date) is not. Both use the image's lower-left corner as origin.
+     */
+    private record PlacementAppearance(PdfFormXObject mark, PdfFormXObject caption) {
+    }
 
-            System.out.println("\n✅ Successfully added " + added + " visual signatures");
+    private PlacementAppearance createPlacementAppearance(
+            PdfDocument pdfDoc,
+            float imageWidth,
+            float imageHeight,
+            PdfImageXObject signatureXObject,
+            PdfImageXObject sealXObject,
+            ImageData sealImageData,
+            PdfExtGState sealOpacity,
+            String signerName,
+            String dateText,
+            com.itextpdf.kernel.font.PdfFont regularFont,
+            com.itextpdf.kernel.font.PdfFont boldFont) {
+
+        // Seal is 1.2x the signature size, centered behind it
+        Rectangle sealRect = null;
+        if (sealXObject != null) {
+            float pointsPerPixel = 72f / 96f;
+            float logoOriginalWidth = sealImageData.getWidth() * pointsPerPixel;
+            float logoOriginalHeight = sealImageData.getHeight() * pointsPerPixel;
+            float sealScale = Math.min(
+                    (imageWidth * 1.2f) / logoOriginalWidth,
+                    (imageHeight * 1.2f) / logoOriginalHeight
+            );
+            float sealWidth = logoOriginalWidth * sealScale;
+            float sealHeight = logoOriginalHeight * sealScale;
+            sealRect = new Rectangle((imageWidth - sealWidth) / 2, (imageHeight - sealHeight) / 2, sealWidth, sealHeight);
+        }
 
-        } catch (Exception e) {
-            System.err.println("❌ Error adding visual signatures: " + e.getMessage());
-            e.printStackTrace();
-            throw e;
-        } finally {
-            pdfDoc.close();
-            System.out.println("📄 PDF document closed");
+        Rectangle imageRect = new Rectangle(0, 0, imageWidth, imageHeight);
+        Rectangle markBox = sealRect == null ? imageRect : Rectangle.getCommonRectangle(imageRect, sealRect);
+        PdfFormXObject mark = new PdfFormXObject(markBox);
+        PdfCanvas markCanvas = new PdfCanvas(mark, pdfDoc);
+
+        // FIRST: Draw seal/logo BEHIND the signature image with 30% opacity
+        if (sealRect != null) {
+            markCanvas.saveState();
+            markCanvas.setExtGState(sealOpacity);
+            markCanvas.addXObjectFittedIntoRectangle(sealXObject, sealRect);
+            markCanvas.restoreState();
         }
-    }
 
+        // SECOND: Draw the signature image on top - EXACT size from frontend
+        markCanvas.addXObjectFittedIntoRectangle(signatureXObject, imageRect);
 
+        if (dateText == null) {
+            return new PlacementAppearance(mark, null);
+        }
+
+        // Text container starts 8 points below the image and is centered on it
+        float nameWidth = boldFont.getWidth(signerName, 9);
+        float dateWidth = regularFont.getWidth(dateText, 8);
+        float nameX = (imageWidth - nameWidth) / 2;
+        float dateX = (imageWidth - dateWidth) / 2;
+        float nameY = -8;
+        float dateY = nameY - 14;
+
+        float left = Math.min(0, Math.min(nameX, dateX));
+        float right = Math.max(imageWidth, Math.max(nameX + nameWidth, dateX + dateWidth));
+        PdfFormXObject caption = new PdfFormXObject(new Rectangle(left, dateY - 4, right - left, nameY + 10 - (dateY - 4)));
+        PdfCanvas captionCanvas = new PdfCanvas(caption, pdfDoc);
+
+        captionCanvas.beginText();
+        captionCanvas.setFontAndSize(boldFont, 9);
+        captionCanvas.moveText(nameX, nameY);
+        captionCanvas.showText(signerName);
+        captionCanvas.endText();
+
+        captionCanvas.beginText();
+        captionCanvas.setFontAndSize(regularFont, 8);
+        captionCanvas.moveText(dateX, dateY);
+        captionCanvas.showText(dateText);
+        captionCanvas.endText();
+
+        return new PlacementAppearance(mark, caption);
+    }
 
     /**
      * Validate certificate before signing
@@ -804,33 +814,27 @@ public class PdfSigningService {
 
         java.security.cert.X509Certificate cert = (java.security.cert.X509Certificate) chain[0];
 
-        System.out.println("\n=== Certificate Validation ===");
-        System.out.println("Subject: " + cert.getSubjectX500Principal().getName());
-        System.out.println("Issuer: " + cert.getIssuerX500Principal().getName());
-        System.out.println("Serial: " + cert.getSerialNumber());
-        System.out.println("Valid From: " + cert.getNotBefore());
-        System.out.println("Valid Until: " + cert.getNotAfter());
-        System.out.println("Chain Length: " + chain.length);
+        log.debug("Validating certificate {} issued by {}, serial {}, valid {} to {}, chain length {}",
+                cert.getSubjectX500Principal().getName(), cert.getIssuerX500Principal().getName(),
+                cert.getSerialNumber(), cert.getNotBefore(), cert.getNotAfter(), chain.length);
 
         // Check if certificate is currently valid
         try {
             cert.checkValidity();
-            System.out.println("✅ Certificate is currently valid");
         } catch (Exception e) {
-            System.err.println("❌ Certificate validity check failed: " + e.getMessage());
             throw new Exception("Certificate is not valid: " + e.getMessage());
         }
 
         // Check if self-signed
         boolean isSelfSigned = cert.getIssuerX500Principal().equals(cert.getSubjectX500Principal());
         if (isSelfSigned) {
-            System.out.println("⚠️  Certificate is self-signed");
+            log.debug("Certificate is self-signed");
         }
 
         // Verify certificate chain
         for (int i = 0; i < chain.length; i++) {
             java.security.cert.X509Certificate c = (java.security.cert.X509Certificate) chain[i];
-            System.out.println("  Chain[" + i + "]: " + c.getSubjectX500Principal().getName());
+            log.debug("Chain[{}]: {}", i, c.getSubjectX500Principal().getName());
         }
     }
 
@@ -852,14 +856,9 @@ public class PdfSigningService {
         float pdfY = pdfPageHeight - (placement.y * scaleY) - pdfHeight; // This might be wrong
 
         // Actually, let's debug this:
-        System.out.println("Canvas to PDF conversion:");
-        System.out.println("  Canvas: x=" + placement.x + ", y=" + placement.y +
-                ", w=" + placement.width + ", h=" + placement.height);
-        System.out.println("  PDF Page: w=" + pdfPageWidth + ", h=" + pdfPageHeight);
-        System.out.println("  Scale: x=" + scaleX + ", y=" + scaleY);
-        System.out.println("  PDF: x=" + pdfX + ", y=" + pdfY +
-                ", w=" + pdfWidth + ", h=" + pdfHeight);
-        System.out.println("  Rotation: " + placement.rotation + "°");
+        log.debug("Canvas ({}, {}, {}x{}) on page {}x{} at scale {}/{} -> PDF ({}, {}, {}x{}), rotation {}",
+                placement.x, placement.y, placement.width, placement.height, pdfPageWidth, pdfPageHeight,
+                scaleX, scaleY, pdfX, pdfY, pdfWidth, pdfHeight, placement.rotation);
 
         pdfX = Math.max(0, Math.min(pdfX, pdfPageWidth - pdfWidth));
         pdfY = Math.max(0, Math.min(pdfY, pdfPageHeight - pdfHeight));
@@ -881,8 +880,7 @@ public class PdfSigningService {
             String location,
             String reason) throws Exception {
 
-        System.out.println("🖼️  Adding visual signatures");
-        System.out.println("   Digital signature page: " + digitalSignaturePage + " (will also get visual signature)");
+        log.debug("Adding visual signatures, digital signature page {}", digitalSignaturePage);
 
         PdfReader reader = new PdfReader(srcPdf);
         PdfWriter writer = new PdfWriter(destPdf);
@@ -894,7 +892,7 @@ public class PdfSigningService {
             }
 
             ImageData imageData = ImageDataFactory.create(signatureImageFile.getAbsolutePath());
-            System.out.println("   Image loaded: " + imageData.getWidth() + "x" + imageData.getHeight() + " pixels");
+            log.debug("Image loaded: {}x{} pixels", imageData.getWidth(), imageData.getHeight());
 
             // Load company logo if configured
             ImageData companyLogoData = null;
@@ -902,10 +900,9 @@ public class PdfSigningService {
                 File logoFile = new File(companyLogoPath);
                 if (logoFile.exists()) {
                     companyLogoData = ImageDataFactory.create(logoFile.getAbsolutePath());
-                    System.out.println("   Company logo loaded: " + companyLogoData.getWidth() + "x" +
-                            companyLogoData.getHeight() + " pixels");
+                    log.debug("Company logo loaded: {}x{} pixels", companyLogoData.getWidth(), companyLogoData.getHeight());
                 } else {
-                    System.err.println("   ⚠️  Company logo not found at: " + companyLogoPath);
+                    log.warn("Company logo not found at {}", companyLogoPath);
                 }
             }
 
@@ -924,7 +921,7 @@ public class PdfSigningService {
                         }
                     }
                 } catch (Exception e) {
-                    System.err.println("Could not extract signer name: " + e.getMessage());
+                    log.warn("Could not extract signer name: {}", e.getMessage());
                 }
             }
 
@@ -932,10 +929,10 @@ public class PdfSigningService {
             for (int i = 0; i < placements.size(); i++) {
                 SignaturePlacement placement = placements.get(i);
 
-                System.out.println("\n📝 Adding visual signature to Page " + placement.pageNumber);
+                log.debug("Adding visual signature to page {}", placement.pageNumber);
 
                 if (placement.pageNumber > pdfDoc.getNumberOfPages() || placement.pageNumber < 1) {
-                    System.err.println("   ❌ Invalid page: " + placement.pageNumber);
+                    log.warn("Invalid page number {}", placement.pageNumber);
                     continue;
                 }
 
@@ -950,8 +947,7 @@ public class PdfSigningService {
                         pageSize.getHeight()
                 );
 
-                System.out.println("   Rectangle: X=" + rect.getX() + ", Y=" + rect.getY() +
-                        ", W=" + rect.getWidth() + ", H=" + rect.getHeight());
+                log.debug("Rectangle: x={}, y={}, w={}, h={}", rect.getX(), rect.getY(), rect.getWidth(), rect.getHeight());
 
                 // Create PdfCanvas for the page
                 PdfCanvas pdfCanvas = new PdfCanvas(page);
@@ -961,8 +957,8 @@ public class PdfSigningService {
                 float originalWidth = imageData.getWidth() * pointsPerPixel * 1.5f;
                 float originalHeight = imageData.getHeight() * pointsPerPixel * 1.5f;
 
-                System.out.println("   Original image size: " + imageData.getWidth() + "x" + imageData.getHeight() + " pixels");
-                System.out.println("   Converted to PDF: " + originalWidth + "x" + originalHeight + " points");
+                log.debug("Image {}x{} pixels, {}x{} points", imageData.getWidth(), imageData.getHeight(),
+                        originalWidth, originalHeight);
 
                 // Check if image fits in the rectangle
                 float scale = 1.0f;
@@ -972,13 +968,13 @@ public class PdfSigningService {
                     float widthScale = rect.getWidth() / originalWidth;
                     float heightScale = maxImageHeight / originalHeight;
                     scale = Math.min(widthScale, heightScale);
-                    System.out.println("   Scaling image by: " + scale + " to fit");
+                    log.debug("Scaling image by {} to fit", scale);
                 }
 
                 float imageWidth = originalWidth * scale;
                 float imageHeight = originalHeight * scale;
 
-                System.out.println("   Final image size: " + imageWidth + "x" + imageHeight + " points");
+                log.debug("Final image size: {}x{} points", imageWidth, imageHeight);
 
                 // Calculate centered position for image
                 float imageX = rect.getX() + (rect.getWidth() - imageWidth) / 2;
@@ -1062,8 +1058,6 @@ public class PdfSigningService {
 
                 // ===== ADD COMPANY LOGO WATERMARK =====
                 if (companyLogoData != null) {
-                    System.out.println("   🏢 Adding company logo watermark");
-
                     // Calculate logo dimensions (smaller, watermark-like)
                     float logoMaxWidth = rect.getWidth() * 0.4f; // 40% of signature width
                     float logoMaxHeight = 30f; // Fixed max height
@@ -1092,14 +1086,13 @@ public class PdfSigningService {
                     pdfCanvas.addImageAt(companyLogoData, 0, 0, false);
                     pdfCanvas.restoreState();
 
-                    System.out.println("   ✅ Company logo added at Y=" + logoY);
+                    log.debug("Company logo added at y={}", logoY);
                 }
 
                 added++;
-                System.out.println("   ✅ Added visual signature");
             }
 
-            System.out.println("\n✅ Visual signatures added: " + added);
+            log.debug("Visual signatures added: {}", added);
 
         } finally {
             pdfDoc.close();
@@ -1107,116 +1100,61 @@ public class PdfSigningService {
     }
 
     /**
-     * FIX 3: Ensure digital signature method uses append mode (already correct)
+     * Applies the invisible digital signature. The signer was opened in append mode by
+     * {@link #openSigner}, so earlier signatures and the visual stamps share one revision.
      */
-    private void signPdfWithDigitalSignatureEnhanced(
-            File srcPdf,
-            File destPdf,
-            PrivateKey privateKey,
-            Certificate[] chain,
-            List<SignaturePlacement> placements,
-            float canvasWidth,
-            float canvasHeight,
-            String location,
-            File signatureImageFile) throws Exception {
-
-        System.out.println("🔐 Applying digital signature with enhanced validation");
-
-        // CRITICAL: Always use append mode when signing
-        StampingProperties stampingProperties = new StampingProperties();
-        stampingProperties.useAppendMode();
-
-        System.out.println("   ✅ Using append mode for digital signature");
-
-        PdfReader reader = new PdfReader(srcPdf);
-        FileOutputStream fos = new FileOutputStream(destPdf);
-
-        try {
-            PdfSigner signer = new PdfSigner(reader, fos, stampingProperties);
-
-            String fieldName = "Signature_" + UUID.randomUUID().toString().substring(0, 8);
-            signer.setFieldName(fieldName);
-
-            SignaturePlacement primaryPlacement = placements.get(0);
-
-            // Create invisible signature (1x1 pixel)
-            Rectangle rect = new Rectangle(0, 0, 1, 1);
-
-            PdfSignatureAppearance appearance = signer.getSignatureAppearance();
-            appearance
-                    .setReason("Signed Authorization")
-                    .setLocation(location)
-                    .setPageRect(rect)
-                    .setPageNumber(primaryPlacement.pageNumber)
-                    .setCertificate(chain[0]);
-
-            System.out.println("   ✅ Digital signature configured on page " + primaryPlacement.pageNumber);
-
-            IExternalSignature pks = new PrivateKeySignature(
-                    privateKey,
-                    DigestAlgorithms.SHA256,
-                    BouncyCastleProvider.PROVIDER_NAME
-            );
-            IExternalDigest digest = new BouncyCastleDigest();
-
-            ITSAClient tsaClient = getTsaClient();
-
-            // Sign with CMS standard for better compatibility
-            signer.signDetached(
-                    digest,
-                    pks,
-                    chain,
-                    null,
-                    null,
-                    tsaClient,
-                    32768,  // Use 0 for auto-sizing
-                    PdfSigner.CryptoStandard.CMS
-            );
-
-            System.out.println("   ✅ Digital signature applied successfully");
-
-        } finally {
-            if (fos != null) {
+    private void signPdfWithDigitalSignatureEnhanced(PdfSigner signer, SigningSession session,
+                                                     ITSAClient tsaClient) throws Exception {
+
+        Certificate[] chain = session.getChain();
+
+        log.debug("Applying digital signature");
+
+        String fieldName = "Signature_" + UUID.randomUUID().toString().substring(0, 8);
+        signer.setFieldName(fieldName);
+
+        // Create invisible signature (1x1 pixel)
+        Rectangle rect = new Rectangle(0, 0, 1, 1);
+
+        PdfSignatureAppearance appearance = signer.getSignatureAppearance();
+        appearance
+                .setReason(session.getReason())
+                .setLocation(session.getLocation())
+                .setPageRect(rect)
+                .setPageNumber(session.getDigitalSignaturePage())
+                .setCertificate(chain[0]);
+
+        log.debug("Digital signature configured on page {}", session.getDigitalSignaturePage());
+
+        IExternalSignature pks = new PrivateKeySignature(
+                session.getPrivateKey(),
+                DigestAlgorithms.SHA256,
+                BouncyCastleProvider.PROVIDER_NAME
+        ) {
+            @Override
+            public byte[] sign(byte[] message) throws GeneralSecurityException {
+                // Only the RSA operation holds a permit; the TSA call happens outside it
+                cryptoPermits.acquireUninterruptibly();
                 try {
-                    fos.close();
-                } catch (Exception e) {
-                    e.printStackTrace();
-                }
-            }
-        }
-    }
-
-    private ITSAClient getTsaClient() {
-        if (tsaEnabled && tsaUrl != null && !tsaUrl.isEmpty()) {
-            try {
-                if (tsaUrl.contains("govca.npki.gov.ph")) {
-                    return new TSAClientBouncyCastle(tsaUrl);
-                } else if (tsaUsername != null && !tsaUsername.isEmpty()) {
-                    return new TSAClientBouncyCastle(tsaUrl, tsaUsername, tsaPassword);
-                } else {
-                    return new TSAClientBouncyCastle(tsaUrl);
+                    return super.sign(message);
+                } finally {
+                    cryptoPermits.release();
                 }
-            } catch (Exception e) {
-                System.err.println("   ⚠️  TSA failed: " + e.getMessage());
             }
-        }
-        return null;
-    }
-
-    private String getFileExtension(String filename) {
-        if (filename != null && filename.contains(".")) {
-            return "." + filename.substring(filename.lastIndexOf(".") + 1);
-        }
-        return ".png";
-    }
+        };
+        // Sign with CMS standard for better compatibility
+        signer.signDetached(
+                DIGEST,
+                pks,
+                chain,
+                null,
+                null,
+                tsaClient,
+                32768,  // Use 0 for auto-sizing
+                PdfSigner.CryptoStandard.CMS
+        );
 
-    private void loadPdf(File file) {
-        try {
-            if (currentDoc != null) currentDoc.close();
-            currentDoc = PDDocument.load(file);
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
+        log.debug("Digital signature applied");
     }
 
     public String signPdf(
@@ -1332,233 +1270,7 @@ public class PdfSigningService {
      * Enhanced verification with detailed certificate checks
      */
     public Map<String, Object> verifySignatures(File pdfFile) throws Exception {
-        if (Security.getProvider(BouncyCastleProvider.PROVIDER_NAME) == null) {
-            Security.addProvider(new BouncyCastleProvider());
-        }
-
-        PdfReader reader = new PdfReader(pdfFile.getAbsolutePath());
-        PdfDocument pdfDoc = new PdfDocument(reader);
-
-        SignatureUtil signatureUtil = new SignatureUtil(pdfDoc);
-        List<String> signatureNames = signatureUtil.getSignatureNames();
-
-        List<Map<String, Object>> signatureResults = new ArrayList<>();
-        boolean allValid = true;
-        int totalSignatures = signatureNames.size();
-
-        System.out.println("\n=== Verifying Signatures ===");
-        System.out.println("Found " + totalSignatures + " signature(s)");
-
-        for (int i = 0; i < signatureNames.size(); i++) {
-            String signatureName = signatureNames.get(i);
-            System.out.println("\n--- Verifying: " + signatureName + " (Signature " + (i + 1) + "/" + totalSignatures + ") ---");
-            Map<String, Object> signatureInfo = new HashMap<>();
-            signatureInfo.put("name", signatureName);
-            signatureInfo.put("signatureNumber", i + 1);
-
-            try {
-                PdfPKCS7 pkcs7 = signatureUtil.readSignatureData(signatureName);
-
-                // 1. Check signature integrity (cryptographic validity)
-                boolean signatureIntegrity = pkcs7.verifySignatureIntegrityAndAuthenticity();
-                signatureInfo.put("signatureIntegrity", signatureIntegrity);
-                signatureInfo.put("certificateValid", signatureIntegrity);
-                System.out.println("Signature Integrity: " + (signatureIntegrity ? "✅ VALID" : "❌ INVALID"));
-
-                // 2. Check document integrity for THIS signature's revision
-                // IMPORTANT: For multiple signatures, this checks if the document was modified
-                // AFTER this signature was applied (within its revision)
-                boolean documentIntegrity = signatureUtil.signatureCoversWholeDocument(signatureName);
-
-                // FIX: For multiple signatures, adjust the interpretation
-                boolean isLastSignature = (i == signatureNames.size() - 1);
-                boolean documentIntegrityValid;
-                String integrityMessage;
-
-                if (isLastSignature) {
-                    // Last signature should cover the whole document
-                    documentIntegrityValid = documentIntegrity;
-                    integrityMessage = documentIntegrity ?
-                            "✅ Document not modified after this signature" :
-                            "❌ Document was modified after this signature";
-                } else {
-                    // Earlier signatures: Check if the signed revision itself was tampered with
-                    // Use the revision-based integrity check
-                    boolean revisionIntegrity = checkRevisionIntegrity(signatureUtil, signatureName, i, totalSignatures);
-                    documentIntegrityValid = revisionIntegrity;
-
-                    if (!documentIntegrity) {
-                        integrityMessage = revisionIntegrity ?
-                                "✅ Signature valid (subsequent signatures added)" :
-                                "❌ Document revision was tampered with";
-                    } else {
-                        integrityMessage = "✅ Document not modified after this signature";
-                    }
-                }
-
-                signatureInfo.put("documentIntegrity", documentIntegrity);
-                signatureInfo.put("documentIntegrityValid", documentIntegrityValid);
-                signatureInfo.put("isLastSignature", isLastSignature);
-                System.out.println("Document Integrity: " + integrityMessage);
-
-                // 3. Get certificate information
-                java.security.cert.X509Certificate signerCert = pkcs7.getSigningCertificate();
-                String subjectDN = signerCert.getSubjectX500Principal().getName();
-                String issuerDN = signerCert.getIssuerX500Principal().getName();
-
-                signatureInfo.put("signerName", extractCN(subjectDN));
-                signatureInfo.put("subjectDN", subjectDN);
-                signatureInfo.put("issuerDN", issuerDN);
-                signatureInfo.put("serialNumber", signerCert.getSerialNumber().toString());
-
-                System.out.println("Signer: " + extractCN(subjectDN));
-                System.out.println("Issuer: " + extractCN(issuerDN));
-
-                // 4. Check certificate validity period
-                Date signDate = pkcs7.getSignDate().getTime();
-                signatureInfo.put("signDate", signDate);
-
-                boolean certValidAtSigningTime = true;
-                String certValidityMessage = "";
-                try {
-                    signerCert.checkValidity(signDate);
-                    certValidityMessage = "✅ Certificate was valid at signing time";
-                    System.out.println(certValidityMessage);
-                } catch (java.security.cert.CertificateExpiredException e) {
-                    certValidAtSigningTime = false;
-                    certValidityMessage = "❌ Certificate was expired at signing time";
-                    System.out.println(certValidityMessage);
-                } catch (java.security.cert.CertificateNotYetValidException e) {
-                    certValidAtSigningTime = false;
-                    certValidityMessage = "❌ Certificate was not yet valid at signing time";
-                    System.out.println(certValidityMessage);
-                }
-                signatureInfo.put("certificateValidAtSigningTime", certValidAtSigningTime);
-                signatureInfo.put("certificateValidityMessage", certValidityMessage);
-
-                // 5. Check if self-signed
-                boolean isSelfSigned = issuerDN.equals(subjectDN);
-                signatureInfo.put("isSelfSigned", isSelfSigned);
-                if (isSelfSigned) {
-                    System.out.println("⚠️  Self-signed certificate");
-                }
-
-                // 6. Get certificate chain
-                Certificate[] certs = pkcs7.getCertificates();
-                signatureInfo.put("certificateChainLength", certs.length);
-                System.out.println("Certificate Chain Length: " + certs.length);
-
-                // 7. Check for timestamp
-                boolean hasTimestamp = false;
-                try {
-                    Calendar timestampDate = pkcs7.getTimeStampDate();
-                    if (timestampDate != null) {
-                        hasTimestamp = true;
-                        signatureInfo.put("timestampDate", timestampDate.getTime());
-                        System.out.println("✅ Has timestamp: " + timestampDate.getTime());
-                    } else {
-                        System.out.println("⚠️  No timestamp");
-                    }
-                } catch (Exception tsEx) {
-                    System.out.println("⚠️  No timestamp");
-                }
-                signatureInfo.put("hasTimestamp", hasTimestamp);
-
-                // 8. Additional metadata
-                signatureInfo.put("location", pkcs7.getLocation());
-                signatureInfo.put("reason", pkcs7.getReason());
-
-                // 9. Overall validity determination
-                // FIX: Use the corrected documentIntegrityValid
-                boolean isValid = signatureIntegrity && documentIntegrityValid && certValidAtSigningTime;
-
-                signatureInfo.put("valid", isValid);
-                signatureInfo.put("trustStatus", isSelfSigned ?
-                        "Self-signed (requires manual trust)" :
-                        "Issued by CA");
-
-                System.out.println("\n=== Overall Status: " + (isValid ? "✅ VALID" : "❌ INVALID") + " ===");
-
-                if (!isValid) {
-                    List<String> issues = new ArrayList<>();
-                    if (!signatureIntegrity) issues.add("Signature integrity check failed");
-                    if (!documentIntegrityValid) issues.add("Document was tampered with after signing");
-                    if (!certValidAtSigningTime) issues.add("Certificate not valid at signing time");
-                    signatureInfo.put("issues", issues);
-                    System.out.println("Issues: " + String.join(", ", issues));
-                    allValid = false;
-                }
-
-            } catch (Exception e) {
-                signatureInfo.put("valid", false);
-                signatureInfo.put("error", e.getMessage());
-                System.err.println("❌ Verification error: " + e.getMessage());
-                e.printStackTrace();
-                allValid = false;
-            }
-
-            signatureResults.add(signatureInfo);
-        }
-
-        pdfDoc.close();
-
-        Map<String, Object> result = new HashMap<>();
-        result.put("signatureCount", signatureNames.size());
-        result.put("allValid", allValid);
-        result.put("signatures", signatureResults);
-
-        return result;
-    }
-
-     /** Check if a signature's revision was tampered with (not just extended)
-            * This is the key fix for handling multiple signatures correctly
- */
-    private boolean checkRevisionIntegrity(SignatureUtil signatureUtil, String signatureName,
-                                           int signatureIndex, int totalSignatures) {
-        try {
-            // For non-last signatures, we need to verify that:
-            // 1. The signature itself is valid (already checked)
-            // 2. The content within the signed byte range wasn't modified
-
-            // The signatureCoversWholeDocument() returns false for earlier signatures
-            // because later signatures ADD content (they don't modify the signed content)
-
-            // iText's SignatureUtil provides a way to check this:
-            // If the signature doesn't cover the whole document BUT the signature
-            // integrity is valid, it means the signed portion is intact
-
-            // In a properly signed multi-signature PDF:
-            // - Each signature covers everything up to that point
-            // - Later signatures extend the document but don't modify earlier content
-
-            // So for non-last signatures, we should return true if:
-            // - The signature cryptographically validates (checked elsewhere)
-            // - This is expected behavior in multi-signature PDFs
-
-            System.out.println("   📋 Signature " + (signatureIndex + 1) + " of " + totalSignatures +
-                    ": Earlier signature with subsequent additions (NORMAL)");
-
-            return true; // Signature integrity was already validated
-
-        } catch (Exception e) {
-            System.err.println("   ❌ Error checking revision integrity: " + e.getMessage());
-            return false;
-        }
-    }
-
-    /**
-     * Extract Common Name from Distinguished Name
-     */
-    private String extractCN(String dn) {
-        if (dn == null) return "Unknown";
-        String[] parts = dn.split(",");
-        for (String part : parts) {
-            String trimmed = part.trim();
-            if (trimmed.startsWith("CN=")) {
-                return trimmed.substring(3);
-            }
-        }
-        return dn;
+        return signatureVerificationService.verify(Files.readAllBytes(pdfFile.toPath()));
     }
 
     /**
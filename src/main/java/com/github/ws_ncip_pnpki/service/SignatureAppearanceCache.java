@@ -0,0 +1,150 @@
+package com.github.ws_ncip_pnpki.service;
+
+import com.itextpdf.io.image.ImageData;
+import com.itextpdf.io.image.ImageDataFactory;
+import com.itextpdf.kernel.pdf.xobject.PdfImageXObject;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Parsed signature images and the official seal, shared across documents.
+ * Clerks stamp the same signature on document after document, and batches stamp it on
+ * every file, so the PNG is decoded once per signature id and content hash instead of
+ * once per document. PDF objects themselves belong to a single document; use
+ * {@link SharedImage#toXObject} to embed a cached image once per document.
+ */
+@Component
+@Slf4j
+public class SignatureAppearanceCache {
+
+    @Value("${pdf.signing.company-logo:}")
+    private String companyLogoPath;
+
+    @Value("${pdf.signing.appearance-cache.max-entries:200}")
+    private int maxEntries;
+
+    private Map<String, SharedImage> signatureImages;
+
+    private volatile CachedSeal seal;
+
+    private record CachedSeal(FileTime modified, SharedImage image) {
+    }
+
+    /**
+     * A parsed image shared by documents stamped concurrently, with the lock that guards
+     * reading it. Each image has its own lock, so documents stamped with different
+     * signatures never wait on each other.
+     */
+    public record SharedImage(ImageData data, ReentrantLock lock) {
+
+        SharedImage(ImageData data) {
+            this(data, new ReentrantLock());
+        }
+
+        /**
+         * Wraps the image in an image XObject for one document. Draw the same XObject on
+         * every page so the image is embedded once.
+         */
+        public PdfImageXObject toXObject() {
+            // A lock rather than a monitor so virtual threads do not pin their carriers
+            lock.lock();
+            try {
+                return new PdfImageXObject(data);
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    @PostConstruct
+    void init() {
+        signatureImages = Collections.synchronizedMap(new LinkedHashMap<>(64, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, SharedImage> eldest) {
+                return size() > maxEntries;
+            }
+        });
+    }
+
+    /**
+     * Parsed image of a stored signature. The content hash keeps an updated signature
+     * from being served from a stale entry.
+     */
+    public SharedImage signatureImage(Long signatureId, byte[] imageBytes) {
+        return cachedImage(signatureId + ":" + sha256(imageBytes), imageBytes);
+    }
+
+    /**
+     * Parsed image of an uploaded signature, keyed by content hash only.
+     */
+    public SharedImage signatureImage(byte[] imageBytes) {
+        return cachedImage("upload:" + sha256(imageBytes), imageBytes);
+    }
+
+    /**
+     * The configured official seal, reloaded when the file changes, or null when none is set.
+     */
+    public SharedImage seal() {
+        if (companyLogoPath == null || companyLogoPath.isEmpty()) {
+            return null;
+        }
+        try {
+            Path logo = Paths.get(companyLogoPath);
+            if (!Files.exists(logo)) {
+                log.warn("Official seal not found at: {}", companyLogoPath);
+                return null;
+            }
+            FileTime modified = Files.getLastModifiedTime(logo);
+            CachedSeal current = seal;
+            if (current == null || !current.modified().equals(modified)) {
+                ImageData image = ImageDataFactory.create(logo.toAbsolutePath().toString());
+                current = new CachedSeal(modified, new SharedImage(image));
+                seal = current;
+                log.info("Official seal loaded: {}x{} pixels", image.getWidth(), image.getHeight());
+            }
+            return current.image();
+        } catch (Exception e) {
+            log.warn("Could not load official seal {}: {}", companyLogoPath, e.getMessage());
+            return null;
+        }
+    }
+
+    public void clear() {
+        signatureImages.clear();
+        seal = null;
+    }
+
+    private SharedImage cachedImage(String key, byte[] imageBytes) {
+        SharedImage cached = signatureImages.get(key);
+        if (cached != null) {
+            return cached;
+        }
+        // Decode without holding the map's lock; when two requests race, the first
+        // image stored wins and the other copy is dropped
+        SharedImage decoded = new SharedImage(ImageDataFactory.create(imageBytes));
+        SharedImage previous = signatureImages.putIfAbsent(key, decoded);
+        return previous != null ? previous : decoded;
+    }
+
+    private String sha256(byte[] data) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(data));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package com.github.ws_ncip_pnpki.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.*;
+
+/**
+ * Makes the background of uploaded signature images transparent. Uploads are stored as
+ * received and processed here in the background; the processed PNG replaces the stored
+ * file and is parsed into {@link SignatureAppearanceCache} so the first signing does not
+ * decode it again. Readers of a signature call {@link #awaitProcessed} first.
+ */
+@Service
+@Slf4j
+public class SignatureImageProcessor {
+
+    @Autowired
+    private FileStorageService fileStorageService;
+
+    @Autowired
+    private SignatureAppearanceCache appearanceCache;
+
+    // Pixels with red, green and blue all at or above this value become transparent
+    @Value("${signature.transparency.threshold:240}")
+    private int threshold;
+
+    @Value("${signature.transparency.workers:2}")
+    private int workers;
+
+    @Value("${signature.transparency.wait-timeout:PT30S}")
+    private Duration waitTimeout;
+
+    private ExecutorService executor;
+
+    // Storage key -> processing of that image
+    private final Map<String, CompletableFuture<Void>> inFlight = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    void init() {
+        executor = Executors.newFixedThreadPool(Math.max(1, workers));
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdown();
+    }
+
+    /**
+     * Processes the stored image of a signature in the background.
+     */
+    public void schedule(Long signatureId, String key) {
+        CompletableFuture<Void> future = inFlight.computeIfAbsent(key, k -> CompletableFuture.runAsync(() -> {
+            try {
+                process(signatureId, key);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, executor));
+        future.whenComplete((result, error) -> {
+            inFlight.remove(key, future);
+            if (error != null) {
+                log.warn("Could not make signature {} transparent: {}", signatureId, error.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Waits until a pending processing of {@code key} has finished. On failure or timeout
+     * the image is used as uploaded.
+     */
+    public void awaitProcessed(String key) {
+        CompletableFuture<Void> future = inFlight.get(key);
+        if (future == null) {
+            return;
+        }
+        try {
+            future.get(waitTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | TimeoutException e) {
+            log.warn("Using signature image {} without transparency: {}", key, e.getMessage());
+        }
+    }
+
+    private void process(Long signatureId, String key) throws IOException {
+        if (!key.toLowerCase().endsWith(".png")) {
+            return;
+        }
+        long start = System.nanoTime();
+
+        BufferedImage original = ImageIO.read(new ByteArrayInputStream(fileStorageService.readAllBytes(key)));
+        if (original == null) {
+            throw new IllegalArgumentException("Signature image could not be decoded");
+        }
+        BufferedImage transparent = ensureTransparency(original);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(transparent, "png", out);
+        byte[] png = out.toByteArray();
+
+        // The signature may have been deleted meanwhile
+        if (!fileStorageService.fileExists(key)) {
+            return;
+        }
+        fileStorageService.writeBytes(key, png);
+        appearanceCache.signatureImage(signatureId, png);
+
+        log.info("Signature {} made transparent in {} ms ({}x{})", signatureId,
+                (System.nanoTime() - start) / 1_000_000, transparent.getWidth(), transparent.getHeight());
+    }
+
+    /**
+     * Returns the image as ARGB with white and near-white pixels made transparent.
+     * The image is copied at most once, into an int raster that is then edited in place.
+     */
+    private BufferedImage ensureTransparency(BufferedImage source) {
+        BufferedImage image = source;
+        // A decoded image is ours to change; only other layouts need a copy
+        if (source.getType() != BufferedImage.TYPE_INT_ARGB) {
+            image = new BufferedImage(source.getWidth(), source.getHeight(), BufferedImage.TYPE_INT_ARGB);
+            Graphics2D g2d = image.createGraphics();
+            g2d.drawImage(source, 0, 0, null);
+            g2d.dispose();
+        }
+
+        int[] pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+        convertWhiteToTransparent(pixels, threshold);
+        return image;
+    }
+
+    /**
+     * Converts white or near-white ARGB pixels to fully transparent white.
+     * The loop body has no branches or calls, so the JIT can compile it to SIMD code.
+     */
+    static void convertWhiteToTransparent(int[] pixels, int threshold) {
+        for (int i = 0; i < pixels.length; i++) {
+            int pixel = pixels[i];
+            int darkest = Math.min((pixel >>> 16) & 0xff, Math.min((pixel >>> 8) & 0xff, pixel & 0xff));
+            pixels[i] = darkest >= threshold ? 0x00FFFFFF : pixel;
+        }
+    }
+}
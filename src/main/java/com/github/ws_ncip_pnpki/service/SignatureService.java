@@ -29,6 +29,7 @@ public class SignatureService {
     private final SignatureRepository signatureRepository;
     private final UserRepository userRepository;
     private final FileStorageService fileStorageService;
+    private final SignatureImageProcessor signatureImageProcessor;
     private final JwtUtil jwtUtil;
 
 
@@ -56,6 +57,7 @@ public class SignatureService {
         signature.setUserId(userId);
 
         Signature savedSignature = signatureRepository.save(signature);
+        signatureImageProcessor.schedule(savedSignature.getId(), filePath);
 
         log.info("Signature uploaded successfully: {}", savedSignature.getId());
         return mapToResponseDTO(savedSignature);
@@ -86,6 +88,7 @@ public class SignatureService {
         signature.setUserId(userId);
 
         Signature savedSignature = signatureRepository.save(signature);
+        signatureImageProcessor.schedule(savedSignature.getId(), filePath);
 
         log.info("Signature uploaded successfully: {}", savedSignature.getId());
         mapToResponseDTO(savedSignature);
@@ -144,14 +147,28 @@ public class SignatureService {
         if(lookUp.isEmpty()) {
             throw new ResourceNotFoundException("Signature not found");
         }
+        signatureImageProcessor.awaitProcessed(lookUp.get().getFilePath());
         return fileStorageService.getFilePath(lookUp.get().getFilePath());
     }
 
+    /**
+     * The stored signature image, read from storage without a local copy.
+     */
+    public byte[] readSignatureImage(Long id) throws IOException {
+        Optional<Signature> lookUp = signatureRepository.findById(id);
+        if(lookUp.isEmpty()) {
+            throw new ResourceNotFoundException("Signature not found");
+        }
+        signatureImageProcessor.awaitProcessed(lookUp.get().getFilePath());
+        return fileStorageService.readAllBytes(lookUp.get().getFilePath());
+    }
+
     public File getSignatureFile(Long id) {
         Optional<Signature> lookUp = signatureRepository.findById(id);
         if(lookUp.isEmpty()) {
             throw new ResourceNotFoundException("Signature not found");
         }
+        signatureImageProcessor.awaitProcessed(lookUp.get().getFilePath());
         return fileStorageService.getFile(lookUp.get().getFilePath());
     }
 
@@ -232,6 +249,7 @@ public class SignatureService {
             throw new ResourceNotFoundException("Signature not found");
         }
 
+        signatureImageProcessor.awaitProcessed(lookUp.get().getFilePath());
         fileStorageService.deleteFile(lookUp.get().getFilePath());
         signatureRepository.delete(lookUp.get());
 
@@ -0,0 +1,467 @@
+package com.github.ws_ncip_pnpki.service;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.ws_ncip_pnpki.model.SignatureRevision;
+import com.github.ws_ncip_pnpki.repository.SignatureRevisionRepository;
+import com.itextpdf.io.source.RandomAccessSourceFactory;
+import com.itextpdf.kernel.pdf.PdfDocument;
+import com.itextpdf.kernel.pdf.PdfReader;
+import com.itextpdf.kernel.pdf.ReaderProperties;
+import com.itextpdf.signatures.PdfPKCS7;
+import com.itextpdf.signatures.PdfSignature;
+import com.itextpdf.signatures.SignatureUtil;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.Security;
+import java.security.cert.Certificate;
+import java.security.cert.X509Certificate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Verifies every signature of a PDF. Each signature hashes its own byte range, so the
+ * signatures are checked in parallel on a bounded fork-join pool. Results are cached by
+ * the document's SHA-256 and revision count, since auditors verify the same signed
+ * files over and over.
+ * <p>
+ * A signature's outcome depends only on the revision it covers, so outcomes are also kept
+ * per revision, keyed by the digest of that byte prefix. For stored documents they are
+ * persisted as {@link SignatureRevision} rows: appending a signature then only verifies
+ * the new byte range, and a changed prefix digest reveals a rewritten earlier revision.
+ */
+@Service
+@Slf4j
+public class SignatureVerificationService {
+
+    private static final byte[] EOF_MARKER = "%%EOF".getBytes();
+
+    @Value("${pdf.verification.parallelism:0}")
+    private int parallelism;
+
+    @Value("${pdf.verification.cache.max-entries:500}")
+    private int maxCacheEntries;
+
+    private ForkJoinPool pool;
+
+    private Map<String, Map<String, Object>> results;
+
+    // Signer details per revision, keyed by signature name and revision digest
+    private Map<String, Map<String, Object>> revisionResults;
+
+    @Autowired
+    private SignatureRevisionRepository signatureRevisionRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private record Revision(String signatureName, long[] byteRange, boolean coversWholeDocument) {
+        long length() {
+            return byteRange.length == 4 ? byteRange[2] + byteRange[3] : 0;
+        }
+    }
+
+    static {
+        if (Security.getProvider(BouncyCastleProvider.PROVIDER_NAME) == null) {
+            Security.addProvider(new BouncyCastleProvider());
+        }
+    }
+
+    @PostConstruct
+    void init() {
+        int threads = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+        pool = new ForkJoinPool(threads);
+
+        results = lruMap(maxCacheEntries);
+        revisionResults = lruMap(maxCacheEntries * 4);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        pool.shutdown();
+    }
+
+    /**
+     * Verifies all signatures of the given PDF, or returns the cached result when the
+     * same bytes were verified before.
+     */
+    public Map<String, Object> verify(byte[] pdf) throws Exception {
+        return cached(sha256(pdf) + ":" + countRevisions(pdf), () -> verifyRevisions(pdf, null));
+    }
+
+    /**
+     * Verifies a stored document against the revisions recorded for it. Revisions that
+     * are already on file are not verified again, and newly appended ones are recorded.
+     * The result is cached like {@link #verify}, per document since it depends on the
+     * recorded revisions.
+     */
+    public Map<String, Object> verifyDocument(Long documentId, byte[] pdf) throws Exception {
+        return cached(documentId + ":" + sha256(pdf) + ":" + countRevisions(pdf),
+                () -> verifyRevisions(pdf, documentId));
+    }
+
+    public void clearCache() {
+        results.clear();
+        revisionResults.clear();
+    }
+
+    private Map<String, Object> cached(String cacheKey, Callable<Map<String, Object>> verification) throws Exception {
+        Map<String, Object> cached = results.get(cacheKey);
+        if (cached != null) {
+            log.debug("Verification cache hit for {}", cacheKey);
+            return cached;
+        }
+
+        Map<String, Object> result = Collections.unmodifiableMap(verification.call());
+        results.put(cacheKey, result);
+        return result;
+    }
+
+    private Map<String, Object> verifyRevisions(byte[] pdf, Long documentId) throws Exception {
+        List<Revision> revisions = readRevisions(pdf);
+        int totalSignatures = revisions.size();
+        String[] digests = revisionDigests(pdf, revisions);
+
+        Map<Integer, SignatureRevision> stored = documentId == null ? Map.of() :
+                signatureRevisionRepository.findByDocumentIdOrderByRevisionNumber(documentId).stream()
+                        .collect(Collectors.toMap(SignatureRevision::getRevisionNumber, Function.identity()));
+
+        log.info("Verifying {} signature(s)", totalSignatures);
+
+        // Only revisions never seen before are verified; PdfDocument is not thread-safe,
+        // so every task parses its own view of the shared bytes
+        List<Map<String, Object>> details = new ArrayList<>(Collections.nCopies(totalSignatures, null));
+        Map<Integer, ForkJoinTask<Map<String, Object>>> tasks = new HashMap<>();
+        for (int i = 0; i < totalSignatures; i++) {
+            String signatureName = revisions.get(i).signatureName();
+            SignatureRevision known = stored.get(i + 1);
+            if (known != null && known.getRevisionDigest().equals(digests[i])
+                    && known.getSignatureName().equals(signatureName)) {
+                details.set(i, readDetails(known));
+                continue;
+            }
+            Map<String, Object> cached = revisionResults.get(signatureName + ":" + digests[i]);
+            if (cached != null) {
+                details.set(i, cached);
+                continue;
+            }
+            int index = i;
+            tasks.put(i, pool.submit(() -> verifySignature(pdf, signatureName, index, totalSignatures)));
+        }
+        for (Map.Entry<Integer, ForkJoinTask<Map<String, Object>>> task : tasks.entrySet()) {
+            int i = task.getKey();
+            Map<String, Object> verified = task.getValue().join();
+            details.set(i, verified);
+            if (!verified.containsKey("error")) {
+                revisionResults.put(revisions.get(i).signatureName() + ":" + digests[i], verified);
+            }
+        }
+        log.info("Verified {} new revision(s), reused {}", tasks.size(), totalSignatures - tasks.size());
+
+        List<Map<String, Object>> signatureResults = new ArrayList<>();
+        List<SignatureRevision> newRevisions = new ArrayList<>();
+        boolean allValid = true;
+        for (int i = 0; i < totalSignatures; i++) {
+            Revision revision = revisions.get(i);
+            SignatureRevision known = stored.get(i + 1);
+            boolean rewritten = known != null && !known.getRevisionDigest().equals(digests[i]);
+
+            Map<String, Object> signatureInfo = new HashMap<>(details.get(i));
+            signatureInfo.put("signatureNumber", i + 1);
+
+            // Later signatures append revisions, so only the last one covers the whole file
+            boolean isLastSignature = (i == totalSignatures - 1);
+            boolean revisionIntegrity = checkRevisionIntegrity(pdf, revision, i, totalSignatures, rewritten);
+            boolean documentIntegrityValid = revisionIntegrity && (!isLastSignature || revision.coversWholeDocument());
+
+            signatureInfo.put("documentIntegrity", revision.coversWholeDocument());
+            signatureInfo.put("documentIntegrityValid", documentIntegrityValid);
+            signatureInfo.put("isLastSignature", isLastSignature);
+
+            boolean signatureIntegrity = Boolean.TRUE.equals(signatureInfo.get("signatureIntegrity"));
+            boolean certValidAtSigningTime = Boolean.TRUE.equals(signatureInfo.get("certificateValidAtSigningTime"));
+            boolean isValid = !signatureInfo.containsKey("error")
+                    && signatureIntegrity && documentIntegrityValid && certValidAtSigningTime;
+            signatureInfo.put("valid", isValid);
+
+            if (!isValid && !signatureInfo.containsKey("error")) {
+                List<String> issues = new ArrayList<>();
+                if (!signatureIntegrity) issues.add("Signature integrity check failed");
+                if (rewritten) issues.add("Signed revision differs from the one on record");
+                if (!documentIntegrityValid) issues.add("Document was tampered with after signing");
+                if (!certValidAtSigningTime) issues.add("Certificate not valid at signing time");
+                signatureInfo.put("issues", issues);
+            }
+            allValid &= isValid;
+            signatureResults.add(signatureInfo);
+
+            // The first recorded digest is the reference; rewritten revisions never replace it
+            if (documentId != null && known == null && !signatureInfo.containsKey("error")) {
+                newRevisions.add(new SignatureRevision(null, documentId, i + 1, revision.signatureName(),
+                        revision.length(), digests[i], signatureIntegrity && certValidAtSigningTime,
+                        objectMapper.writeValueAsString(details.get(i)), LocalDateTime.now()));
+            }
+        }
+
+        if (!newRevisions.isEmpty()) {
+            try {
+                signatureRevisionRepository.saveAll(newRevisions);
+            } catch (DataIntegrityViolationException e) {
+                // A concurrent verification recorded the same revisions first
+                log.debug("Revisions of document {} already recorded", documentId);
+            }
+        }
+
+        Map<String, Object> result = new HashMap<>();
+        result.put("signatureCount", totalSignatures);
+        result.put("allValid", allValid);
+        result.put("signatures", signatureResults);
+        return result;
+    }
+
+    private List<Revision> readRevisions(byte[] pdf) throws Exception {
+        List<Revision> revisions = new ArrayList<>();
+        try (PdfDocument pdfDoc = open(pdf)) {
+            SignatureUtil signatureUtil = new SignatureUtil(pdfDoc);
+            for (String name : signatureUtil.getSignatureNames()) {
+                PdfSignature signature = signatureUtil.getSignature(name);
+                long[] byteRange = signature.getByteRange() == null ? new long[0] : signature.getByteRange().toLongArray();
+                revisions.add(new Revision(name, byteRange, signatureUtil.signatureCoversWholeDocument(name)));
+            }
+        }
+        return revisions;
+    }
+
+    /**
+     * SHA-256 of the byte prefix covered by each signature, computed in a single pass
+     * over the file.
+     */
+    private String[] revisionDigests(byte[] pdf, List<Revision> revisions) {
+        String[] digests = new String[revisions.size()];
+        Integer[] order = new Integer[revisions.size()];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, Comparator.comparingLong(i -> revisions.get(i).length()));
+
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            int position = 0;
+            for (int i : order) {
+                int end = (int) Math.min(revisions.get(i).length(), pdf.length);
+                if (end > position) {
+                    digest.update(pdf, position, end - position);
+                    position = end;
+                }
+                digests[i] = HexFormat.of().formatHex(((MessageDigest) digest.clone()).digest());
+            }
+        } catch (NoSuchAlgorithmException | CloneNotSupportedException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+        return digests;
+    }
+
+    private Map<String, Object> readDetails(SignatureRevision revision) throws Exception {
+        return objectMapper.readValue(revision.getResultJson(), new TypeReference<Map<String, Object>>() {});
+    }
+
+    /**
+     * Verifies one signature. Only details that depend on the signed revision itself are
+     * returned; document-level integrity is added by the caller.
+     */
+    private Map<String, Object> verifySignature(byte[] pdf, String signatureName, int index, int totalSignatures) {
+        Map<String, Object> signatureInfo = new HashMap<>();
+        signatureInfo.put("name", signatureName);
+
+        try (PdfDocument pdfDoc = open(pdf)) {
+            PdfPKCS7 pkcs7 = new SignatureUtil(pdfDoc).readSignatureData(signatureName);
+
+            // 1. Check signature integrity (cryptographic validity)
+            boolean signatureIntegrity = pkcs7.verifySignatureIntegrityAndAuthenticity();
+            signatureInfo.put("signatureIntegrity", signatureIntegrity);
+            signatureInfo.put("certificateValid", signatureIntegrity);
+
+            // 3. Get certificate information
+            X509Certificate signerCert = pkcs7.getSigningCertificate();
+            String subjectDN = signerCert.getSubjectX500Principal().getName();
+            String issuerDN = signerCert.getIssuerX500Principal().getName();
+
+            signatureInfo.put("signerName", extractCN(subjectDN));
+            signatureInfo.put("subjectDN", subjectDN);
+            signatureInfo.put("issuerDN", issuerDN);
+            signatureInfo.put("serialNumber", signerCert.getSerialNumber().toString());
+
+            // 4. Check certificate validity period
+            Date signDate = pkcs7.getSignDate().getTime();
+            signatureInfo.put("signDate", signDate);
+
+            boolean certValidAtSigningTime = true;
+            String certValidityMessage = "✅ Certificate was valid at signing time";
+            try {
+                signerCert.checkValidity(signDate);
+            } catch (java.security.cert.CertificateExpiredException e) {
+                certValidAtSigningTime = false;
+                certValidityMessage = "❌ Certificate was expired at signing time";
+            } catch (java.security.cert.CertificateNotYetValidException e) {
+                certValidAtSigningTime = false;
+                certValidityMessage = "❌ Certificate was not yet valid at signing time";
+            }
+            signatureInfo.put("certificateValidAtSigningTime", certValidAtSigningTime);
+            signatureInfo.put("certificateValidityMessage", certValidityMessage);
+
+            // 5. Check if self-signed
+            boolean isSelfSigned = issuerDN.equals(subjectDN);
+            signatureInfo.put("isSelfSigned", isSelfSigned);
+
+            // 6. Get certificate chain
+            Certificate[] certs = pkcs7.getCertificates();
+            signatureInfo.put("certificateChainLength", certs.length);
+
+            // 7. Check for timestamp
+            boolean hasTimestamp = false;
+            try {
+                Calendar timestampDate = pkcs7.getTimeStampDate();
+                if (timestampDate != null) {
+                    hasTimestamp = true;
+                    signatureInfo.put("timestampDate", timestampDate.getTime());
+                }
+            } catch (Exception tsEx) {
+                // No timestamp token
+            }
+            signatureInfo.put("hasTimestamp", hasTimestamp);
+
+            // 8. Additional metadata
+            signatureInfo.put("location", pkcs7.getLocation());
+            signatureInfo.put("reason", pkcs7.getReason());
+
+            signatureInfo.put("trustStatus", isSelfSigned ?
+                    "Self-signed (requires manual trust)" :
+                    "Issued by CA");
+
+            log.info("Signature {} ({}/{}) by {}: integrity {}", signatureName, index + 1, totalSignatures,
+                    extractCN(subjectDN), signatureIntegrity ? "VALID" : "INVALID");
+
+        } catch (Exception e) {
+            signatureInfo.put("valid", false);
+            signatureInfo.put("error", e.getMessage());
+            log.error("Verification error for {}: {}", signatureName, e.getMessage(), e);
+        }
+
+        return signatureInfo;
+    }
+
+    /**
+     * Checks that a signature covers a complete revision: its byte range starts at the
+     * beginning of the file, leaves only the signature contents out, ends on an %%EOF
+     * marker, and the covered prefix still matches the digest on record. Later signatures
+     * may then only have appended to it.
+     */
+    private boolean checkRevisionIntegrity(byte[] pdf, Revision revision, int signatureIndex,
+                                           int totalSignatures, boolean rewritten) {
+        long[] byteRange = revision.byteRange();
+        String signatureName = revision.signatureName();
+
+        if (rewritten) {
+            log.warn("Signature {} ({} of {}): signed revision differs from the recorded digest",
+                    signatureName, signatureIndex + 1, totalSignatures);
+            return false;
+        }
+        if (byteRange.length != 4 || byteRange[0] != 0 || byteRange[1] > byteRange[2]
+                || revision.length() > pdf.length) {
+            log.warn("Signature {} ({} of {}): byte range {} does not cover a whole revision",
+                    signatureName, signatureIndex + 1, totalSignatures, Arrays.toString(byteRange));
+            return false;
+        }
+        if (!endsWithEofMarker(pdf, (int) revision.length())) {
+            log.warn("Signature {} ({} of {}): signed range does not end on a revision boundary",
+                    signatureName, signatureIndex + 1, totalSignatures);
+            return false;
+        }
+        return true;
+    }
+
+    private boolean endsWithEofMarker(byte[] pdf, int end) {
+        int i = end;
+        while (i > 0 && (pdf[i - 1] == '\n' || pdf[i - 1] == '\r' || pdf[i - 1] == ' ')) {
+            i--;
+        }
+        if (i < EOF_MARKER.length) {
+            return false;
+        }
+        return Arrays.equals(pdf, i - EOF_MARKER.length, i, EOF_MARKER, 0, EOF_MARKER.length);
+    }
+
+    private static <V> Map<String, V> lruMap(int maxEntries) {
+        // Access-ordered so the least recently verified entry is dropped first
+        return Collections.synchronizedMap(new LinkedHashMap<>(64, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, V> eldest) {
+                return size() > maxEntries;
+            }
+        });
+    }
+
+    private PdfDocument open(byte[] pdf) throws Exception {
+        return new PdfDocument(new PdfReader(new RandomAccessSourceFactory().createSource(pdf), new ReaderProperties()));
+    }
+
+    /**
+     * Every incremental update ends with its own %%EOF marker.
+     */
+    private int countRevisions(byte[] pdf) {
+        int count = 0;
+        outer:
+        for (int i = 0; i <= pdf.length - EOF_MARKER.length; i++) {
+            for (int j = 0; j < EOF_MARKER.length; j++) {
+                if (pdf[i + j] != EOF_MARKER[j]) {
+                    continue outer;
+                }
+            }
+            count++;
+        }
+        return count;
+    }
+
+    private String sha256(byte[] data) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(data));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private String extractCN(String dn) {
+        if (dn == null) return "Unknown";
+        for (String part : dn.split(",")) {
+            String trimmed = part.trim();
+            if (trimmed.startsWith("CN=")) {
+                return trimmed.substring(3);
+            }
+        }
+        return dn;
+    }
+}
@@ -0,0 +1,178 @@
+package com.github.ws_ncip_pnpki.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.security.auth.DestroyFailedException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.PrivateKey;
+import java.security.SecureRandom;
+import java.security.cert.Certificate;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Bounded in-memory cache of unlocked PKCS#12 keys, keyed by certificate hash.
+ * Clerks sign many documents in a row, and KeyStore.load runs the password-based
+ * key derivation every time. An entry is reused only when the caller presents the
+ * same password, and it is wiped after an idle TTL, on certificate deletion and on logout.
+ */
+@Component
+@Slf4j
+public class SigningKeyCache {
+
+    @Value("${pdf.signing.key-cache.idle-ttl:PT10M}")
+    private Duration idleTtl;
+
+    @Value("${pdf.signing.key-cache.max-entries:100}")
+    private int maxEntries;
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    private final SecureRandom random = new SecureRandom();
+
+    /**
+     * Unlocked key material as handed to the signing pipeline.
+     */
+    public record UnlockedKey(PrivateKey privateKey, Certificate[] chain, String certificateOwner) {
+    }
+
+    private static final class Entry {
+        private final Long userId;
+        private final byte[] salt;
+        private final byte[] passwordDigest;
+        private volatile UnlockedKey key;
+        private volatile long lastAccess;
+
+        private Entry(Long userId, byte[] salt, byte[] passwordDigest, UnlockedKey key) {
+            this.userId = userId;
+            this.salt = salt;
+            this.passwordDigest = passwordDigest;
+            this.key = key;
+            this.lastAccess = System.nanoTime();
+        }
+    }
+
+    /**
+     * Returns the cached key when it is still fresh and the password matches the one
+     * used to unlock it, otherwise null.
+     */
+    public UnlockedKey get(String certificateHash, String password) {
+        if (certificateHash == null) {
+            return null;
+        }
+        String cacheKey = certificateHash.toLowerCase();
+        Entry entry = entries.get(cacheKey);
+        if (entry == null) {
+            return null;
+        }
+        if (isExpired(entry)) {
+            remove(cacheKey);
+            return null;
+        }
+        if (!MessageDigest.isEqual(entry.passwordDigest, digest(entry.salt, password))) {
+            return null;
+        }
+        entry.lastAccess = System.nanoTime();
+        return entry.key;
+    }
+
+    public void put(String certificateHash, Long userId, String password, UnlockedKey key) {
+        if (certificateHash == null || maxEntries <= 0) {
+            return;
+        }
+        if (entries.size() >= maxEntries) {
+            evictLeastRecentlyUsed();
+        }
+        byte[] salt = new byte[16];
+        random.nextBytes(salt);
+        Entry previous = entries.put(certificateHash.toLowerCase(),
+                new Entry(userId, salt, digest(salt, password), key));
+        if (previous != null) {
+            wipe(previous);
+        }
+    }
+
+    /**
+     * Drops the unlocked key of a certificate, e.g. when it is deleted.
+     */
+    public void evict(String certificateHash) {
+        if (certificateHash != null) {
+            remove(certificateHash.toLowerCase());
+        }
+    }
+
+    /**
+     * Drops every key unlocked by the given user, e.g. on logout.
+     */
+    public void evictUser(Long userId) {
+        entries.entrySet().removeIf(e -> {
+            if (Objects.equals(e.getValue().userId, userId)) {
+                wipe(e.getValue());
+                return true;
+            }
+            return false;
+        });
+    }
+
+    @Scheduled(fixedDelayString = "${pdf.signing.key-cache.sweep-interval-ms:60000}")
+    public void evictExpired() {
+        entries.entrySet().removeIf(e -> {
+            if (isExpired(e.getValue())) {
+                wipe(e.getValue());
+                return true;
+            }
+            return false;
+        });
+    }
+
+    private boolean isExpired(Entry entry) {
+        return System.nanoTime() - entry.lastAccess > idleTtl.toNanos();
+    }
+
+    private void evictLeastRecentlyUsed() {
+        entries.entrySet().stream()
+                .min(Comparator.comparingLong(e -> e.getValue().lastAccess))
+                .map(Map.Entry::getKey)
+                .ifPresent(this::remove);
+    }
+
+    private void remove(String cacheKey) {
+        Entry removed = entries.remove(cacheKey);
+        if (removed != null) {
+            wipe(removed);
+        }
+    }
+
+    private void wipe(Entry entry) {
+        UnlockedKey key = entry.key;
+        entry.key = null;
+        Arrays.fill(entry.passwordDigest, (byte) 0);
+        if (key != null && !key.privateKey().isDestroyed()) {
+            try {
+                key.privateKey().destroy();
+            } catch (DestroyFailedException e) {
+                // Most JCE providers do not support destroying keys; dropping the reference is all we can do
+                log.debug("Private key could not be destroyed: {}", e.getMessage());
+            }
+        }
+    }
+
+    private byte[] digest(byte[] salt, String password) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(salt);
+            return digest.digest(password.getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.github.ws_ncip_pnpki.service;
+
+import lombok.Builder;
+import lombok.Getter;
+
+import java.security.PrivateKey;
+import java.security.cert.Certificate;
+import java.util.List;
+
+/**
+ * Everything that belongs to one document being signed.
+ * PdfSigningService is a shared singleton, so a session is built per request and
+ * passed down the pipeline instead of being kept in service fields. Sessions are
+ * immutable; a batch shares one session across the documents it signs.
+ */
+@Getter
+@Builder(toBuilder = true)
+public class SigningSession {
+
+    private final PrivateKey privateKey;
+
+    private final Certificate[] chain;
+
+    // Subject DN of the signing certificate, used for audit logs
+    private final String certificateOwner;
+
+    private final SignatureAppearanceCache.SharedImage signatureImage;
+
+    private final List<PdfSigningService.SignaturePlacement> placements;
+
+    // Placements already converted to PDF points from the page geometry index, in the
+    // same order; null to convert them from each page while stamping
+    private final List<PdfSigningService.PlacementBox> placementBoxes;
+
+    private final float canvasWidth;
+
+    private final float canvasHeight;
+
+    private final String location;
+
+    @Builder.Default
+    private final String reason = "Signed Authorization";
+
+    // Initials skip the seal and the signer name/date text
+    private final boolean initial;
+
+    public int getDigitalSignaturePage() {
+        return placements.get(0).pageNumber;
+    }
+}
@@ -15,8 +15,10 @@ import org.springframework.transaction.annotation.Transactional;
 
 import java.security.SecureRandom;
 import java.util.Base64;
+import java.util.Collection;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 @Service
@@ -85,6 +87,14 @@ public class TemporaryCredentialService {
         return temporaryCredentialRepository.findPasswordByEmployeeId(employeeId);
     }
 
+    /**
+     * Temporary passwords of several employees by employee id, loaded in one query.
+     * Employees without one are left out.
+     */
+    public Map<Long, String> getTemporaryPasswords(Collection<Long> employeeIds){
+        return temporaryCredentialRepository.findPasswordsByEmployeeId(employeeIds);
+    }
+
     public boolean tempEmailSent(Long employeeId){
         return temporaryCredentialRepository.isTempEmailSent(employeeId);
     }
@@ -0,0 +1,347 @@
+package com.github.ws_ncip_pnpki.service;
+
+import com.github.ws_ncip_pnpki.model.DeferredTimestamp;
+import com.github.ws_ncip_pnpki.repository.DeferredTimestampRepository;
+import com.itextpdf.kernel.pdf.PdfReader;
+import com.itextpdf.kernel.pdf.StampingProperties;
+import com.itextpdf.signatures.ITSAClient;
+import com.itextpdf.signatures.PdfSigner;
+import com.itextpdf.signatures.TSAClientBouncyCastle;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Long-lived Time Stamp Authority client shared by every signature.
+ * Requests go through one HttpClient so keep-alive connections to the TSA are reused,
+ * and latency and errors are tracked. When the TSA is slow or failing, signatures are
+ * applied without a timestamp token and the signed file is queued for a deferred
+ * document timestamp (LTV) pass instead of blocking the signer.
+ */
+@Service
+@Slf4j
+public class TimestampService {
+
+    @Autowired
+    private FileStorageService fileStorageService;
+
+    @Autowired
+    private DeferredTimestampRepository deferredTimestampRepository;
+
+    @Value("${pdf.signing.tsa.enabled:false}")
+    private boolean tsaEnabled;
+
+    @Value("${pdf.signing.tsa.url:}")
+    private String tsaUrl;
+
+    @Value("${pdf.signing.tsa.username:}")
+    private String tsaUsername;
+
+    @Value("${pdf.signing.tsa.password:}")
+    private String tsaPassword;
+
+    @Value("${pdf.signing.tsa.connect-timeout:PT5S}")
+    private Duration connectTimeout;
+
+    @Value("${pdf.signing.tsa.request-timeout:PT15S}")
+    private Duration requestTimeout;
+
+    @Value("${pdf.signing.tsa.defer.enabled:true}")
+    private boolean deferEnabled;
+
+    @Value("${pdf.signing.tsa.defer.latency-threshold-ms:3000}")
+    private long deferLatencyThresholdMs;
+
+    @Value("${pdf.signing.tsa.defer.failure-threshold:3}")
+    private int deferFailureThreshold;
+
+    @Value("${pdf.signing.tsa.defer.max-attempts:20}")
+    private int deferMaxAttempts;
+
+    @Value("${pdf.signing.tsa.defer.claim-timeout:PT30M}")
+    private Duration deferClaimTimeout;
+
+    private HttpClient httpClient;
+
+    private PooledTsaClient client;
+
+    private final LongAdder requestCount = new LongAdder();
+    private final LongAdder errorCount = new LongAdder();
+    private final LongAdder totalLatencyMs = new LongAdder();
+    private final AtomicLong maxLatencyMs = new AtomicLong();
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+    private final LongAdder deferredCount = new LongAdder();
+
+    // Exponentially weighted moving average of recent TSA latency
+    private volatile double recentLatencyMs;
+
+    @PostConstruct
+    void init() {
+        httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(connectTimeout)
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .build();
+
+        if (isEnabled()) {
+            // The DICT TSA rejects basic auth headers
+            boolean useCredentials = tsaUsername != null && !tsaUsername.isEmpty()
+                    && !tsaUrl.contains("govca.npki.gov.ph");
+            client = useCredentials
+                    ? new PooledTsaClient(tsaUrl, tsaUsername, tsaPassword)
+                    : new PooledTsaClient(tsaUrl, null, null);
+            log.info("TSA client ready for {}", tsaUrl);
+        }
+    }
+
+    public boolean isEnabled() {
+        return tsaEnabled && tsaUrl != null && !tsaUrl.isEmpty();
+    }
+
+    /**
+     * The shared TSA client, or null when timestamping is disabled.
+     */
+    public ITSAClient getClient() {
+        return client;
+    }
+
+    /**
+     * Whether the next signature should skip the inline timestamp and be queued
+     * for a deferred document timestamp instead.
+     */
+    public boolean shouldDefer() {
+        if (!isEnabled() || !deferEnabled) {
+            return false;
+        }
+        return consecutiveFailures.get() >= deferFailureThreshold
+                || recentLatencyMs > deferLatencyThresholdMs;
+    }
+
+    public void deferTimestamp(Path signedFile) {
+        deferredCount.increment();
+        deferredTimestampRepository.save(new DeferredTimestamp(signedFile.toString(), null));
+        log.warn("TSA slow or unavailable, queued deferred timestamp for {}", signedFile);
+    }
+
+    public void deferTimestamp(String storageKey) {
+        deferredCount.increment();
+        deferredTimestampRepository.save(new DeferredTimestamp(null, storageKey));
+        log.warn("TSA slow or unavailable, queued deferred timestamp for {}", storageKey);
+    }
+
+    /**
+     * Adds a document timestamp to files that were signed while the TSA was degraded.
+     * Files that changed while being timestamped, e.g. signed again, are retried later.
+     * Each run claims its rows first, so several nodes can run this job side by side.
+     */
+    @Scheduled(fixedDelayString = "${pdf.signing.tsa.defer.retry-interval-ms:60000}")
+    public void processDeferredTimestamps() {
+        if (!isEnabled()) {
+            return;
+        }
+        String owner = UUID.randomUUID().toString();
+        if (deferredTimestampRepository.claim(owner, deferClaimTimeout.toSeconds(), 100) == 0) {
+            return;
+        }
+        for (DeferredTimestamp item : deferredTimestampRepository.findByClaimedByOrderByIdAsc(owner)) {
+            try {
+                boolean applied = item.getFilePath() != null
+                        ? applyDocumentTimestamp(Path.of(item.getFilePath()))
+                        : applyStoredDocumentTimestamp(item.getStorageKey());
+                if (applied) {
+                    deferredTimestampRepository.delete(item);
+                } else {
+                    requeue(item);
+                }
+            } catch (Exception e) {
+                log.warn("Deferred timestamp failed for {}: {}", item.name(), e.getMessage());
+                requeue(item);
+            }
+        }
+    }
+
+    public Map<String, Object> getMetrics() {
+        long requests = requestCount.sum();
+        Map<String, Object> metrics = new HashMap<>();
+        metrics.put("enabled", isEnabled());
+        metrics.put("url", tsaUrl);
+        metrics.put("requests", requests);
+        metrics.put("errors", errorCount.sum());
+        metrics.put("averageLatencyMs", requests == 0 ? 0 : totalLatencyMs.sum() / requests);
+        metrics.put("recentLatencyMs", Math.round(recentLatencyMs));
+        metrics.put("maxLatencyMs", maxLatencyMs.get());
+        metrics.put("consecutiveFailures", consecutiveFailures.get());
+        metrics.put("deferring", shouldDefer());
+        metrics.put("deferredTotal", deferredCount.sum());
+        metrics.put("deferredPending", deferredTimestampRepository.count());
+        return metrics;
+    }
+
+    private boolean applyDocumentTimestamp(Path file) throws Exception {
+        if (!Files.exists(file)) {
+            log.info("Skipping deferred timestamp, file no longer exists: {}", file);
+            return true;
+        }
+
+        FileTime modifiedBefore = Files.getLastModifiedTime(file);
+        byte[] source = Files.readAllBytes(file);
+        Path partialPath = file.resolveSibling(file.getFileName() + ".tsa.part");
+
+        try (OutputStream out = Files.newOutputStream(partialPath)) {
+            PdfSigner signer = new PdfSigner(new PdfReader(new ByteArrayInputStream(source)), out,
+                    new StampingProperties().useAppendMode());
+            signer.timestamp(client, "DocTimeStamp_" + UUID.randomUUID().toString().substring(0, 8));
+        } catch (Exception e) {
+            Files.deleteIfExists(partialPath);
+            throw e;
+        }
+
+        // Someone signed the document again while we were working; retry on the new revision
+        if (!Files.getLastModifiedTime(file).equals(modifiedBefore)) {
+            Files.deleteIfExists(partialPath);
+            return false;
+        }
+
+        Files.move(partialPath, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        log.info("Deferred document timestamp applied to {}", file);
+        return true;
+    }
+
+    /**
+     * Same as {@link #applyDocumentTimestamp} for a file in storage. The timestamped copy
+     * only replaces the stored file while it still holds the revision that was read, so a
+     * signature written in the meantime is never overwritten.
+     */
+    private boolean applyStoredDocumentTimestamp(String key) throws Exception {
+        if (!fileStorageService.fileExists(key)) {
+            log.info("Skipping deferred timestamp, file no longer exists: {}", key);
+            return true;
+        }
+
+        byte[] source = fileStorageService.readAllBytes(key);
+        Path partialPath = Files.createTempFile("tsa-", ".part");
+
+        try {
+            try (OutputStream out = Files.newOutputStream(partialPath)) {
+                PdfSigner signer = new PdfSigner(new PdfReader(new ByteArrayInputStream(source)), out,
+                        new StampingProperties().useAppendMode());
+                signer.timestamp(client, "DocTimeStamp_" + UUID.randomUUID().toString().substring(0, 8));
+            }
+
+            if (!fileStorageService.replaceIfUnchanged(key, FileStorageService.sha256Hex(source), partialPath)) {
+                return false;
+            }
+        } finally {
+            Files.deleteIfExists(partialPath);
+        }
+        log.info("Deferred document timestamp applied to {}", key);
+        return true;
+    }
+
+    private void requeue(DeferredTimestamp item) {
+        if (item.getAttempts() + 1 >= deferMaxAttempts) {
+            log.error("Giving up on deferred timestamp for {} after {} attempts", item.name(), deferMaxAttempts);
+            deferredTimestampRepository.delete(item);
+            return;
+        }
+        item.setAttempts(item.getAttempts() + 1);
+        item.setClaimedBy(null);
+        item.setClaimedUntil(null);
+        deferredTimestampRepository.save(item);
+    }
+
+    private void recordSuccess(long latencyMs) {
+        requestCount.increment();
+        totalLatencyMs.add(latencyMs);
+        maxLatencyMs.accumulateAndGet(latencyMs, Math::max);
+        consecutiveFailures.set(0);
+        recentLatencyMs = recentLatencyMs == 0 ? latencyMs : recentLatencyMs * 0.8 + latencyMs * 0.2;
+    }
+
+    private void recordFailure(long latencyMs) {
+        requestCount.increment();
+        errorCount.increment();
+        totalLatencyMs.add(latencyMs);
+        maxLatencyMs.accumulateAndGet(latencyMs, Math::max);
+        consecutiveFailures.incrementAndGet();
+    }
+
+    /**
+     * iText TSA client that posts through the shared HttpClient instead of opening a
+     * new HttpURLConnection per signature.
+     */
+    private class PooledTsaClient extends TSAClientBouncyCastle {
+
+        private final String authorization;
+
+        PooledTsaClient(String url, String username, String password) {
+            super(url, username, password);
+            this.authorization = username == null ? null : "Basic " + Base64.getEncoder()
+                    .encodeToString((username + ":" + password).getBytes(StandardCharsets.UTF_8));
+        }
+
+        @Override
+        protected byte[] getTSAResponse(byte[] requestBytes) throws IOException {
+            HttpRequest.Builder request = HttpRequest.newBuilder(URI.create(tsaURL))
+                    .timeout(requestTimeout)
+                    .header("Content-Type", "application/timestamp-query")
+                    .header("Content-Transfer-Encoding", "binary")
+                    .POST(HttpRequest.BodyPublishers.ofByteArray(requestBytes));
+            if (authorization != null) {
+                request.header("Authorization", authorization);
+            }
+
+            long start = System.nanoTime();
+            try {
+                HttpResponse<byte[]> response = httpClient.send(request.build(), HttpResponse.BodyHandlers.ofByteArray());
+                if (response.statusCode() != 200) {
+                    throw new IOException("TSA responded with HTTP " + response.statusCode());
+                }
+
+                byte[] body = response.body();
+                String encoding = response.headers().firstValue("Content-Transfer-Encoding").orElse("");
+                if ("base64".equalsIgnoreCase(encoding)) {
+                    body = Base64.getMimeDecoder().decode(body);
+                }
+
+                recordSuccess(elapsedMs(start));
+                return body;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                recordFailure(elapsedMs(start));
+                throw new IOException("Interrupted while waiting for the TSA", e);
+            } catch (IOException e) {
+                recordFailure(elapsedMs(start));
+                throw e;
+            }
+        }
+
+        private long elapsedMs(long start) {
+            return (System.nanoTime() - start) / 1_000_000;
+        }
+    }
+}
@@ -0,0 +1,296 @@
+package com.github.ws_ncip_pnpki.service;
+
+import com.github.ws_ncip_pnpki.dto.OffsetBasedPageRequest;
+import com.github.ws_ncip_pnpki.model.Employee;
+import com.github.ws_ncip_pnpki.model.User;
+import com.github.ws_ncip_pnpki.repository.DocumentSharedRepository;
+import com.github.ws_ncip_pnpki.repository.UserRepository;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.Hibernate;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.domain.Sort;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * In-memory prefix index for the user picker of the share dialog. Usernames, emails and
+ * employee names are kept in a sorted map of lowercase keys, so suggestions for a prefix
+ * are a range scan that stops after one page instead of a database query per keystroke.
+ * {@link UserDirectoryListener} applies user, employee and share changes as they commit,
+ * and the whole index is reloaded periodically to pick up writes from other instances.
+ */
+@Service
+@Slf4j
+public class UserDirectory {
+
+    private static final char KEY_SEPARATOR = '\0';
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private DocumentSharedRepository documentSharedRepository;
+
+    @Value("${search.user-picker.enabled:true}")
+    private boolean enabled;
+
+    @Value("${search.user-picker.shares.max-entries:500}")
+    private int maxShareEntries;
+
+    // Upper bound on staleness for shares changed on other instances
+    @Value("${search.user-picker.shares.ttl:PT1M}")
+    private Duration sharesTtl;
+
+    /**
+     * Snapshot of a user for the picker. The user is a detached copy carrying only what
+     * the picker shows.
+     */
+    private record Entry(User user, Long employeeId, String firstName, String lastName, boolean admin) {
+
+        List<String> keys() {
+            List<String> keys = new ArrayList<>(5);
+            addKey(keys, user.getUsername());
+            addKey(keys, user.getEmail());
+            addKey(keys, firstName);
+            addKey(keys, lastName);
+            if (firstName != null && lastName != null) {
+                addKey(keys, firstName + " " + lastName);
+            }
+            return keys;
+        }
+
+        private static void addKey(List<String> keys, String value) {
+            if (value != null && !value.isBlank()) {
+                keys.add(normalize(value));
+            }
+        }
+    }
+
+    private record CachedShares(Set<Long> userIds, long loadedAt) {
+    }
+
+    /**
+     * The maps of one load. A reload fills new maps and swaps them in whole, so searches
+     * never see a half-built index; changes applied as they commit update the current one.
+     */
+    private record Snapshot(
+            Map<Long, Entry> entries,
+            Map<Long, Long> userIdsByEmployee,
+            // "<key>\0<userId>" -> userId; the suffix keeps keys shared by several users apart
+            ConcurrentSkipListMap<String, Long> prefixIndex,
+            // Listing order for an empty query
+            ConcurrentSkipListMap<String, Long> byUsername) {
+
+        Snapshot() {
+            this(new ConcurrentHashMap<>(), new ConcurrentHashMap<>(),
+                    new ConcurrentSkipListMap<>(), new ConcurrentSkipListMap<>());
+        }
+    }
+
+    private volatile Snapshot snapshot = new Snapshot();
+
+    private Map<Long, CachedShares> sharesByDocument;
+
+    private volatile boolean loaded;
+
+    @PostConstruct
+    void init() {
+        sharesByDocument = Collections.synchronizedMap(new LinkedHashMap<>(64, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, CachedShares> eldest) {
+                return size() > maxShareEntries;
+            }
+        });
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        if (!enabled) {
+            return;
+        }
+        reload();
+    }
+
+    @Scheduled(fixedDelayString = "${search.user-picker.refresh-interval-ms:600000}",
+            initialDelayString = "${search.user-picker.refresh-interval-ms:600000}")
+    public void refresh() {
+        if (loaded) {
+            reload();
+        }
+    }
+
+    /**
+     * Whether searches can be answered from memory.
+     */
+    public boolean isAvailable() {
+        return loaded;
+    }
+
+    /**
+     * One page of users whose username, email, first name, last name or full name starts
+     * with {@code query}, or of all users by username when the query is blank. Admins are
+     * never suggested.
+     *
+     * @param excludeUserId user to leave out, usually the one searching, or null
+     * @param documentId    document whose current recipients are left out, or null
+     */
+    public Slice<User> search(String query, Long excludeUserId, Long documentId, int offset, int limit) {
+        Set<Long> excluded = documentId != null ? sharedUserIds(documentId) : Set.of();
+        String prefix = query != null ? normalize(query) : "";
+
+        Snapshot current = snapshot;
+        Collection<Long> candidates = prefix.isEmpty()
+                ? current.byUsername().values()
+                : current.prefixIndex().subMap(prefix, true, prefix + Character.MAX_VALUE, false).values();
+
+        List<User> content = new ArrayList<>(limit);
+        Set<Long> seen = new HashSet<>();
+        int skipped = 0;
+        boolean hasNext = false;
+        for (Long userId : candidates) {
+            if (!seen.add(userId) || userId.equals(excludeUserId) || excluded.contains(userId)) {
+                continue;
+            }
+            Entry entry = current.entries().get(userId);
+            if (entry == null || entry.admin()) {
+                continue;
+            }
+            if (skipped < offset) {
+                skipped++;
+            } else if (content.size() < limit) {
+                content.add(entry.user());
+            } else {
+                hasNext = true;
+                break;
+            }
+        }
+        return new SliceImpl<>(content, new OffsetBasedPageRequest(offset, limit, Sort.unsorted()), hasNext);
+    }
+
+    /**
+     * Adds or refreshes a user. Employee names are only read when already loaded;
+     * otherwise the names indexed before are kept.
+     */
+    public synchronized void index(User user) {
+        if (user.getId() == null) {
+            return;
+        }
+        Snapshot current = snapshot;
+        Entry previous = current.entries().get(user.getId());
+        Employee employee = user.getEmployee();
+        Long employeeId = employee != null ? employee.getId() : null;
+        String firstName = null;
+        String lastName = null;
+        if (employee != null && Hibernate.isInitialized(employee)) {
+            firstName = employee.getFirstName();
+            lastName = employee.getLastName();
+        } else if (previous != null && Objects.equals(previous.employeeId(), employeeId)) {
+            firstName = previous.firstName();
+            lastName = previous.lastName();
+        }
+        put(current, toEntry(user, employeeId, firstName, lastName));
+    }
+
+    public synchronized void renameEmployee(Long employeeId, String firstName, String lastName) {
+        Snapshot current = snapshot;
+        Long userId = current.userIdsByEmployee().get(employeeId);
+        Entry entry = userId != null ? current.entries().get(userId) : null;
+        if (entry != null) {
+            put(current, new Entry(entry.user(), employeeId, firstName, lastName, entry.admin()));
+        }
+    }
+
+    public synchronized void remove(Long userId) {
+        Snapshot current = snapshot;
+        Entry entry = current.entries().remove(userId);
+        if (entry != null) {
+            unlink(current, entry);
+        }
+    }
+
+    public void evictShares(Long documentId) {
+        sharesByDocument.remove(documentId);
+    }
+
+    private synchronized void reload() {
+        long start = System.nanoTime();
+        try {
+            List<User> users = userRepository.findAllForDirectory();
+            Snapshot fresh = new Snapshot();
+            for (User user : users) {
+                Employee employee = user.getEmployee();
+                put(fresh, toEntry(user, employee != null ? employee.getId() : null,
+                        employee != null ? employee.getFirstName() : null,
+                        employee != null ? employee.getLastName() : null));
+            }
+            snapshot = fresh;
+            loaded = true;
+            log.info("User picker index loaded {} users in {} ms", users.size(), (System.nanoTime() - start) / 1_000_000);
+        } catch (Exception e) {
+            log.warn("Could not load the user picker index: {}", e.getMessage());
+        }
+    }
+
+    private Set<Long> sharedUserIds(Long documentId) {
+        long now = System.nanoTime();
+        CachedShares cached = sharesByDocument.get(documentId);
+        if (cached != null && now - cached.loadedAt() < sharesTtl.toNanos()) {
+            return cached.userIds();
+        }
+        Set<Long> userIds = Set.copyOf(documentSharedRepository.findUserIdsByDocumentId(documentId));
+        sharesByDocument.put(documentId, new CachedShares(userIds, now));
+        return userIds;
+    }
+
+    private static void put(Snapshot snapshot, Entry entry) {
+        Long userId = entry.user().getId();
+        Entry previous = snapshot.entries().put(userId, entry);
+        if (previous != null) {
+            unlink(snapshot, previous);
+        }
+        for (String key : entry.keys()) {
+            snapshot.prefixIndex().put(key + KEY_SEPARATOR + userId, userId);
+        }
+        snapshot.byUsername().put(normalize(entry.user().getUsername()) + KEY_SEPARATOR + userId, userId);
+        if (entry.employeeId() != null) {
+            snapshot.userIdsByEmployee().put(entry.employeeId(), userId);
+        }
+    }
+
+    private static void unlink(Snapshot snapshot, Entry entry) {
+        Long userId = entry.user().getId();
+        for (String key : entry.keys()) {
+            snapshot.prefixIndex().remove(key + KEY_SEPARATOR + userId);
+        }
+        snapshot.byUsername().remove(normalize(entry.user().getUsername()) + KEY_SEPARATOR + userId);
+        if (entry.employeeId() != null) {
+            snapshot.userIdsByEmployee().remove(entry.employeeId(), userId);
+        }
+    }
+
+    private static Entry toEntry(User user, Long employeeId, String firstName, String lastName) {
+        User copy = User.builder()
+                .id(user.getId())
+                .username(user.getUsername())
+                .email(user.getEmail())
+                .roles(user.getRoles() != null ? new HashSet<>(user.getRoles()) : new HashSet<>())
+                .build();
+        boolean admin = copy.getRoles().stream().anyMatch(role -> "ROLE_ADMIN".equals(role.getName()));
+        return new Entry(copy, employeeId, firstName, lastName, admin);
+    }
+
+    private static String normalize(String value) {
+        return value == null ? "" : value.trim().toLowerCase(Locale.ROOT);
+    }
+}
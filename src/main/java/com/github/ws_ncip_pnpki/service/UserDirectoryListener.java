@@ -0,0 +1,64 @@
+package com.github.ws_ncip_pnpki.service;
+
+import com.github.ws_ncip_pnpki.model.DocumentShared;
+import com.github.ws_ncip_pnpki.model.Employee;
+import com.github.ws_ncip_pnpki.model.User;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.function.Consumer;
+
+/**
+ * Entity listener that keeps {@link UserDirectory} in step with users, employee names and
+ * document shares. Changes are applied once the transaction commits, so a rolled back
+ * registration never shows up in the picker.
+ */
+public class UserDirectoryListener {
+
+    @Autowired
+    private ObjectProvider<UserDirectory> userDirectory;
+
+    @PostPersist
+    @PostUpdate
+    void onSave(Object entity) {
+        if (entity instanceof User user) {
+            afterCommit(directory -> directory.index(user));
+        } else if (entity instanceof Employee employee) {
+            afterCommit(directory -> directory.renameEmployee(
+                    employee.getId(), employee.getFirstName(), employee.getLastName()));
+        } else if (entity instanceof DocumentShared share) {
+            afterCommit(directory -> directory.evictShares(share.getId().getDocumentId()));
+        }
+    }
+
+    @PostRemove
+    void onRemove(Object entity) {
+        if (entity instanceof User user) {
+            afterCommit(directory -> directory.remove(user.getId()));
+        } else if (entity instanceof DocumentShared share) {
+            afterCommit(directory -> directory.evictShares(share.getId().getDocumentId()));
+        }
+    }
+
+    private void afterCommit(Consumer<UserDirectory> change) {
+        UserDirectory directory = userDirectory.getIfAvailable();
+        if (directory == null) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            change.accept(directory);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                change.accept(directory);
+            }
+        });
+    }
+}
@@ -1,5 +1,6 @@
 package com.github.ws_ncip_pnpki.service;
 
+import com.github.ws_ncip_pnpki.dto.CursorPage;
 import com.github.ws_ncip_pnpki.dto.OffsetBasedPageRequest;
 import com.github.ws_ncip_pnpki.dto.UserListResponse;
 import com.github.ws_ncip_pnpki.dto.UserResponse;
@@ -7,10 +8,13 @@ import com.github.ws_ncip_pnpki.model.Document;
 import com.github.ws_ncip_pnpki.model.Employee;
 import com.github.ws_ncip_pnpki.model.User;
 import com.github.ws_ncip_pnpki.repository.UserRepository;
+import com.github.ws_ncip_pnpki.util.KeysetCursor;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
 import org.springframework.data.domain.Sort;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.stereotype.Service;
@@ -27,6 +31,12 @@ public class UserService {
 
     private final EmployeeService employeeService;
 
+    @Autowired
+    private FullTextSearchService fullTextSearchService;
+
+    @Autowired
+    private UserDirectory userDirectory;
+
     @Autowired
     public UserService(UserRepository userRepository, TemporaryCredentialService temporaryCredentialService, EmployeeService employeeService) {
         this.userRepository = userRepository;
@@ -58,6 +68,15 @@ public class UserService {
 
         return userPage.map(this::convertToUserResponse);
     }
+
+    /**
+     * Cursor-based variant of {@link #getAllUsers(int, int, int, String, String, String, Long)}.
+     */
+    public CursorPage<UserResponse> getAllUsersByCursor(int limit, String cursor, String sortBy, String sortDirection, String search, Long userId, boolean skipTotal) {
+        CursorPage<User> userPage = KeysetCursor.scroll(userRepository, UserRepository.matching(search, userId),
+                User.class, sortBy, sortDirection, limit, cursor, skipTotal);
+        return userPage.withContent(userPage.content().stream().map(this::convertToUserResponse).toList());
+    }
     public Page<User> getAllUsers(Pageable pageable) {
         return userRepository.findAll(pageable);
     }
@@ -67,7 +86,20 @@ public class UserService {
         return userRepository.count();
     }
 
-    public List<User> searchUsers(String query, boolean excludeCurrent, Long currentUserId, Long documentId) {
+    /**
+     * User picker suggestions, served from {@link UserDirectory} once it is loaded.
+     */
+    public Slice<User> searchUsers(String query, boolean excludeCurrent, Long currentUserId, Long documentId, int offset, int limit) {
+        if (userDirectory.isAvailable()) {
+            Long excludeUserId = excludeCurrent ? currentUserId : null;
+            return userDirectory.search(query, excludeUserId, documentId, offset, limit);
+        }
+        List<User> users = searchUsers(query, excludeCurrent, currentUserId, documentId);
+        List<User> content = users.subList(Math.min(offset, users.size()), Math.min(offset + limit, users.size()));
+        return new SliceImpl<>(content, new OffsetBasedPageRequest(offset, limit, Sort.unsorted()), offset + limit < users.size());
+    }
+
+    private List<User> searchUsers(String query, boolean excludeCurrent, Long currentUserId, Long documentId) {
         try {
             String searchTerm = "%" + (query != null ? query.trim() : "") + "%";
 
@@ -77,6 +109,11 @@ public class UserService {
                     return userRepository.findAllByIdNot(currentUserId, documentId);
                 }
                 return userRepository.findAll();
+            } else if (fullTextSearchService.useFor(query)) {
+                // Ranked search on the full-text index
+                Long excludeUserId = excludeCurrent ? currentUserId : null;
+                return userRepository.fullTextSearchUsers(
+                        fullTextSearchService.toQuery(query), excludeUserId, fullTextSearchService.getMaxResults());
             } else {
                 // Search with query
                 if (excludeCurrent && currentUserId != null) {
@@ -98,6 +135,7 @@ public class UserService {
     public void changePassword(Long userId, String newPassword){
         User user = userRepository.findById(userId).orElseThrow();
         user.setPassword(new BCryptPasswordEncoder().encode(newPassword));
+        user.setCredentialsVersion(user.getCredentialsVersion() + 1);
         userRepository.save(user);
     }
 
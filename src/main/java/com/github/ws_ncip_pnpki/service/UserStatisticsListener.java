@@ -0,0 +1,54 @@
+package com.github.ws_ncip_pnpki.service;
+
+import com.github.ws_ncip_pnpki.model.Certificate;
+import com.github.ws_ncip_pnpki.model.Document;
+import com.github.ws_ncip_pnpki.model.DocumentForward;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Entity listener that evicts cached dashboard counters of the users an entity counts for.
+ * Hibernate creates it through Spring; the service is looked up on use because listeners
+ * are built together with the entity manager factory the service depends on. Eviction
+ * waits for the commit so a dashboard read meanwhile cannot cache the old counts again.
+ */
+public class UserStatisticsListener {
+
+    @Autowired
+    private ObjectProvider<UserStatisticsService> userStatisticsService;
+
+    @PostPersist
+    @PostUpdate
+    @PostRemove
+    void onChange(Object entity) {
+        UserStatisticsService statistics = userStatisticsService.getIfAvailable();
+        if (statistics == null) {
+            return;
+        }
+        if (entity instanceof Document document && document.getOwner() != null) {
+            evictAfterCommit(statistics, document.getOwner().getId());
+        } else if (entity instanceof Certificate certificate) {
+            evictAfterCommit(statistics, certificate.getUserId());
+        } else if (entity instanceof DocumentForward forward && forward.getForwardedTo() != null) {
+            evictAfterCommit(statistics, forward.getForwardedTo().getId());
+        }
+    }
+
+    private void evictAfterCommit(UserStatisticsService statistics, Long userId) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            statistics.evict(userId);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                statistics.evict(userId);
+            }
+        });
+    }
+}
@@ -0,0 +1,77 @@
+package com.github.ws_ncip_pnpki.service;
+
+import com.github.ws_ncip_pnpki.dto.UserStatistics;
+import com.github.ws_ncip_pnpki.repository.DocumentRepository;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Per-user dashboard counters. All counters come from one aggregate query and are kept
+ * for a short while; writes to documents, certificates and forwards evict the affected
+ * users through {@link UserStatisticsListener}.
+ */
+@Service
+public class UserStatisticsService {
+
+    @Autowired
+    private DocumentRepository documentRepository;
+
+    @Value("${stats.cache.max-entries:1000}")
+    private int maxEntries;
+
+    // Upper bound on staleness for writes that bypass the entity listener
+    @Value("${stats.cache.ttl:PT1M}")
+    private Duration ttl;
+
+    private Map<Long, CachedStatistics> cache;
+
+    private record CachedStatistics(UserStatistics statistics, long loadedAt) {
+    }
+
+    @PostConstruct
+    void init() {
+        cache = Collections.synchronizedMap(new LinkedHashMap<>(64, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, CachedStatistics> eldest) {
+                return size() > maxEntries;
+            }
+        });
+    }
+
+    public UserStatistics getStatistics(Long userId) {
+        long now = System.nanoTime();
+        CachedStatistics cached = cache.get(userId);
+        if (cached != null && now - cached.loadedAt() < ttl.toNanos()) {
+            return cached.statistics();
+        }
+        UserStatistics statistics = documentRepository.findUserStatistics(userId);
+        cache.put(userId, new CachedStatistics(statistics, now));
+        return statistics;
+    }
+
+    public Map<String, Object> toMap(UserStatistics statistics) {
+        Map<String, Object> map = new HashMap<>();
+        map.put("ownedDocuments", statistics.getOwnedDocuments());
+        map.put("certificates", statistics.getCertificates());
+        map.put("totalForwards", statistics.getTotalForwards());
+        map.put("pendingForwards", statistics.getPendingForwards());
+        map.put("acceptedForwards", statistics.getAcceptedForwards());
+        map.put("signedDocumentForwards", statistics.getSignedDocumentForwards());
+        map.put("rejectedForwards", statistics.getRejectedForwards());
+        return map;
+    }
+
+    public void evict(Long userId) {
+        if (userId != null) {
+            cache.remove(userId);
+        }
+    }
+}
@@ -0,0 +1,209 @@
+package com.github.ws_ncip_pnpki.service;
+
+import com.github.ws_ncip_pnpki.model.ViewCopy;
+import com.github.ws_ncip_pnpki.repository.ViewCopyRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Builds linearized view copies of large PDFs in the background with qpdf, so the
+ * browser viewer can show page 1 before the whole file arrives. Without qpdf no copies
+ * are made and the original is served as it is.
+ * The copy carries no valid signatures, so it is only used for inline viewing; downloads,
+ * verification and signing always use the signed original, and signing refuses an
+ * uploaded view copy.
+ */
+@Service
+@Slf4j
+public class ViewCopyService {
+
+    public static final String VIEW_DIR = "views";
+
+    @Autowired
+    private FileStorageService fileStorageService;
+
+    @Autowired
+    private ViewCopyRepository viewCopyRepository;
+
+    @Value("${pdf.view-copy.enabled:true}")
+    private boolean enabled;
+
+    // Small files load fast enough as they are
+    @Value("${pdf.view-copy.min-size:2MB}")
+    private DataSize minSize;
+
+    // e.g. /usr/bin/qpdf; view copies are only built when it is set
+    @Value("${pdf.view-copy.qpdf-path:}")
+    private String qpdfPath;
+
+    @Value("${pdf.view-copy.qpdf-timeout:PT5M}")
+    private Duration qpdfTimeout;
+
+    @Value("${pdf.view-copy.workers:1}")
+    private int workers;
+
+    private ExecutorService executor;
+
+    // Source paths with a copy being built
+    private final Set<String> pending = ConcurrentHashMap.newKeySet();
+
+    @PostConstruct
+    void init() {
+        if (enabled && (qpdfPath == null || qpdfPath.isEmpty() || !Files.isExecutable(Paths.get(qpdfPath)))) {
+            // A copy that is not linearized loads no faster than the original
+            log.info("View copies disabled, qpdf not available at '{}'", qpdfPath);
+            enabled = false;
+        }
+        executor = Executors.newFixedThreadPool(Math.max(1, workers));
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdown();
+    }
+
+    /**
+     * The view copy to show for {@code sourcePath}, or null when there is no current one.
+     * A missing or outdated copy is scheduled so the next view gets it.
+     */
+    public String currentViewPath(String sourcePath) {
+        if (!enabled || sourcePath == null) {
+            return null;
+        }
+        ViewCopy copy = viewCopyRepository.findBySourcePath(sourcePath).orElse(null);
+        if (copy != null && fileStorageService.fileExists(sourcePath)
+                && copy.getSourceSize() == fileStorageService.fileSize(sourcePath)
+                && fileStorageService.fileExists(copy.getViewPath())) {
+            return copy.getViewPath();
+        }
+        schedule(sourcePath);
+        return null;
+    }
+
+    /**
+     * Builds or rebuilds the view copy of {@code sourcePath} in the background.
+     */
+    public void schedule(String sourcePath) {
+        if (!enabled || sourcePath == null || !sourcePath.toLowerCase().endsWith(".pdf")) {
+            return;
+        }
+        if (!pending.add(sourcePath)) {
+            return;
+        }
+        executor.execute(() -> {
+            try {
+                build(sourcePath);
+            } catch (Exception e) {
+                log.warn("Could not build view copy of {}: {}", sourcePath, e.getMessage());
+            } finally {
+                pending.remove(sourcePath);
+            }
+        });
+    }
+
+    /**
+     * Whether {@code pdf} is a view copy, which must not be signed in place of its original.
+     */
+    public boolean isViewCopy(byte[] pdf) {
+        return viewCopyRepository.existsByViewSha256(FileStorageService.sha256Hex(pdf));
+    }
+
+    /**
+     * Removes the view copy of an original that is being deleted.
+     */
+    public void discard(String sourcePath) {
+        viewCopyRepository.findBySourcePath(sourcePath).ifPresent(copy -> {
+            try {
+                fileStorageService.deleteFile(copy.getViewPath());
+            } catch (Exception e) {
+                log.warn("Could not delete view copy {}: {}", copy.getViewPath(), e.getMessage());
+            }
+            viewCopyRepository.delete(copy);
+        });
+    }
+
+    private void build(String sourcePath) throws Exception {
+        if (!fileStorageService.fileExists(sourcePath)) {
+            return;
+        }
+        long sourceSize = fileStorageService.fileSize(sourcePath);
+        if (sourceSize < minSize.toBytes()) {
+            return;
+        }
+
+        ViewCopy copy = viewCopyRepository.findBySourcePath(sourcePath).orElse(null);
+        if (copy != null && copy.getSourceSize() == sourceSize && fileStorageService.fileExists(copy.getViewPath())) {
+            return;
+        }
+
+        Path source = fileStorageService.getFilePath(sourcePath);
+        Path output = Files.createTempFile("view-", ".pdf");
+        try {
+            long start = System.currentTimeMillis();
+            linearizeWithQpdf(source, output);
+
+            // The original changed while we were working; the next view schedules a new copy
+            if (fileStorageService.fileSize(sourcePath) != sourceSize) {
+                return;
+            }
+
+            String viewPath = VIEW_DIR + "/" + sourcePath;
+            String viewSha256 = FileStorageService.sha256Hex(output);
+            fileStorageService.writeFile(viewPath, output);
+
+            if (copy == null) {
+                copy = new ViewCopy(null, sourcePath, sourceSize, viewPath, viewSha256, LocalDateTime.now());
+            } else {
+                copy.setSourceSize(sourceSize);
+                copy.setViewPath(viewPath);
+                copy.setViewSha256(viewSha256);
+                copy.setCreatedAt(LocalDateTime.now());
+            }
+            try {
+                viewCopyRepository.save(copy);
+            } catch (DataIntegrityViolationException e) {
+                // Another node recorded the same copy first
+                log.debug("View copy of {} already recorded", sourcePath);
+            }
+
+            log.info("View copy of {} built in {} ms ({} -> {} bytes)", sourcePath,
+                    System.currentTimeMillis() - start, sourceSize, Files.size(output));
+        } finally {
+            Files.deleteIfExists(output);
+        }
+    }
+
+    private void linearizeWithQpdf(Path source, Path output) throws IOException, InterruptedException {
+        Process process = new ProcessBuilder(qpdfPath, "--linearize", "--object-streams=generate",
+                source.toAbsolutePath().toString(), output.toAbsolutePath().toString())
+                .redirectErrorStream(true)
+                .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                .start();
+        if (!process.waitFor(qpdfTimeout.toMillis(), TimeUnit.MILLISECONDS)) {
+            process.destroyForcibly();
+            throw new IOException("qpdf timed out");
+        }
+        // 3 means success with warnings
+        if (process.exitValue() != 0 && process.exitValue() != 3) {
+            throw new IOException("qpdf exited with " + process.exitValue());
+        }
+    }
+}
@@ -0,0 +1,335 @@
+package com.github.ws_ncip_pnpki.storage;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+
+/**
+ * Bounded local disk cache in front of a remote backend. Files are cached as they are
+ * written and when first read, and the least recently used are dropped once the cache
+ * exceeds its size. The remote backend stays the source of truth, so several nodes can
+ * share it with a cache each. With {@code storage.cache.enabled=false} only files
+ * requested as local paths are cached; other reads and writes go straight to the remote
+ * backend.
+ */
+@Slf4j
+public class CachingStorageService implements StorageService {
+
+    private final StorageService remote;
+
+    private final Path cacheRoot;
+
+    private final long maxBytes;
+
+    private final boolean revalidate;
+
+    // Whether written files and streamed reads are cached too, not only local paths
+    private final boolean cacheStreams;
+
+    // Cached key -> size, least recently used first
+    private final LinkedHashMap<String, Long> index = new LinkedHashMap<>(256, 0.75f, true);
+
+    // Guards the index; a lock rather than a monitor so virtual threads do not pin their carriers
+    private final ReentrantLock indexLock = new ReentrantLock();
+
+    private long cachedBytes;
+
+    public CachingStorageService(StorageService remote, StorageProperties.Cache properties) {
+        this.remote = remote;
+        this.cacheRoot = Paths.get(properties.getLocation()).toAbsolutePath().normalize();
+        this.maxBytes = properties.getMaxSize().toBytes();
+        this.revalidate = properties.isRevalidate();
+        this.cacheStreams = properties.isEnabled();
+    }
+
+    @Override
+    public void init() {
+        remote.init();
+        try {
+            Files.createDirectories(cacheRoot);
+            // Pick up what earlier runs left behind
+            try (Stream<Path> files = Files.walk(cacheRoot)) {
+                for (Path file : (Iterable<Path>) files.filter(Files::isRegularFile)::iterator) {
+                    if (file.getFileName().toString().endsWith(".part")) {
+                        Files.deleteIfExists(file);
+                    } else {
+                        record(cacheRoot.relativize(file).toString().replace('\\', '/'), Files.size(file));
+                    }
+                }
+            }
+            log.info("Storage cache at {} holds {} bytes", cacheRoot, cachedBytes);
+        }
+        catch (IOException e) {
+            throw new StorageException("Could not initialize storage cache", e);
+        }
+    }
+
+    @Override
+    public void write(String key, InputStream content, long length) {
+        evict(key);
+        if (!cacheStreams) {
+            remote.write(key, content, length);
+            return;
+        }
+        Path cached = cacheFile(key);
+        Path tempFile = null;
+        try {
+            Files.createDirectories(cached.getParent());
+            tempFile = Files.createTempFile(cached.getParent(), ".cache-", ".part");
+            // Keep a copy of what goes to the remote store; new files are usually read right away
+            try (OutputStream copy = Files.newOutputStream(tempFile)) {
+                remote.write(key, new TeeInputStream(content, copy), length);
+            }
+            Files.move(tempFile, cached, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            record(key, Files.size(cached));
+        }
+        catch (IOException e) {
+            deleteQuietly(tempFile);
+            throw new StorageException("Failed to cache file " + key, e);
+        }
+        catch (RuntimeException e) {
+            deleteQuietly(tempFile);
+            throw e;
+        }
+    }
+
+    @Override
+    public boolean replaceIfUnchanged(String key, String expectedSha256, InputStream content, long length) {
+        boolean replaced = remote.replaceIfUnchanged(key, expectedSha256, content, length);
+        evict(key);
+        return replaced;
+    }
+
+    @Override
+    public InputStream read(String key) {
+        if (!cacheStreams && !isFresh(key)) {
+            return remote.read(key);
+        }
+        try {
+            return Files.newInputStream(load(key));
+        }
+        catch (IOException e) {
+            throw new StorageException("Failed to read file " + key, e);
+        }
+    }
+
+    @Override
+    public InputStream read(String key, long offset, long length) {
+        // A range of an uncached file is fetched directly instead of downloading all of it
+        if (!isFresh(key)) {
+            return remote.read(key, offset, length);
+        }
+        try {
+            SeekableByteChannel channel = Files.newByteChannel(cacheFile(key));
+            channel.position(offset);
+            return new RangeInputStream(Channels.newInputStream(channel), length);
+        }
+        catch (IOException e) {
+            throw new StorageException("Failed to read file " + key, e);
+        }
+    }
+
+    @Override
+    public boolean exists(String key) {
+        return remote.exists(key);
+    }
+
+    @Override
+    public long size(String key) {
+        return remote.size(key);
+    }
+
+    @Override
+    public void delete(String key) {
+        remote.delete(key);
+        evict(key);
+    }
+
+    @Override
+    public void move(String sourceKey, String targetKey) {
+        remote.move(sourceKey, targetKey);
+        evict(sourceKey);
+        evict(targetKey);
+    }
+
+    @Override
+    public Path load(String key) {
+        Path cached = cacheFile(key);
+        if (isFresh(key)) {
+            return cached;
+        }
+
+        Path tempFile = null;
+        try (InputStream in = remote.read(key)) {
+            Files.createDirectories(cached.getParent());
+            tempFile = Files.createTempFile(cached.getParent(), ".cache-", ".part");
+            Files.copy(in, tempFile, StandardCopyOption.REPLACE_EXISTING);
+            Files.move(tempFile, cached, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            record(key, Files.size(cached));
+            return cached;
+        }
+        catch (IOException e) {
+            deleteQuietly(tempFile);
+            throw new StorageException("Failed to download file " + key, e);
+        }
+    }
+
+    @Override
+    public Resource loadAsResource(String key) {
+        return new FileSystemResource(load(key));
+    }
+
+    private boolean isFresh(String key) {
+        Long size;
+        indexLock.lock();
+        try {
+            size = index.get(key);
+        } finally {
+            indexLock.unlock();
+        }
+        if (size == null || !Files.exists(cacheFile(key))) {
+            return false;
+        }
+        // Re-signing appends to a file, so a changed size means another node replaced it
+        if (revalidate) {
+            try {
+                if (remote.size(key) != size) {
+                    evict(key);
+                    return false;
+                }
+            }
+            catch (StorageFileNotFoundException e) {
+                evict(key);
+                throw e;
+            }
+        }
+        return true;
+    }
+
+    private void record(String key, long size) {
+        List<String> evicted = new ArrayList<>();
+        indexLock.lock();
+        try {
+            Long previous = index.put(key, size);
+            cachedBytes += size - (previous == null ? 0 : previous);
+
+            Iterator<Map.Entry<String, Long>> eldest = index.entrySet().iterator();
+            while (cachedBytes > maxBytes && index.size() > 1 && eldest.hasNext()) {
+                Map.Entry<String, Long> entry = eldest.next();
+                if (entry.getKey().equals(key)) {
+                    continue;
+                }
+                cachedBytes -= entry.getValue();
+                eldest.remove();
+                evicted.add(entry.getKey());
+            }
+        } finally {
+            indexLock.unlock();
+        }
+        // File deletes stay outside the lock
+        evicted.forEach(evictedKey -> deleteQuietly(cacheFile(evictedKey)));
+    }
+
+    private void evict(String key) {
+        indexLock.lock();
+        try {
+            Long size = index.remove(key);
+            if (size != null) {
+                cachedBytes -= size;
+            }
+        } finally {
+            indexLock.unlock();
+        }
+        deleteQuietly(cacheFile(key));
+    }
+
+    private Path cacheFile(String key) {
+        Path file = cacheRoot.resolve(key).normalize();
+        if (!file.startsWith(cacheRoot)) {
+            // This is a security check
+            throw new StorageException("Cannot access file outside current directory.");
+        }
+        return file;
+    }
+
+    private void deleteQuietly(Path file) {
+        if (file == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(file);
+        }
+        catch (IOException e) {
+            log.warn("Could not delete cached file {}: {}", file, e.getMessage());
+        }
+    }
+
+    /**
+     * Copies everything read from the upload into the cache file.
+     */
+    private static class TeeInputStream extends FilterInputStream {
+
+        private final OutputStream copy;
+
+        TeeInputStream(InputStream in, OutputStream copy) {
+            super(in);
+            this.copy = copy;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                copy.write(b);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                copy.write(b, off, n);
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            // Skipped bytes would be missing from the copy
+            byte[] buffer = new byte[(int) Math.min(n, 8192)];
+            long skipped = 0;
+            while (skipped < n) {
+                int read = read(buffer, 0, (int) Math.min(buffer.length, n - skipped));
+                if (read < 0) {
+                    break;
+                }
+                skipped += read;
+            }
+            return skipped;
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+    }
+}
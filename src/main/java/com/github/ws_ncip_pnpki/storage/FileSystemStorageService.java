@@ -3,19 +3,26 @@ package com.github.ws_ncip_pnpki.storage;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.core.io.Resource;
 import org.springframework.core.io.UrlResource;
-import org.springframework.util.FileSystemUtils;
-import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.MalformedURLException;
+import java.nio.channels.Channels;
+import java.nio.channels.SeekableByteChannel;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
-import java.util.Objects;
-import java.util.stream.Stream;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
 
+/**
+ * Stores files on a local or shared disk under {@code storage.location}.
+ */
 public class FileSystemStorageService implements StorageService{
     private final Path rootLocation;
 
@@ -26,7 +33,7 @@ public class FileSystemStorageService implements StorageService{
             throw new StorageException("File upload location can not be Empty.");
         }
 
-        this.rootLocation = Paths.get(properties.getLocation());
+        this.rootLocation = Paths.get(properties.getLocation()).toAbsolutePath().normalize();
     }
 
     @Override
@@ -40,67 +47,166 @@ public class FileSystemStorageService implements StorageService{
     }
 
     @Override
-    public void store(MultipartFile file) {
+    public void write(String key, InputStream content, long length) {
+        Path destinationFile = load(key);
+        Path tempFile = null;
         try {
-            if (file.isEmpty()) {
-                throw new StorageException("Failed to store empty file.");
+            Files.createDirectories(destinationFile.getParent());
+            // Write next to the destination so the final rename is atomic
+            tempFile = Files.createTempFile(destinationFile.getParent(), ".upload-", ".part");
+            try (InputStream inputStream = content) {
+                Files.copy(inputStream, tempFile, StandardCopyOption.REPLACE_EXISTING);
             }
-            Path destinationFile = this.rootLocation.resolve(
-                            Paths.get(Objects.requireNonNull(file.getOriginalFilename())))
-                    .normalize().toAbsolutePath();
-            if (!destinationFile.getParent().equals(this.rootLocation.toAbsolutePath())) {
-                // This is a security check
-                throw new StorageException(
-                        "Cannot store file outside current directory.");
+            Files.move(tempFile, destinationFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        catch (IOException e) {
+            deleteQuietly(tempFile);
+            throw new StorageException("Failed to store file " + key, e);
+        }
+        catch (RuntimeException e) {
+            deleteQuietly(tempFile);
+            throw e;
+        }
+    }
+
+    /**
+     * The check and the rename are two steps on a disk; callers serialize writes to a key.
+     */
+    @Override
+    public boolean replaceIfUnchanged(String key, String expectedSha256, InputStream content, long length) {
+        try (InputStream in = content) {
+            Path file = load(key);
+            if (!Files.exists(file)) {
+                return false;
             }
-            try (InputStream inputStream = file.getInputStream()) {
-                Files.copy(inputStream, destinationFile,
-                        StandardCopyOption.REPLACE_EXISTING);
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            try (InputStream current = new DigestInputStream(Files.newInputStream(file), digest)) {
+                current.transferTo(OutputStream.nullOutputStream());
             }
+            if (!HexFormat.of().formatHex(digest.digest()).equals(expectedSha256)) {
+                return false;
+            }
+            write(key, in, length);
+            return true;
+        }
+        catch (NoSuchFileException e) {
+            return false;
+        }
+        catch (IOException e) {
+            throw new StorageException("Failed to store file " + key, e);
+        }
+        catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    @Override
+    public InputStream read(String key) {
+        try {
+            return Files.newInputStream(load(key));
+        }
+        catch (NoSuchFileException e) {
+            throw new StorageFileNotFoundException("Could not read file: " + key, e);
+        }
+        catch (IOException e) {
+            throw new StorageException("Failed to read file " + key, e);
+        }
+    }
+
+    @Override
+    public InputStream read(String key, long offset, long length) {
+        try {
+            SeekableByteChannel channel = Files.newByteChannel(load(key));
+            channel.position(offset);
+            return new RangeInputStream(Channels.newInputStream(channel), length);
+        }
+        catch (NoSuchFileException e) {
+            throw new StorageFileNotFoundException("Could not read file: " + key, e);
         }
         catch (IOException e) {
-            throw new StorageException("Failed to store file.", e);
+            throw new StorageException("Failed to read file " + key, e);
         }
     }
 
     @Override
-    public Stream<Path> loadAll() {
+    public boolean exists(String key) {
+        return Files.exists(load(key));
+    }
+
+    @Override
+    public long size(String key) {
         try {
-            return Files.walk(this.rootLocation, 1)
-                    .filter(path -> !path.equals(this.rootLocation))
-                    .map(this.rootLocation::relativize);
+            return Files.size(load(key));
+        }
+        catch (NoSuchFileException e) {
+            throw new StorageFileNotFoundException("Could not read file: " + key, e);
         }
         catch (IOException e) {
-            throw new StorageException("Failed to read stored files", e);
+            throw new StorageException("Failed to read file " + key, e);
         }
     }
 
     @Override
-    public Path load(String filename) {
-        return rootLocation.resolve(filename);
+    public void delete(String key) {
+        try {
+            Files.deleteIfExists(load(key));
+        }
+        catch (IOException e) {
+            throw new StorageException("Failed to delete file " + key, e);
+        }
     }
 
     @Override
-    public Resource loadAsResource(String filename) {
+    public void move(String sourceKey, String targetKey) {
+        Path target = load(targetKey);
         try {
-            Path file = load(filename);
+            Files.createDirectories(target.getParent());
+            Files.move(load(sourceKey), target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        catch (IOException e) {
+            throw new StorageException("Failed to move file " + sourceKey + " to " + targetKey, e);
+        }
+    }
+
+    @Override
+    public Path load(String key) {
+        Path file = rootLocation.resolve(key).normalize();
+        if (!file.startsWith(rootLocation)) {
+            // This is a security check
+            throw new StorageException(
+                    "Cannot access file outside current directory.");
+        }
+        return file;
+    }
+
+    @Override
+    public Resource loadAsResource(String key) {
+        try {
+            Path file = load(key);
             Resource resource = new UrlResource(file.toUri());
             if (resource.exists() || resource.isReadable()) {
                 return resource;
             }
             else {
                 throw new StorageFileNotFoundException(
-                        "Could not read file: " + filename);
+                        "Could not read file: " + key);
 
             }
         }
         catch (MalformedURLException e) {
-            throw new StorageFileNotFoundException("Could not read file: " + filename, e);
+            throw new StorageFileNotFoundException("Could not read file: " + key, e);
         }
     }
 
-    @Override
-    public void deleteAll() {
-        FileSystemUtils.deleteRecursively(rootLocation.toFile());
+    private void deleteQuietly(Path file) {
+        if (file == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(file);
+        }
+        catch (IOException ignored) {
+            // Best effort; a stray .part file is harmless
+        }
     }
 }
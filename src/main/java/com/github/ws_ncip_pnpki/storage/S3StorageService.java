@@ -0,0 +1,222 @@
+package com.github.ws_ncip_pnpki.storage;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.InputStreamResource;
+import org.springframework.core.io.Resource;
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.AwsCredentialsProvider;
+import software.amazon.awssdk.auth.credentials.DefaultCredentialsProvider;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.core.ResponseInputStream;
+import software.amazon.awssdk.core.exception.SdkException;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.S3ClientBuilder;
+import software.amazon.awssdk.services.s3.model.CopyObjectRequest;
+import software.amazon.awssdk.services.s3.model.DeleteObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.s3.model.HeadBucketRequest;
+import software.amazon.awssdk.services.s3.model.HeadObjectRequest;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.file.Path;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * Stores files in an S3-compatible object store so several app nodes can share them.
+ * Objects are written with a single PUT, which is atomic. Local files are not
+ * supported; {@link CachingStorageService} in front of it provides them and bounds
+ * what they take on disk.
+ */
+@Slf4j
+public class S3StorageService implements StorageService {
+
+    private final S3Client s3;
+
+    private final String bucket;
+
+    private final String prefix;
+
+    public S3StorageService(StorageProperties properties) {
+        StorageProperties.S3 config = properties.getS3();
+        if (config.getBucket() == null || config.getBucket().isBlank()) {
+            throw new StorageException("storage.s3.bucket must be set for the s3 backend.");
+        }
+
+        AwsCredentialsProvider credentials = config.getAccessKey() == null || config.getAccessKey().isBlank()
+                ? DefaultCredentialsProvider.create()
+                : StaticCredentialsProvider.create(AwsBasicCredentials.create(config.getAccessKey(), config.getSecretKey()));
+
+        S3ClientBuilder builder = S3Client.builder()
+                .region(Region.of(config.getRegion()))
+                .credentialsProvider(credentials)
+                .forcePathStyle(config.isPathStyle());
+        if (config.getEndpoint() != null && !config.getEndpoint().isBlank()) {
+            builder.endpointOverride(URI.create(config.getEndpoint()));
+        }
+
+        this.s3 = builder.build();
+        this.bucket = config.getBucket();
+        String keyPrefix = config.getPrefix() == null ? "" : config.getPrefix();
+        this.prefix = keyPrefix.isEmpty() || keyPrefix.endsWith("/") ? keyPrefix : keyPrefix + "/";
+    }
+
+    @Override
+    public void init() {
+        try {
+            s3.headBucket(HeadBucketRequest.builder().bucket(bucket).build());
+            log.info("Using object storage bucket {}", bucket);
+        } catch (SdkException e) {
+            throw new StorageException("Could not initialize storage, bucket " + bucket + " is not reachable", e);
+        }
+    }
+
+    @Override
+    public void write(String key, InputStream content, long length) {
+        try (InputStream in = content) {
+            s3.putObject(PutObjectRequest.builder().bucket(bucket).key(objectKey(key)).contentLength(length).build(),
+                    RequestBody.fromInputStream(in, length));
+        } catch (IOException | SdkException e) {
+            throw new StorageException("Failed to store file " + key, e);
+        }
+    }
+
+    /**
+     * Hashes the current object and puts the replacement with {@code If-Match} on the ETag
+     * that was hashed, so the store itself rejects it when any node wrote the key since.
+     */
+    @Override
+    public boolean replaceIfUnchanged(String key, String expectedSha256, InputStream content, long length) {
+        try (InputStream in = content) {
+            String eTag;
+            try (ResponseInputStream<GetObjectResponse> current =
+                         s3.getObject(GetObjectRequest.builder().bucket(bucket).key(objectKey(key)).build())) {
+                eTag = current.response().eTag();
+                MessageDigest digest = MessageDigest.getInstance("SHA-256");
+                try (InputStream hashed = new DigestInputStream(current, digest)) {
+                    hashed.transferTo(OutputStream.nullOutputStream());
+                }
+                if (!HexFormat.of().formatHex(digest.digest()).equals(expectedSha256)) {
+                    return false;
+                }
+            }
+            s3.putObject(PutObjectRequest.builder().bucket(bucket).key(objectKey(key)).contentLength(length)
+                            .ifMatch(eTag).build(),
+                    RequestBody.fromInputStream(in, length));
+            return true;
+        } catch (S3Exception e) {
+            // 404: deleted, 412: written since it was read, 409: a concurrent write won
+            if (e.statusCode() == 404 || e.statusCode() == 412 || e.statusCode() == 409) {
+                return false;
+            }
+            throw new StorageException("Failed to store file " + key, e);
+        } catch (IOException | SdkException e) {
+            throw new StorageException("Failed to store file " + key, e);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    @Override
+    public InputStream read(String key) {
+        try {
+            return s3.getObject(GetObjectRequest.builder().bucket(bucket).key(objectKey(key)).build());
+        } catch (SdkException e) {
+            throw translate(key, e);
+        }
+    }
+
+    @Override
+    public InputStream read(String key, long offset, long length) {
+        if (length <= 0) {
+            return InputStream.nullInputStream();
+        }
+        try {
+            return s3.getObject(GetObjectRequest.builder().bucket(bucket).key(objectKey(key))
+                    .range("bytes=" + offset + "-" + (offset + length - 1)).build());
+        } catch (SdkException e) {
+            throw translate(key, e);
+        }
+    }
+
+    @Override
+    public boolean exists(String key) {
+        try {
+            head(key);
+            return true;
+        } catch (StorageFileNotFoundException e) {
+            return false;
+        }
+    }
+
+    @Override
+    public long size(String key) {
+        return head(key);
+    }
+
+    @Override
+    public void delete(String key) {
+        try {
+            s3.deleteObject(DeleteObjectRequest.builder().bucket(bucket).key(objectKey(key)).build());
+        } catch (SdkException e) {
+            throw new StorageException("Failed to delete file " + key, e);
+        }
+    }
+
+    @Override
+    public void move(String sourceKey, String targetKey) {
+        // Object stores have no rename; copy then delete
+        try {
+            s3.copyObject(CopyObjectRequest.builder()
+                    .sourceBucket(bucket).sourceKey(objectKey(sourceKey))
+                    .destinationBucket(bucket).destinationKey(objectKey(targetKey))
+                    .build());
+        } catch (SdkException e) {
+            throw translate(sourceKey, e);
+        }
+        delete(sourceKey);
+    }
+
+    /**
+     * Not supported: a download nobody tracks would stay on disk until the JVM exits.
+     * Wrap this backend in {@link CachingStorageService} for local files.
+     */
+    @Override
+    public Path load(String key) {
+        throw new StorageException("Local copies of " + key + " are provided by the storage cache");
+    }
+
+    @Override
+    public Resource loadAsResource(String key) {
+        return new InputStreamResource(read(key));
+    }
+
+    private long head(String key) {
+        try {
+            return s3.headObject(HeadObjectRequest.builder().bucket(bucket).key(objectKey(key)).build()).contentLength();
+        } catch (SdkException e) {
+            throw translate(key, e);
+        }
+    }
+
+    private String objectKey(String key) {
+        return prefix + key;
+    }
+
+    private StorageException translate(String key, SdkException e) {
+        if (e instanceof S3Exception s3Exception && s3Exception.statusCode() == 404) {
+            return new StorageFileNotFoundException("Could not read file: " + key, e);
+        }
+        return new StorageException("Failed to access file " + key, e);
+    }
+}
@@ -1,14 +1,32 @@
 package com.github.ws_ncip_pnpki.storage;
 
 import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
 
 @ConfigurationProperties("storage")
 public class StorageProperties {
+    /**
+     * Storage backend, "local" or "s3"
+     */
+    private String backend = "local";
+
     /**
      * Folder location for storing files
      */
     private String location = "upload-dir";
 
+    private final S3 s3 = new S3();
+
+    private final Cache cache = new Cache();
+
+    public String getBackend() {
+        return backend;
+    }
+
+    public void setBackend(String backend) {
+        this.backend = backend;
+    }
+
     public String getLocation() {
         return location;
     }
@@ -16,4 +34,149 @@ public class StorageProperties {
     public void setLocation(String location) {
         this.location = location;
     }
+
+    public S3 getS3() {
+        return s3;
+    }
+
+    public Cache getCache() {
+        return cache;
+    }
+
+    /**
+     * S3-compatible object store (AWS S3, MinIO, Ceph)
+     */
+    public static class S3 {
+        /**
+         * Endpoint URL, empty for AWS
+         */
+        private String endpoint = "";
+
+        private String region = "us-east-1";
+
+        private String bucket;
+
+        private String accessKey;
+
+        private String secretKey;
+
+        /**
+         * Key prefix inside the bucket
+         */
+        private String prefix = "";
+
+        /**
+         * Path-style addressing, required by most self-hosted servers
+         */
+        private boolean pathStyle = true;
+
+        public String getEndpoint() {
+            return endpoint;
+        }
+
+        public void setEndpoint(String endpoint) {
+            this.endpoint = endpoint;
+        }
+
+        public String getRegion() {
+            return region;
+        }
+
+        public void setRegion(String region) {
+            this.region = region;
+        }
+
+        public String getBucket() {
+            return bucket;
+        }
+
+        public void setBucket(String bucket) {
+            this.bucket = bucket;
+        }
+
+        public String getAccessKey() {
+            return accessKey;
+        }
+
+        public void setAccessKey(String accessKey) {
+            this.accessKey = accessKey;
+        }
+
+        public String getSecretKey() {
+            return secretKey;
+        }
+
+        public void setSecretKey(String secretKey) {
+            this.secretKey = secretKey;
+        }
+
+        public String getPrefix() {
+            return prefix;
+        }
+
+        public void setPrefix(String prefix) {
+            this.prefix = prefix;
+        }
+
+        public boolean isPathStyle() {
+            return pathStyle;
+        }
+
+        public void setPathStyle(boolean pathStyle) {
+            this.pathStyle = pathStyle;
+        }
+    }
+
+    /**
+     * Local disk cache in front of a remote backend
+     */
+    public static class Cache {
+        /**
+         * Cache written and streamed files too; when off only files needed as local
+         * paths are kept
+         */
+        private boolean enabled = true;
+
+        private String location = "storage-cache";
+
+        private DataSize maxSize = DataSize.ofGigabytes(10);
+
+        /**
+         * Check the remote size before serving a cached copy, so a file re-signed on
+         * another node is not served stale
+         */
+        private boolean revalidate = true;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public String getLocation() {
+            return location;
+        }
+
+        public void setLocation(String location) {
+            this.location = location;
+        }
+
+        public DataSize getMaxSize() {
+            return maxSize;
+        }
+
+        public void setMaxSize(DataSize maxSize) {
+            this.maxSize = maxSize;
+        }
+
+        public boolean isRevalidate() {
+            return revalidate;
+        }
+
+        public void setRevalidate(boolean revalidate) {
+            this.revalidate = revalidate;
+        }
+    }
 }
@@ -1,22 +1,51 @@
 package com.github.ws_ncip_pnpki.storage;
 
 import org.springframework.core.io.Resource;
-import org.springframework.web.multipart.MultipartFile;
 
+import java.io.InputStream;
 import java.nio.file.Path;
-import java.util.stream.Stream;
 
+/**
+ * Storage for uploaded and signed files, addressed by keys such as
+ * {@code 12/documents/<uuid>.pdf}. Writes are all-or-nothing: readers see either the
+ * previous content or the complete new content, never a partial file.
+ */
 public interface StorageService {
 
     void init();
 
-    void store(MultipartFile file);
+    /**
+     * Streams {@code length} bytes into {@code key}, replacing any existing content.
+     */
+    void write(String key, InputStream content, long length);
 
-    Stream<Path> loadAll();
+    /**
+     * Replaces {@code key} with {@code length} bytes of {@code content} only while it still
+     * holds the content with SHA-256 {@code expectedSha256}. Returns false when the key was
+     * written over or deleted in the meantime.
+     */
+    boolean replaceIfUnchanged(String key, String expectedSha256, InputStream content, long length);
 
-    Path load(String filename);
+    InputStream read(String key);
 
-    Resource loadAsResource(String filename);
+    /**
+     * Reads {@code length} bytes starting at {@code offset}.
+     */
+    InputStream read(String key, long offset, long length);
 
-    void deleteAll();
+    boolean exists(String key);
+
+    long size(String key);
+
+    void delete(String key);
+
+    void move(String sourceKey, String targetKey);
+
+    /**
+     * A local file holding the content of {@code key}, for code that needs a path.
+     * Remote backends download it first.
+     */
+    Path load(String key);
+
+    Resource loadAsResource(String key);
 }
@@ -1,10 +1,16 @@
 package com.github.ws_ncip_pnpki.util;
 
+import com.github.ws_ncip_pnpki.model.Role;
+import com.github.ws_ncip_pnpki.model.User;
+import com.github.ws_ncip_pnpki.security.CustomUserDetails;
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
 import io.jsonwebtoken.io.Decoders;
 import io.jsonwebtoken.security.Keys;
+import jakarta.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Component;
@@ -14,11 +20,17 @@ import java.security.Key;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.UUID;
 import java.util.function.Function;
 
 @Component
 public class JwtUtil {
 
+    public static final String CLAIM_USER_ID = "uid";
+
+    public static final String CLAIM_ROLES = "roles";
+
+    public static final String CLAIM_CREDENTIALS_VERSION = "cv";
 
     @Value("${jwt.secret}")
     private String secretKey;
@@ -29,6 +41,19 @@ public class JwtUtil {
     @Value("${jwt.refresh.expiration}")
     private long refreshTokenExpiration;
 
+    private SecretKey signKey;
+
+    // Immutable and thread-safe, so one parser serves every request
+    private JwtParser parser;
+
+    @PostConstruct
+    void init() {
+        signKey = Keys.hmacShaKeyFor(Decoders.BASE64.decode(secretKey));
+        parser = Jwts.parser()
+                .verifyWith(signKey)
+                .build();
+    }
+
     public String extractUsername(String token) {
         return extractClaim(token, Claims::getSubject);
     }
@@ -43,46 +68,49 @@ public class JwtUtil {
     }
 
     private Claims extractAllClaims(String token) {
-        return Jwts.parser()
-                .verifyWith(getSignKey())
-                .build()
-                .parseSignedClaims(token)
-                .getPayload();
+        return parser.parseSignedClaims(token).getPayload();
     }
 
-    private Boolean isTokenExpired(String token) {
-        return extractExpiration(token).before(new Date());
+    /**
+     * Verifies the signature and expiry in a single parse and returns the claims,
+     * or null when the token is not valid.
+     */
+    public Claims parseToken(String token) {
+        try {
+            return extractAllClaims(token);
+        } catch (JwtException | IllegalArgumentException e) {
+            return null;
+        }
     }
 
     public Boolean validateToken(String token) {
-        try {
-            extractUsername(token);
-            return !isTokenExpired(token);
-        } catch (Exception e) {
-            return false;
-        }
+        // The parser rejects expired tokens
+        return parseToken(token) != null;
     }
 
     public String generateToken(UserDetails userDetails) {
         Map<String, Object> claims = new HashMap<>();
+        // Lets the authentication filter build the principal without loading the user
+        if (userDetails instanceof CustomUserDetails customUserDetails) {
+            User user = customUserDetails.getUser();
+            claims.put(CLAIM_USER_ID, user.getId());
+            claims.put(CLAIM_ROLES, user.getRoles().stream().map(Role::getName).toList());
+            claims.put(CLAIM_CREDENTIALS_VERSION, user.getCredentialsVersion());
+        }
         return createToken(claims, userDetails.getUsername());
     }
 
     private String createToken(Map<String, Object> claims, String subject) {
         return Jwts.builder()
                 .claims(claims)
+                .id(UUID.randomUUID().toString())
                 .subject(subject)
                 .issuedAt(new Date(System.currentTimeMillis()))
                 .expiration(new Date(System.currentTimeMillis() + jwtExpiration))
-                .signWith(getSignKey())
+                .signWith(signKey)
                 .compact();
     }
 
-    private SecretKey getSignKey() {
-        byte[] keyBytes = Decoders.BASE64.decode(secretKey);
-        return Keys.hmacShaKeyFor(keyBytes);
-    }
-
     public String getUsernameFromToken(String jwt) {
         return extractUsername(jwt);
     }
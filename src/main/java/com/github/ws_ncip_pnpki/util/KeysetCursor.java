@@ -0,0 +1,146 @@
+package com.github.ws_ncip_pnpki.util;
+
+import com.github.ws_ncip_pnpki.dto.CursorPage;
+import jakarta.persistence.Column;
+import jakarta.persistence.Id;
+import org.springframework.beans.BeanUtils;
+import org.springframework.core.convert.ConversionService;
+import org.springframework.core.convert.support.DefaultConversionService;
+import org.springframework.data.domain.KeysetScrollPosition;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.util.ReflectionUtils;
+
+import java.beans.PropertyDescriptor;
+import java.lang.reflect.Field;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.StringJoiner;
+
+/**
+ * Keyset (seek) pagination over a {@link JpaSpecificationExecutor}. Each page continues
+ * after the sort key and id of the previous page's last row, so deep pages cost the same
+ * as the first one, unlike LIMIT/OFFSET. The cursor handed to clients is an opaque
+ * base64 token of those keys.
+ */
+public final class KeysetCursor {
+
+    private static final ConversionService CONVERSION = DefaultConversionService.getSharedInstance();
+
+    private KeysetCursor() {
+    }
+
+    /**
+     * Reads the page after {@code cursor} (null or empty for the first page). {@code id} is
+     * added to the sort as a tie-breaker so rows with equal sort values are neither
+     * skipped nor repeated. Only non-null properties can be sorted on: keyset predicates
+     * never match a NULL key, so such rows would silently drop out of the listing.
+     */
+    public static <E> CursorPage<E> scroll(JpaSpecificationExecutor<E> repository, Specification<E> spec,
+                                           Class<E> entityType, String sortBy, String sortDirection,
+                                           int limit, String cursor, boolean skipTotal) {
+        if (limit < 1) {
+            throw new IllegalArgumentException("Limit must be >= 1");
+        }
+        Sort.Direction direction = Sort.Direction.fromString(sortDirection);
+        Sort sort = "id".equals(sortBy)
+                ? Sort.by(direction, "id")
+                : Sort.by(direction, sortBy).and(Sort.by(direction, "id"));
+        List<String> keys = new ArrayList<>();
+        for (Sort.Order order : sort) {
+            keys.add(order.getProperty());
+            sortableType(entityType, order.getProperty());
+            requireNonNullable(entityType, order.getProperty());
+        }
+
+        ScrollPosition position = decode(cursor, entityType, keys);
+        Window<E> window = repository.findBy(spec, query -> query.sortBy(sort).limit(limit).scroll(position));
+
+        String nextCursor = window.hasNext() && !window.isEmpty()
+                ? encode((KeysetScrollPosition) window.positionAt(window.size() - 1))
+                : null;
+        // The count is the expensive part of a listing; clients paging by cursor can skip it
+        Long total = skipTotal ? null : repository.count(spec);
+        return new CursorPage<>(window.getContent(), nextCursor, total);
+    }
+
+    static String encode(KeysetScrollPosition position) {
+        StringJoiner joiner = new StringJoiner("&");
+        position.getKeys().forEach((key, value) -> {
+            if (value == null) {
+                throw new IllegalStateException("Sort key " + key + " is null");
+            }
+            joiner.add(URLEncoder.encode(key, StandardCharsets.UTF_8) + "="
+                    + URLEncoder.encode(String.valueOf(value), StandardCharsets.UTF_8));
+        });
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(joiner.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    static ScrollPosition decode(String cursor, Class<?> entityType, List<String> expectedKeys) {
+        if (cursor == null || cursor.isBlank()) {
+            return ScrollPosition.keyset();
+        }
+        Map<String, Object> keys = new LinkedHashMap<>();
+        try {
+            String decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            for (String pair : decoded.split("&")) {
+                int separator = pair.indexOf('=');
+                String key = URLDecoder.decode(pair.substring(0, separator), StandardCharsets.UTF_8);
+                String value = URLDecoder.decode(pair.substring(separator + 1), StandardCharsets.UTF_8);
+                keys.put(key, convert(value, sortableType(entityType, key)));
+            }
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Invalid cursor", e);
+        }
+        if (!new ArrayList<>(keys.keySet()).equals(expectedKeys)) {
+            throw new IllegalArgumentException("Cursor does not match the requested sort");
+        }
+        return ScrollPosition.forward(keys);
+    }
+
+    private static Class<?> sortableType(Class<?> entityType, String property) {
+        PropertyDescriptor descriptor = BeanUtils.getPropertyDescriptor(entityType, property);
+        Class<?> type = descriptor == null ? null : descriptor.getPropertyType();
+        if (type == null || !(BeanUtils.isSimpleValueType(type))) {
+            throw new IllegalArgumentException("Cannot sort by " + property);
+        }
+        return type;
+    }
+
+    private static void requireNonNullable(Class<?> entityType, String property) {
+        Field field = ReflectionUtils.findField(entityType, property);
+        Column column = field == null ? null : field.getAnnotation(Column.class);
+        boolean nonNullable = field != null && (field.getType().isPrimitive()
+                || field.isAnnotationPresent(Id.class)
+                || (column != null && !column.nullable()));
+        if (!nonNullable) {
+            throw new IllegalArgumentException("Cannot page by cursor on nullable property " + property);
+        }
+    }
+
+    private static Object convert(String value, Class<?> type) {
+        if (type == LocalDateTime.class) {
+            return LocalDateTime.parse(value);
+        }
+        if (type == LocalDate.class) {
+            return LocalDate.parse(value);
+        }
+        if (type == Instant.class) {
+            return Instant.parse(value);
+        }
+        return CONVERSION.convert(value, type);
+    }
+}
@@ -0,0 +1,114 @@
+package com.github.ws_ncip_pnpki.service;
+
+import com.github.ws_ncip_pnpki.model.Employee;
+import com.github.ws_ncip_pnpki.repository.EmployeeRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Names such as "maria" consist of pairs containing the stopwords "a" and "i", which
+ * an ngram index built with InnoDB's default stopword list leaves out. Such searches
+ * must keep finding rows through LIKE until the indexes are built without stopwords.
+ */
+class FullTextSearchServiceTest {
+
+    private static final String NAME = "maria";
+
+    private JdbcTemplate jdbcTemplate;
+
+    private EmployeeRepository employeeRepository;
+
+    private FullTextSearchService fullTextSearchService;
+
+    private EmployeeService employeeService;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate = mock(JdbcTemplate.class);
+        employeeRepository = mock(EmployeeRepository.class);
+
+        fullTextSearchService = new FullTextSearchService();
+        ReflectionTestUtils.setField(fullTextSearchService, "jdbcTemplate", jdbcTemplate);
+        ReflectionTestUtils.setField(fullTextSearchService, "enabled", true);
+        ReflectionTestUtils.setField(fullTextSearchService, "minLength", 2);
+        ReflectionTestUtils.setField(fullTextSearchService, "maxResults", 50);
+
+        employeeService = new EmployeeService(employeeRepository, fullTextSearchService);
+
+        // Every index already exists
+        when(jdbcTemplate.queryForObject(anyString(), eq(Integer.class), any(), any())).thenReturn(1);
+    }
+
+    @Test
+    void defaultStopwordsKeepNameSearchesOnLike() {
+        stopwordSettings(1, null, null);
+        Employee maria = new Employee();
+        when(employeeRepository.searchByName(NAME)).thenReturn(List.of(maria));
+
+        fullTextSearchService.createIndexes();
+
+        assertFalse(fullTextSearchService.useFor(NAME));
+        assertEquals(List.of(maria), employeeService.searchEmployees(NAME));
+        verify(employeeRepository, never()).fullTextSearchByName(anyString(), anyInt());
+        verify(jdbcTemplate, never()).execute(anyString());
+    }
+
+    @Test
+    void disabledStopwordsSearchNamesByPhrase() {
+        stopwordSettings(0, null, null);
+        Employee maria = new Employee();
+        when(employeeRepository.fullTextSearchByName("\"" + NAME + "\"", 50)).thenReturn(List.of(maria));
+
+        fullTextSearchService.createIndexes();
+
+        assertTrue(fullTextSearchService.useFor(NAME));
+        assertEquals(List.of(maria), employeeService.searchEmployees(NAME));
+        verify(employeeRepository, never()).searchByName(anyString());
+    }
+
+    @Test
+    void emptyServerStopwordTableAllowsFullText() {
+        stopwordSettings(1, null, "search/no_stopwords");
+        when(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM `search`.`no_stopwords`", Integer.class)).thenReturn(0);
+
+        fullTextSearchService.createIndexes();
+
+        assertTrue(fullTextSearchService.useFor(NAME));
+    }
+
+    @Test
+    void nonEmptyStopwordTableKeepsLike() {
+        stopwordSettings(1, "search/stopwords", null);
+        when(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM `search`.`stopwords`", Integer.class)).thenReturn(3);
+
+        fullTextSearchService.createIndexes();
+
+        assertFalse(fullTextSearchService.useFor(NAME));
+    }
+
+    private void stopwordSettings(int enabled, String userTable, String serverTable) {
+        Map<String, Object> settings = new HashMap<>();
+        settings.put("enabled", (long) enabled);
+        settings.put("user_table", userTable);
+        settings.put("server_table", serverTable);
+        when(jdbcTemplate.queryForMap(anyString())).thenReturn(settings);
+    }
+}
@@ -0,0 +1,232 @@
+package com.github.ws_ncip_pnpki.service;
+
+import com.itextpdf.kernel.geom.Matrix;
+import com.itextpdf.kernel.geom.PageSize;
+import com.itextpdf.kernel.pdf.PdfDocument;
+import com.itextpdf.kernel.pdf.PdfReader;
+import com.itextpdf.kernel.pdf.PdfWriter;
+import com.itextpdf.kernel.pdf.canvas.parser.EventType;
+import com.itextpdf.kernel.pdf.canvas.parser.PdfCanvasProcessor;
+import com.itextpdf.kernel.pdf.canvas.parser.data.IEventData;
+import com.itextpdf.kernel.pdf.canvas.parser.data.ImageRenderInfo;
+import com.itextpdf.kernel.pdf.canvas.parser.listener.IEventListener;
+import com.itextpdf.signatures.PdfPKCS7;
+import com.itextpdf.signatures.SignatureUtil;
+import org.bouncycastle.asn1.x500.X500Name;
+import org.bouncycastle.cert.jcajce.JcaX509CertificateConverter;
+import org.bouncycastle.cert.jcajce.JcaX509v3CertificateBuilder;
+import org.bouncycastle.operator.jcajce.JcaContentSignerBuilder;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.KeyStore;
+import java.security.cert.Certificate;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Signs several documents at once through the shared service. Each output must carry
+ * its own signer and placements, which breaks if request state leaks between sessions.
+ */
+class PdfSigningServiceConcurrencyTest {
+
+    private static final int SIGNERS = 6;
+
+    private static final int PAGES = 3;
+
+    private static final float CANVAS_WIDTH = 600;
+
+    private static final float CANVAS_HEIGHT = 800;
+
+    private static final String PASSWORD = "changeit";
+
+    @TempDir
+    Path outputDir;
+
+    private PdfSigningService pdfSigningService;
+
+    private byte[] signatureImage;
+
+    private byte[] pdf;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        SignatureAppearanceCache appearanceCache = new SignatureAppearanceCache();
+        ReflectionTestUtils.setField(appearanceCache, "maxEntries", 10);
+        appearanceCache.init();
+
+        TimestampService timestampService = mock(TimestampService.class);
+        when(timestampService.getClient()).thenReturn(null);
+        when(timestampService.shouldDefer()).thenReturn(false);
+
+        pdfSigningService = new PdfSigningService();
+        ReflectionTestUtils.setField(pdfSigningService, "outputDir", outputDir.toString());
+        ReflectionTestUtils.setField(pdfSigningService, "appearanceCache", appearanceCache);
+        ReflectionTestUtils.setField(pdfSigningService, "timestampService", timestampService);
+        ReflectionTestUtils.setField(pdfSigningService, "viewCopyService", mock(ViewCopyService.class));
+        pdfSigningService.initCryptoPermits();
+
+        signatureImage = png();
+        pdf = pdf();
+    }
+
+    @Test
+    void concurrentSessionsKeepTheirOwnSignerAndPlacements() throws Exception {
+        List<SigningSession> sessions = new ArrayList<>();
+        for (int i = 0; i < SIGNERS; i++) {
+            sessions.add(pdfSigningService.openSession(new ByteArrayInputStream(keyStore("Signer " + i)), PASSWORD,
+                    signatureImage, placementsFor(i), CANVAS_WIDTH, CANVAS_HEIGHT, "Office " + i));
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(SIGNERS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<String>> outputs = new ArrayList<>();
+        try {
+            for (SigningSession session : sessions) {
+                outputs.add(executor.submit(() -> {
+                    start.await();
+                    return pdfSigningService.signWithSession(pdf, session);
+                }));
+            }
+            start.countDown();
+
+            for (int i = 0; i < SIGNERS; i++) {
+                byte[] signed = Files.readAllBytes(outputDir.resolve(outputs.get(i).get()));
+                assertSignedBy(signed, "Signer " + i);
+                assertEquals(expectedBoxes(i), imageBoxes(signed), "placements of signer " + i);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Every signer stamps two pages at a position of its own, and signs on a different page.
+     */
+    private static List<PdfSigningService.SignaturePlacement> placementsFor(int signer) {
+        int first = signer % PAGES + 1;
+        int second = (signer + 1) % PAGES + 1;
+        return List.of(
+                new PdfSigningService.SignaturePlacement(first, 40 + signer * 50, 60 + signer * 70, 120, 40),
+                new PdfSigningService.SignaturePlacement(second, 300 - signer * 30, 500 + signer * 20, 90, 30));
+    }
+
+    private static Set<List<Float>> expectedBoxes(int signer) {
+        PageSize pageSize = PageSize.A4;
+        Set<List<Float>> boxes = new HashSet<>();
+        for (PdfSigningService.SignaturePlacement placement : placementsFor(signer)) {
+            PdfSigningService.PlacementBox box = PdfSigningService.toPdfBox(placement,
+                    pageSize.getWidth(), pageSize.getHeight(), CANVAS_WIDTH, CANVAS_HEIGHT);
+            boxes.add(box(placement.pageNumber, box.x(), box.y(), box.width(), box.height()));
+        }
+        return boxes;
+    }
+
+    private static void assertSignedBy(byte[] signed, String commonName) throws Exception {
+        try (PdfDocument document = new PdfDocument(new PdfReader(new ByteArrayInputStream(signed)))) {
+            SignatureUtil signatureUtil = new SignatureUtil(document);
+            List<String> names = signatureUtil.getSignatureNames();
+            assertEquals(1, names.size());
+            PdfPKCS7 signature = signatureUtil.readSignatureData(names.get(0));
+            assertTrue(signature.verifySignatureIntegrityAndAuthenticity());
+            assertEquals("CN=" + commonName, signature.getSigningCertificate().getSubjectX500Principal().getName());
+        }
+    }
+
+    /**
+     * Page and rounded position and size of every image drawn in the document.
+     */
+    private static Set<List<Float>> imageBoxes(byte[] signed) throws Exception {
+        Set<List<Float>> boxes = new HashSet<>();
+        try (PdfDocument document = new PdfDocument(new PdfReader(new ByteArrayInputStream(signed)))) {
+            for (int page = 1; page <= document.getNumberOfPages(); page++) {
+                int pageNumber = page;
+                IEventListener listener = new IEventListener() {
+                    @Override
+                    public void eventOccurred(IEventData data, EventType type) {
+                        Matrix ctm = ((ImageRenderInfo) data).getImageCtm();
+                        boxes.add(box(pageNumber, ctm.get(Matrix.I31), ctm.get(Matrix.I32),
+                                ctm.get(Matrix.I11), ctm.get(Matrix.I22)));
+                    }
+
+                    @Override
+                    public Set<EventType> getSupportedEvents() {
+                        return Set.of(EventType.RENDER_IMAGE);
+                    }
+                };
+                new PdfCanvasProcessor(listener).processPageContent(document.getPage(page));
+            }
+        }
+        return boxes;
+    }
+
+    private static List<Float> box(int page, float x, float y, float width, float height) {
+        return List.of((float) page, round(x), round(y), round(width), round(height));
+    }
+
+    private static float round(float value) {
+        return Math.round(value * 10) / 10f;
+    }
+
+    private static byte[] keyStore(String commonName) throws Exception {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(2048);
+        KeyPair keyPair = generator.generateKeyPair();
+
+        X500Name subject = new X500Name("CN=" + commonName);
+        long now = System.currentTimeMillis();
+        X509Certificate certificate = new JcaX509CertificateConverter().getCertificate(
+                new JcaX509v3CertificateBuilder(subject, BigInteger.valueOf(now), new Date(now - 60_000),
+                        new Date(now + 86_400_000), subject, keyPair.getPublic())
+                        .build(new JcaContentSignerBuilder("SHA256withRSA").build(keyPair.getPrivate())));
+
+        KeyStore keyStore = KeyStore.getInstance("PKCS12");
+        keyStore.load(null, null);
+        keyStore.setKeyEntry("signer", keyPair.getPrivate(), PASSWORD.toCharArray(), new Certificate[]{certificate});
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        keyStore.store(out, PASSWORD.toCharArray());
+        return out.toByteArray();
+    }
+
+    private static byte[] png() throws Exception {
+        BufferedImage image = new BufferedImage(60, 20, BufferedImage.TYPE_INT_ARGB);
+        image.setRGB(10, 10, 0xFF000000);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", out);
+        return out.toByteArray();
+    }
+
+    private static byte[] pdf() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (PdfDocument document = new PdfDocument(new PdfWriter(out))) {
+            for (int page = 0; page < PAGES; page++) {
+                document.addNewPage(PageSize.A4);
+            }
+        }
+        return out.toByteArray();
+    }
+}